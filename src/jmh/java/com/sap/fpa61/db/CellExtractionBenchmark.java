@@ -0,0 +1,61 @@
+package com.sap.fpa61.db;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// extractNumericValue of a DOM cell by cell type; the text and blank cells include building their warning
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-jmh.xml")
+public class CellExtractionBenchmark {
+
+    @Param({"NUMERIC", "STRING_NUMBER", "STRING_TEXT", "FORMULA", "BLANK"})
+    String cellType;
+
+    private XSSFWorkbook workbook;
+    private Cell cell;
+    private DecodeOnlyUploader uploader;
+
+    @Setup
+    public void createCell() {
+        uploader = new DecodeOnlyUploader(UploadOptions.ReaderMode.DOM);
+        workbook = new XSSFWorkbook();
+        cell = workbook.createSheet("median").createRow(ResultSheetTransposer.FIRST_DATA_ROW).createCell(1);
+        switch (cellType) {
+            case "NUMERIC" -> cell.setCellValue(12.5);
+            case "STRING_NUMBER" -> cell.setCellValue(" 12.5 ");
+            case "STRING_TEXT" -> cell.setCellValue("n/a");
+            case "FORMULA" -> cell.setCellFormula("10+2.5");
+            case "BLANK" -> cell.setBlank();
+            default -> throw new IllegalArgumentException("Unknown cell type: " + cellType);
+        }
+    }
+
+    @TearDown
+    public void closeWorkbook() throws IOException {
+        workbook.close();
+    }
+
+    @Benchmark
+    public Double extractNumericValue() {
+        return uploader.extractNumericValue(cell, ResultSheetTransposer.FIRST_DATA_ROW, 1);
+    }
+}
@@ -0,0 +1,44 @@
+package com.sap.fpa61.db;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// parseDateString with one job date per format it accepts, in the order it tries them: a later format pays for
+// the failed parses of the formats before it
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-jmh.xml")
+public class DateParseBenchmark {
+
+    @Param({"2025-04-21", "Apr 1 2025", "Apr 21 2025", "April 1, 2025", "April 21, 2025", "1 Apr 2025",
+        "21 Apr 2025", "04/21/2025", "21/04/2025"})
+    String date;
+
+    private DecodeOnlyUploader uploader;
+
+    @Setup
+    public void createUploader() {
+        uploader = new DecodeOnlyUploader(UploadOptions.ReaderMode.STREAMING);
+    }
+
+    @Benchmark
+    public Date parseDateString() throws SQLException {
+        return uploader.parseDateString(date);
+    }
+}
@@ -0,0 +1,47 @@
+package com.sap.fpa61.db;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import org.json.JSONObject;
+
+// Uploader whose DB writer is stubbed out: runs get ids from a counter and result batches are only counted, so
+// a benchmark measures reading, transposing and decoding the workbook. The job date is still parsed, as the real
+// insertTestRun does before it touches the DB
+class DecodeOnlyUploader extends HanaDataUploader {
+
+    private int runs = 0;
+    private long results = 0;
+
+    DecodeOnlyUploader(UploadOptions.ReaderMode readerMode) {
+        super(new JSONObject().put("fullDisplayName", "pnr-benchmark #1").put("id", "1"));
+        options.readerMode = readerMode;
+    }
+
+    @Override
+    int insertTestRun(String scenarioName, String jobDate, String deployment, String image) throws SQLException {
+        parseDateString(jobDate);
+        return ++runs;
+    }
+
+    @Override
+    void insertTestResultsBatch(List<TestResultBatch> batch) {
+        results += batch.size();
+    }
+
+    @Override
+    void flushTestRuns() {
+    }
+
+    @Override
+    void sheetFinished() {
+    }
+
+    int getRuns() {
+        return runs;
+    }
+
+    long getResults() {
+        return results;
+    }
+}
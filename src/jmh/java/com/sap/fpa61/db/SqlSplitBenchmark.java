@@ -0,0 +1,49 @@
+package com.sap.fpa61.db;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// splitSqlStatements over the shipped schema migrations
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-jmh.xml")
+public class SqlSplitBenchmark {
+
+    @Param({"V1__baseline.sql", "V2__client_side_ids.sql", "V3__bulk_load_staging.sql", "V4__run_natural_key.sql"})
+    String script;
+
+    private String sql;
+
+    @Setup
+    public void readScript() throws IOException {
+        try (InputStream in = SqlSplitBenchmark.class.getResourceAsStream("/db/migration/" + script)) {
+            if (in == null) {
+                throw new IOException("Migration script not found: " + script);
+            }
+            sql = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Benchmark
+    public List<String> splitSqlStatements() {
+        return HanaDataUploader.splitSqlStatements(sql);
+    }
+}
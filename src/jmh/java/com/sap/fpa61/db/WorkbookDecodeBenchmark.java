@@ -0,0 +1,93 @@
+package com.sap.fpa61.db;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.sap.fpa61.tools.WorkbookGenerator;
+
+// Decoding of whole workbooks through processBurnInAnalysis / processRegressionFile with the DB writer stubbed out,
+// by workbook width (builds = columns) and height (entities = rows) and by reader (XSSF event model or POI DOM).
+// The workbooks are written by the WorkbookGenerator
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-jmh.xml")
+public class WorkbookDecodeBenchmark {
+
+    // Sheets of the regression workbook, one scenario each
+    private static final int REGRESSION_SHEETS = 3;
+
+    @Param({"10", "100"})
+    int width;
+
+    @Param({"100", "1000"})
+    int height;
+
+    // UploadOptions.ReaderMode, by name
+    @Param({"STREAMING", "DOM"})
+    String reader;
+
+    private UploadOptions.ReaderMode readerMode;
+
+    private Path dir;
+    private String burnInFile;
+    private String regressionFile;
+
+    @Setup(Level.Trial)
+    public void writeWorkbooks() throws Exception {
+        readerMode = UploadOptions.ReaderMode.valueOf(reader);
+        dir = Files.createTempDirectory("pnr-jmh");
+        burnInFile = dir.resolve(HanaDataUploader.BURN_IN_FILE).toString();
+        regressionFile = dir.resolve(HanaDataUploader.REGRESSION_FILE).toString();
+        new WorkbookGenerator(dir, REGRESSION_SHEETS, width, height, Map.of(WorkbookGenerator.CellKind.NUMERIC, 1), 1)
+                .writeAll();
+
+        // A layout the uploader does not read would measure nothing
+        DecodeOnlyUploader uploader = new DecodeOnlyUploader(readerMode);
+        uploader.processRegressionFile(regressionFile);
+        if (uploader.getResults() != (long) REGRESSION_SHEETS * width * height) {
+            throw new IllegalStateException("Decoded " + uploader.getResults() + " results from a "
+                    + width + " x " + height + " workbook");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteWorkbooks() throws IOException {
+        FileUtils.deleteDirectory(dir.toFile());
+    }
+
+    @Benchmark
+    public void burnIn(Blackhole blackhole) throws Exception {
+        DecodeOnlyUploader uploader = new DecodeOnlyUploader(readerMode);
+        uploader.processBurnInAnalysis(burnInFile);
+        blackhole.consume(uploader.getResults());
+    }
+
+    @Benchmark
+    public void regression(Blackhole blackhole) throws Exception {
+        DecodeOnlyUploader uploader = new DecodeOnlyUploader(readerMode);
+        uploader.processRegressionFile(regressionFile);
+        blackhole.consume(uploader.getResults());
+    }
+}
@@ -2,6 +2,11 @@ package com.sap.fpa61;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
 
 import org.apache.logging.log4j.LogManager;
@@ -11,6 +16,9 @@ import org.json.JSONObject;
 
 import com.sap.fpa61.db.HanaDataUploader;
 import com.sap.fpa61.jenkins.JenkinsArtifactDownloader;
+import com.sap.fpa61.jenkins.JenkinsBuild;
+import com.sap.fpa61.metrics.MetricsRegistry;
+import com.sap.fpa61.tools.WorkbookGenerator;
 
 public class App {
 
@@ -19,6 +27,19 @@ public class App {
     public static void main(String[] args) throws Exception {
         logger.info("Starting application");
 
+        // "--jfr[=<file>]" records the run with the JDK Flight Recorder
+        Path recordingFile = FlightRecording.requestedFile(args);
+        if (recordingFile != null) {
+            FlightRecording.start(recordingFile);
+            args = FlightRecording.withoutFlag(args);
+        }
+
+        // "generate <dir> [options]" writes synthetic workbooks and needs no configuration
+        if (args.length > 0 && WorkbookGenerator.COMMAND.equals(args[0])) {
+            runGenerator(args);
+            return;
+        }
+
         // Load configuration properties
         Properties props;
         try {
@@ -28,17 +49,44 @@ public class App {
             System.exit(1);
             return;
         }
+        writeMetricsOnExit(props);
+
+        // "backfill <first> [<last>]" uploads past builds of the job instead of the latest one
+        if (args.length > 0 && Backfill.COMMAND.equals(args[0])) {
+            runBackfill(args, props);
+            return;
+        }
+
+        // "daemon" keeps running and uploads every new build of the job (or of the JOBS)
+        if (args.length > 0 && Daemon.COMMAND.equals(args[0])) {
+            runDaemon(props);
+            return;
+        }
+
+        // JOBS lists several jobs, whose latest builds are uploaded in this one JVM
+        if (JobConfig.isMultiJob(props)) {
+            runJobs(props);
+            return;
+        }
 
-        // Execute download process
+        // Execute download process; with DOWNLOAD_MODE=stream the build is only located here and its workbooks
+        // are parsed straight from the HTTP responses during the upload
         JSONObject jsonResponse;
-        String saveDir;
+        String saveDir = null;
+        JenkinsBuild streamedBuild = null;
         try {
-            jsonResponse = JenkinsArtifactDownloader.downloadArtifacts(args);
-            if (jsonResponse == null) {
-                throw new RuntimeException("Download failed: jsonResponse is null");
+            if (JenkinsArtifactDownloader.isStreamingMode(props)) {
+                streamedBuild = JenkinsArtifactDownloader.locateArtifacts(args);
+                jsonResponse = streamedBuild.getJson();
+                logger.info("Located artifacts, streaming them into the upload");
+            } else {
+                jsonResponse = JenkinsArtifactDownloader.downloadArtifacts(args);
+                if (jsonResponse == null) {
+                    throw new RuntimeException("Download failed: jsonResponse is null");
+                }
+                saveDir = JenkinsArtifactDownloader.getSaveDirectory(props);
+                logger.info("Download completed successfully");
             }
-            saveDir = JenkinsArtifactDownloader.getSaveDirectory(props);
-            logger.info("Download completed successfully");
         } catch (JSONException e) {
             logger.error("Artifact download failed: {}", e.getMessage(), e);
             System.exit(1);
@@ -48,7 +96,13 @@ public class App {
         // Execute upload process
         try {
             HanaDataUploader uploader = new HanaDataUploader(jsonResponse);
-            uploader.uploadAllFiles(saveDir);
+            if (streamedBuild != null) {
+                try (JenkinsBuild build = streamedBuild) {
+                    uploader.uploadAllStreams(build::open);
+                }
+            } else {
+                uploader.uploadAllFiles(saveDir);
+            }
             logger.info("Upload to HANA database completed successfully");
         } catch (JSONException e) {
             logger.error("Database upload failed: {}", e.getMessage(), e);
@@ -56,6 +110,100 @@ public class App {
         }
     }
 
+    // Writes the synthetic workbooks, exiting with status 2 on bad arguments like a backfill
+    private static void runGenerator(String[] args) {
+        WorkbookGenerator generator;
+        try {
+            generator = WorkbookGenerator.fromArgs(Arrays.copyOfRange(args, 1, args.length));
+        } catch (IllegalArgumentException e) {
+            logger.error("Usage: generate <dir> [--sheets=<n>] [--builds=<n>] [--rows=<n>] "
+                    + "[--mix=numeric:<w>,string:<w>,formula:<w>,blank:<w>] [--seed=<n>] ({})", e.getMessage());
+            System.exit(2);
+            return;
+        }
+        try {
+            logger.info("Generated {}", generator.writeAll());
+        } catch (IOException e) {
+            logger.error("Generating workbooks failed: {}", e.getMessage(), e);
+            System.exit(1);
+        }
+    }
+
+    // Runs a backfill and exits with a failure status when any build of the range failed
+    private static void runBackfill(String[] args, Properties props) throws InterruptedException {
+        int[] range;
+        try {
+            range = Backfill.parseRange(args);
+        } catch (IllegalArgumentException e) {
+            logger.error("Usage: backfill <first build> [<last build>] ({})", e.getMessage());
+            System.exit(2);
+            return;
+        }
+        List<Integer> failed;
+        try (Backfill backfill = Backfill.fromConfig(props)) {
+            failed = backfill.run(range[0], range[1]);
+        } catch (IOException | SQLException e) {
+            logger.error("Backfill failed: {}", e.getMessage(), e);
+            System.exit(1);
+            return;
+        }
+        if (!failed.isEmpty()) {
+            logger.error("Backfill failed for {} builds: {}", failed.size(), failed);
+            System.exit(1);
+        }
+        logger.info("Backfill completed successfully");
+    }
+
+    // Runs the daemon until the JVM is shut down (SIGTERM or Ctrl-C)
+    private static void runDaemon(Properties props) throws InterruptedException {
+        Daemon daemon;
+        try {
+            daemon = Daemon.fromConfig(props);
+            Runtime.getRuntime().addShutdownHook(new Thread(daemon::close, "daemon-shutdown"));
+            daemon.start();
+        } catch (IOException | SQLException e) {
+            logger.error("Daemon failed to start: {}", e.getMessage(), e);
+            System.exit(1);
+            return;
+        }
+        daemon.awaitStop();
+        logger.info("Daemon stopped");
+    }
+
+    // Uploads the latest build of every job of JOBS and exits with a failure status when any job failed
+    private static void runJobs(Properties props) throws InterruptedException {
+        List<String> failed;
+        try (MultiJobRunner runner = MultiJobRunner.fromConfig(props)) {
+            failed = runner.runLatestBuilds();
+        } catch (IOException | SQLException e) {
+            logger.error("Multi-job upload failed: {}", e.getMessage(), e);
+            System.exit(1);
+            return;
+        }
+        if (!failed.isEmpty()) {
+            logger.error("Upload failed for {} jobs: {}", failed.size(), failed);
+            System.exit(1);
+        }
+        logger.info("Upload of all jobs completed successfully");
+    }
+
+    // With METRICS_FILE set, writes the metrics there when the JVM exits (also on System.exit), e.g. into the
+    // directory of the node_exporter textfile collector
+    private static void writeMetricsOnExit(Properties props) {
+        String metricsFile = props.getProperty("METRICS_FILE");
+        if (metricsFile == null || metricsFile.isBlank()) {
+            return;
+        }
+        Path file = Paths.get(metricsFile.trim());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                MetricsRegistry.global().writeTextfile(file);
+            } catch (IOException e) {
+                logger.error("Failed to write metrics to {}: {}", file, e.getMessage(), e);
+            }
+        }, "metrics-writer"));
+    }
+
     // Helper method that loads the configuration properties
     private static Properties loadProperties() throws IOException {
         Properties props = new Properties();
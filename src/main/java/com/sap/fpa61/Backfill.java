@@ -0,0 +1,231 @@
+package com.sap.fpa61;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONException;
+
+import com.sap.fpa61.db.HanaDataUploader;
+import com.sap.fpa61.db.UploadDatabase;
+import com.sap.fpa61.jenkins.JenkinsArtifactDownloader;
+import com.sap.fpa61.jenkins.JenkinsBuild;
+import com.sap.fpa61.jenkins.JenkinsJob;
+
+// Uploads past builds of the job: "backfill <first> [<last>]" takes the successful builds from first to last (or
+// all builds since first), as listed by the Jenkins API, oldest first. Up to BACKFILL_THREADS builds are located and
+// downloaded ahead in parallel, while the uploads run one build at a time in build order: consecutive builds share
+// most of their date columns and a run is loaded only once (natural key), so each run goes to the first build that
+// had it, as with the regular runs. Every build uploaded completely is recorded in the checkpoint file
+// (BACKFILL_CHECKPOINT), so an interrupted backfill resumes with the builds not done yet. A build that failed is
+// retried by the next run, where the runs it had loaded already are skipped
+class Backfill implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(Backfill.class);
+
+    static final String COMMAND = "backfill";
+    static final int DEFAULT_THREADS = 2;
+
+    private final JenkinsJob job;
+    private final Properties properties;
+    private final BackfillCheckpoint checkpoint;
+    private final int threads;
+    // Connections shared by the uploads of all builds
+    private final UploadDatabase database;
+
+    Backfill(JenkinsJob job, Properties properties, BackfillCheckpoint checkpoint, int threads, UploadDatabase database) {
+        this.job = job;
+        this.properties = properties;
+        this.checkpoint = checkpoint;
+        this.threads = Math.max(1, threads);
+        this.database = database;
+    }
+
+    static Backfill fromConfig(Properties properties) throws IOException, SQLException {
+        JenkinsJob job = new JenkinsJob(properties);
+        BackfillCheckpoint checkpoint = new BackfillCheckpoint(getCheckpointFile(properties), job.getUrl());
+        return new Backfill(job, properties, checkpoint, getThreads(properties), UploadDatabase.open(properties, 1));
+    }
+
+    // Checkpoint file, by default in SAVE_DIR
+    static Path getCheckpointFile(Properties props) {
+        String value = props.getProperty("BACKFILL_CHECKPOINT");
+        if (value == null || value.isBlank()) {
+            return Paths.get(JenkinsArtifactDownloader.getSaveDirectory(props), BackfillCheckpoint.DEFAULT_FILE);
+        }
+        return Paths.get(value.trim());
+    }
+
+    // Number of builds located and downloaded ahead of the uploads
+    static int getThreads(Properties props) {
+        String value = props.getProperty("BACKFILL_THREADS");
+        if (value == null || value.isBlank()) {
+            return DEFAULT_THREADS;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid BACKFILL_THREADS '" + value + "', using " + DEFAULT_THREADS);
+            return DEFAULT_THREADS;
+        }
+    }
+
+    // Build range of the command line ("backfill <first> [<last>]"); without a last build the range is open
+    static int[] parseRange(String[] args) {
+        if (args.length < 2 || args.length > 3) {
+            throw new IllegalArgumentException("expected a first and an optional last build number");
+        }
+        try {
+            int first = Integer.parseInt(args[1].trim());
+            int last = args.length == 3 ? Integer.parseInt(args[2].trim()) : Integer.MAX_VALUE;
+            if (first < 1 || last < first) {
+                throw new IllegalArgumentException("invalid build range " + first + "-" + last);
+            }
+            return new int[] {first, last};
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("build numbers must be integers");
+        }
+    }
+
+    // Uploads the builds in the range that are not checkpointed yet; returns the numbers of the builds that failed
+    List<Integer> run(int first, int last) throws IOException, InterruptedException {
+        List<Integer> builds = job.listSuccessfulBuilds(first, last);
+        List<Integer> pending = builds.stream().filter(number -> !checkpoint.isDone(number)).collect(Collectors.toList());
+        logger.info("Backfilling {} builds ({} already uploaded), fetching up to {} at a time", pending.size(),
+                builds.size() - pending.size(), threads);
+        if (pending.isEmpty()) {
+            return List.of();
+        }
+
+        long startTime = System.currentTimeMillis();
+        ExecutorService fetchers = Executors.newFixedThreadPool(Math.min(threads, pending.size()));
+        // One upload at a time, in the order the builds were submitted
+        ExecutorService uploads = Executors.newSingleThreadExecutor();
+        // Builds fetched or being fetched but not uploaded yet, so that downloads run at most `threads` builds ahead
+        Semaphore inFlight = new Semaphore(threads);
+        Map<Integer, Future<Boolean>> results = new LinkedHashMap<>();
+        try {
+            for (int number : pending) {
+                inFlight.acquire();
+                Future<JenkinsBuild> fetched = fetchers.submit(() -> fetch(number));
+                results.put(number, uploads.submit(() -> {
+                    try {
+                        return upload(number, fetched);
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+            }
+            List<Integer> failed = new ArrayList<>();
+            for (Map.Entry<Integer, Future<Boolean>> result : results.entrySet()) {
+                try {
+                    if (!result.getValue().get()) {
+                        failed.add(result.getKey());
+                    }
+                } catch (ExecutionException e) {
+                    logger.error("Backfill of build " + result.getKey() + " failed: " + e.getCause().getMessage(), e.getCause());
+                    failed.add(result.getKey());
+                }
+            }
+            logger.info("Backfilled {} of {} builds in {} ms", pending.size() - failed.size(), pending.size(),
+                    System.currentTimeMillis() - startTime);
+            return failed;
+        } finally {
+            // Interrupts the builds still running when the backfill itself is interrupted
+            fetchers.shutdownNow();
+            uploads.shutdownNow();
+        }
+    }
+
+    // Locates a build and, unless its workbooks are streamed into the upload, downloads them
+    JenkinsBuild fetch(int number) throws IOException, JSONException {
+        JenkinsBuild build = job.locateBuild(number);
+        try {
+            if (isStreaming()) {
+                build.checkAllFilesFound();
+            } else {
+                build.download();
+            }
+            return build;
+        } catch (IOException | RuntimeException e) {
+            build.close();
+            deleteDirectory(Paths.get(build.getSaveDir()));
+            throw e;
+        }
+    }
+
+    // Uploads a fetched build; it is checkpointed only when every workbook was uploaded
+    boolean upload(int number, Future<JenkinsBuild> fetched) {
+        long startTime = System.currentTimeMillis();
+        JenkinsBuild build;
+        try {
+            build = fetched.get();
+        } catch (ExecutionException e) {
+            logger.error("Backfill of build " + number + " failed: " + e.getCause().getMessage(), e.getCause());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        try (build) {
+            HanaDataUploader uploader = new HanaDataUploader(build.getJson(), properties, database);
+            boolean complete = isStreaming()
+                    ? uploader.uploadAllStreams(build::open)
+                    : uploader.uploadAllFiles(build.getSaveDir());
+            if (!complete) {
+                logger.warn("Not every workbook of build {} was uploaded; it is retried by the next backfill", number);
+                return false;
+            }
+            checkpoint.markDone(number);
+            logger.info("Backfilled build {} in {} ms", number, System.currentTimeMillis() - startTime);
+            return true;
+        } catch (Exception e) {
+            logger.error("Backfill of build " + number + " failed: " + e.getMessage(), e);
+            return false;
+        } finally {
+            // The cache keeps its own copy of the files
+            deleteDirectory(Paths.get(build.getSaveDir()));
+        }
+    }
+
+    @Override
+    public void close() {
+        logger.info(database.summary());
+        database.close();
+    }
+
+    private boolean isStreaming() {
+        return JenkinsArtifactDownloader.isStreamingMode(properties);
+    }
+
+    private static void deleteDirectory(Path dir) {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not delete " + dir + ": " + e.getMessage());
+        }
+    }
+}
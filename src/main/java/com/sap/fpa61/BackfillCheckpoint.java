@@ -0,0 +1,71 @@
+package com.sap.fpa61;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+// Builds a backfill has uploaded, one "<job URL> <build number>" line each. A line is appended and synced to disk
+// as soon as its build is uploaded, so after an interruption a rerun skips exactly the builds that were done.
+// Lines of other jobs are kept but ignored, and a torn last line is skipped
+class BackfillCheckpoint {
+
+    private static final Logger logger = LogManager.getLogger(BackfillCheckpoint.class);
+
+    static final String DEFAULT_FILE = "backfill.checkpoint";
+
+    private final Path file;
+    private final String job;
+    private final Set<Integer> done = ConcurrentHashMap.newKeySet();
+
+    BackfillCheckpoint(Path file, String job) throws IOException {
+        this.file = file;
+        this.job = job;
+        load();
+    }
+
+    boolean isDone(int buildNumber) {
+        return done.contains(buildNumber);
+    }
+
+    int size() {
+        return done.size();
+    }
+
+    // Records an uploaded build
+    synchronized void markDone(int buildNumber) throws IOException {
+        if (!done.add(buildNumber)) {
+            return;
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.writeString(file, job + " " + buildNumber + System.lineSeparator(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+    }
+
+    private void load() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            int separator = line.lastIndexOf(' ');
+            if (separator < 0 || !line.substring(0, separator).equals(job)) {
+                continue;
+            }
+            try {
+                done.add(Integer.parseInt(line.substring(separator + 1).trim()));
+            } catch (NumberFormatException e) {
+                logger.warn("Ignoring damaged checkpoint line: " + line);
+            }
+        }
+        logger.info("Checkpoint {} lists {} builds of {} as uploaded", file, done.size(), job);
+    }
+}
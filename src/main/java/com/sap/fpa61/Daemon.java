@@ -0,0 +1,334 @@
+package com.sap.fpa61;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONObject;
+
+import com.sap.fpa61.db.UploadDatabase;
+import com.sap.fpa61.jenkins.JenkinsArtifactDownloader;
+import com.sap.fpa61.jenkins.JenkinsBuild;
+import com.sap.fpa61.jenkins.JenkinsJob;
+
+// Long-running mode ("daemon"): polls the id of the latest successful build of every job (JOBS, or the single
+// configured job) every DAEMON_POLL_SECONDS, spread by +/- DAEMON_JITTER of the interval, and uploads a build only
+// when its id changed since the last upload. A failed poll or upload doubles the job's interval, up to
+// DAEMON_MAX_BACKOFF_SECONDS. The HTTP client, the DB pool (migrated once), the artifact cache and the loaded
+// classes stay warm between builds, and the uploaded ids are kept in DAEMON_STATE (SAVE_DIR/daemon.state) across
+// restarts. /health and /status are served on 127.0.0.1:DAEMON_STATUS_PORT (a negative port disables them)
+class Daemon implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(Daemon.class);
+
+    static final String COMMAND = "daemon";
+    static final String DEFAULT_STATE_FILE = "daemon.state";
+    static final double DEFAULT_POLL_SECONDS = 300;
+    static final double DEFAULT_JITTER = 0.1;
+    static final double DEFAULT_MAX_BACKOFF_SECONDS = 3600;
+    static final int DEFAULT_STATUS_PORT = 8089;
+    // Failures after which /health reports a job as down
+    static final int UNHEALTHY_FAILURES = 3;
+
+    // What the daemon knows about one job, as shown by /status
+    private static class JobStatus {
+
+        final JobConfig job;
+        // Id of the last build uploaded completely
+        volatile String uploadedBuild;
+        volatile String latestBuild;
+        volatile Instant lastPoll;
+        volatile Instant lastUpload;
+        volatile Instant nextPoll;
+        volatile String lastError;
+        volatile int failures = 0;
+        volatile boolean uploading = false;
+
+        JobStatus(JobConfig job) {
+            this.job = job;
+        }
+
+        JSONObject toJson() {
+            return new JSONObject()
+                    .put("uploadedBuild", orNull(uploadedBuild))
+                    .put("latestBuild", orNull(latestBuild))
+                    .put("lastPoll", orNull(lastPoll))
+                    .put("lastUpload", orNull(lastUpload))
+                    .put("nextPoll", orNull(nextPoll))
+                    .put("uploading", uploading)
+                    .put("failures", failures)
+                    .put("lastError", orNull(lastError));
+        }
+
+        private static Object orNull(Object value) {
+            return value == null ? JSONObject.NULL : value.toString();
+        }
+    }
+
+    private final Map<String, JobStatus> jobs = new LinkedHashMap<>();
+    private final UploadDatabase database;
+    private final JobScheduler scheduler;
+    private final ScheduledExecutorService timer;
+    private final Path stateFile;
+    private final Properties state = new Properties();
+    private final long pollMillis;
+    private final double jitter;
+    private final long maxBackoffMillis;
+    private final int statusPort;
+    private final Instant started = Instant.now();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private StatusServer statusServer;
+    private volatile boolean closed = false;
+
+    Daemon(List<JobConfig> jobs, Properties properties, UploadDatabase database, int threads) throws IOException {
+        this.database = database;
+        this.scheduler = new JobScheduler(threads);
+        for (JobConfig job : jobs) {
+            this.jobs.put(job.name, new JobStatus(job));
+            // One build per job at a time: a job is polled again only after its upload
+            scheduler.addJob(job.name, 1);
+        }
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "daemon-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.stateFile = getStateFile(properties);
+        this.pollMillis = seconds(properties, "DAEMON_POLL_SECONDS", DEFAULT_POLL_SECONDS);
+        this.jitter = Math.min(1, Math.max(0, number(properties, "DAEMON_JITTER", DEFAULT_JITTER)));
+        this.maxBackoffMillis = Math.max(pollMillis,
+                seconds(properties, "DAEMON_MAX_BACKOFF_SECONDS", DEFAULT_MAX_BACKOFF_SECONDS));
+        this.statusPort = (int) number(properties, "DAEMON_STATUS_PORT", DEFAULT_STATUS_PORT);
+        loadState();
+    }
+
+    static Daemon fromConfig(Properties properties) throws IOException, SQLException {
+        List<JobConfig> jobs = JobConfig.jobsOf(properties);
+        if (jobs.isEmpty()) {
+            throw new IOException("No jobs listed in JOBS");
+        }
+        int threads = MultiJobRunner.getThreads(properties);
+        UploadDatabase database = UploadDatabase.open(properties, threads);
+        try {
+            return new Daemon(jobs, properties, database, threads);
+        } catch (IOException e) {
+            database.close();
+            throw e;
+        }
+    }
+
+    // State file, by default in SAVE_DIR
+    static Path getStateFile(Properties props) {
+        String value = props.getProperty("DAEMON_STATE");
+        if (value == null || value.isBlank()) {
+            return Paths.get(JenkinsArtifactDownloader.getSaveDirectory(props), DEFAULT_STATE_FILE);
+        }
+        return Paths.get(value.trim());
+    }
+
+    // Starts the status endpoint and the first poll of every job
+    void start() throws IOException {
+        if (statusPort >= 0) {
+            statusServer = new StatusServer(statusPort, this::isHealthy, this::status);
+            logger.info("Status endpoint on http://127.0.0.1:{}/status", statusServer.getPort());
+        }
+        logger.info("Polling {} jobs every {} s: {}", jobs.size(), pollMillis / 1000.0, jobs.keySet());
+        for (JobStatus job : jobs.values()) {
+            schedulePoll(job, jittered(Math.min(pollMillis, 1000)));
+        }
+    }
+
+    // Blocks until the daemon is closed
+    void awaitStop() throws InterruptedException {
+        stopped.await();
+    }
+
+    int getStatusPort() {
+        return statusServer == null ? -1 : statusServer.getPort();
+    }
+
+    // Polls the latest build id of a job and queues its upload when the id changed
+    private void poll(JobStatus job) {
+        if (closed) {
+            return;
+        }
+        job.lastPoll = Instant.now();
+        String buildId;
+        try {
+            buildId = new JenkinsJob(job.job.properties).lastSuccessfulBuildId();
+        } catch (Exception e) {
+            failed(job, "Poll", e);
+            return;
+        }
+        job.latestBuild = buildId;
+        if (buildId == null || buildId.equals(job.uploadedBuild)) {
+            job.failures = 0;
+            job.lastError = null;
+            schedulePoll(job, nextDelay(0));
+            return;
+        }
+        logger.info("Job {}: new build {} (last uploaded {})", job.job.name, buildId, job.uploadedBuild);
+        job.uploading = true;
+        scheduler.submit(job.job.name, () -> upload(job)).whenComplete((complete, e) -> {
+            job.uploading = false;
+            if (e != null) {
+                failed(job, "Upload", e);
+            } else if (!complete) {
+                failed(job, "Upload", new IOException("Build " + job.latestBuild + " was uploaded partially"));
+            } else {
+                job.failures = 0;
+                job.lastError = null;
+                schedulePoll(job, nextDelay(0));
+            }
+        });
+    }
+
+    // Uploads the latest successful build of a job; records its id when every workbook was uploaded
+    private boolean upload(JobStatus job) throws Exception {
+        try (JenkinsBuild build = new JenkinsJob(job.job.properties).locateLastSuccessfulBuild()) {
+            boolean complete = MultiJobRunner.upload(job.job, build, database);
+            if (complete) {
+                String buildId = String.valueOf(build.getJson().opt("id"));
+                job.uploadedBuild = buildId;
+                job.lastUpload = Instant.now();
+                saveState(job.job.name, buildId);
+            }
+            return complete;
+        }
+    }
+
+    private void failed(JobStatus job, String step, Throwable e) {
+        if (closed) {
+            return;
+        }
+        job.failures++;
+        job.lastError = step + " failed: " + e.getMessage();
+        long delay = nextDelay(job.failures);
+        logger.error("Job {}: {}, retrying in {} s", job.job.name, job.lastError, delay / 1000.0, e);
+        schedulePoll(job, delay);
+    }
+
+    private void schedulePoll(JobStatus job, long delayMillis) {
+        if (closed) {
+            return;
+        }
+        job.nextPoll = Instant.now().plusMillis(delayMillis);
+        try {
+            timer.schedule(() -> poll(job), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Closed meanwhile
+        }
+    }
+
+    // The poll interval, doubled per consecutive failure up to the maximum backoff, with jitter
+    long nextDelay(int failures) {
+        long delay = pollMillis;
+        for (int i = 0; i < failures && delay < maxBackoffMillis; i++) {
+            delay *= 2;
+        }
+        return jittered(Math.min(delay, maxBackoffMillis));
+    }
+
+    private long jittered(long delayMillis) {
+        double factor = 1 + jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        return Math.max(0, Math.round(delayMillis * factor));
+    }
+
+    // Healthy while running and not every job keeps failing
+    boolean isHealthy() {
+        return !closed && jobs.values().stream().anyMatch(job -> job.failures < UNHEALTHY_FAILURES);
+    }
+
+    JSONObject status() {
+        JSONObject jobStatus = new JSONObject();
+        jobs.forEach((name, job) -> jobStatus.put(name, job.toJson()));
+        return new JSONObject()
+                .put("status", isHealthy() ? "UP" : "DOWN")
+                .put("started", started.toString())
+                .put("uptimeSeconds", (Instant.now().toEpochMilli() - started.toEpochMilli()) / 1000)
+                .put("pollSeconds", pollMillis / 1000.0)
+                .put("queued", scheduler.queued())
+                .put("running", scheduler.running())
+                .put("database", database.summary())
+                .put("jobs", jobStatus);
+    }
+
+    private void loadState() throws IOException {
+        if (Files.exists(stateFile)) {
+            try (InputStream input = Files.newInputStream(stateFile)) {
+                state.load(input);
+            }
+        }
+        for (JobStatus job : jobs.values()) {
+            job.uploadedBuild = state.getProperty(job.job.name);
+        }
+    }
+
+    // Writes the state to a temporary file first, so that a crash cannot leave it torn
+    private synchronized void saveState(String job, String buildId) throws IOException {
+        state.setProperty(job, buildId);
+        Path parent = stateFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+        try (OutputStream output = Files.newOutputStream(temp)) {
+            state.store(output, "Last build uploaded per job");
+        }
+        Files.move(temp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long seconds(Properties props, String key, double defaultValue) {
+        return Math.round(Math.max(0, number(props, key, defaultValue)) * 1000);
+    }
+
+    private static double number(Properties props, String key, double defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid " + key + " '" + value + "', using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    // Stops polling, cancels the waiting uploads and releases the DB pool
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        timer.shutdownNow();
+        scheduler.close();
+        if (statusServer != null) {
+            statusServer.close();
+        }
+        logger.info(database.summary());
+        database.close();
+        stopped.countDown();
+    }
+}
@@ -0,0 +1,60 @@
+package com.sap.fpa61;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+// "--jfr" or "--jfr=<file>" in the arguments records the run with the JDK Flight Recorder: the JDK's "default"
+// settings (meant for production, about 1% overhead) plus the upload's own events (com.sap.fpa61.*: artifact
+// downloads, Jenkins fetches, sheets, columns, TEST_RUN inserts, batch flushes and DDL). The file is written when the
+// JVM exits, also after System.exit; without a name it is pnr-upload-<timestamp>.jfr in the working directory
+final class FlightRecording {
+
+    private static final Logger logger = LogManager.getLogger(FlightRecording.class);
+
+    static final String FLAG = "--jfr";
+    static final String SETTINGS = "default";
+
+    private FlightRecording() {
+    }
+
+    // The recording file the arguments ask for, or null without the flag
+    static Path requestedFile(String[] args) {
+        Path file = null;
+        for (String arg : args) {
+            if (arg.equals(FLAG)) {
+                file = Paths.get("pnr-upload-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".jfr");
+            } else if (arg.startsWith(FLAG + "=")) {
+                file = Paths.get(arg.substring(FLAG.length() + 1));
+            }
+        }
+        return file;
+    }
+
+    // The arguments without the flag, for the commands
+    static String[] withoutFlag(String[] args) {
+        return Arrays.stream(args).filter(arg -> !arg.equals(FLAG) && !arg.startsWith(FLAG + "=")).toArray(String[]::new);
+    }
+
+    // Starts recording into the file, which is written when the recording is stopped or the JVM exits
+    static Recording start(Path file) throws IOException, ParseException {
+        Recording recording = new Recording(Configuration.getConfiguration(SETTINGS));
+        recording.setName("pnr-upload");
+        recording.setToDisk(true);
+        recording.setDumpOnExit(true);
+        recording.setDestination(file.toAbsolutePath());
+        recording.start();
+        logger.info("Recording JFR events to {}", file.toAbsolutePath());
+        return recording;
+    }
+}
@@ -0,0 +1,104 @@
+package com.sap.fpa61;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.sap.fpa61.jenkins.JenkinsArtifactDownloader;
+
+// One Jenkins job of a multi-job configuration. JOBS=a,b lists the jobs, and JOB.<name>.<KEY> sets any key for one
+// job (JENKINS_URL, DOWNLOAD_BASE_URL, JENKINS_JOB_URL, credentials, JENKINS_JOB_NAME, DOWNLOAD_* and UPLOAD_*
+// tuning). Other keys a job does not set are taken from the top level, except the URLs and job name, which belong to
+// one job; the DB settings are shared by all jobs. Every job saves into SAVE_DIR/jobs/<name>/ unless it sets its own
+// SAVE_DIR, and JOB.<name>.MAX_BUILDS limits how many of its builds are processed at once
+class JobConfig {
+
+    private static final Logger logger = LogManager.getLogger(JobConfig.class);
+
+    static final String JOBS = "JOBS";
+    static final String PREFIX = "JOB.";
+    static final String JOBS_DIR = "jobs";
+    static final int DEFAULT_MAX_BUILDS = 1;
+    // Name of the job when JOBS is not set
+    static final String SINGLE_JOB = "default";
+
+    // Keys of the top level that belong to the single-job configuration only
+    private static final Set<String> JOB_KEYS = Set.of("JENKINS_URL", "DOWNLOAD_BASE_URL", "JENKINS_JOB_URL", "JENKINS_JOB_NAME");
+
+    final String name;
+    final Properties properties;
+    final int maxBuilds;
+
+    JobConfig(String name, Properties properties, int maxBuilds) {
+        this.name = name;
+        this.properties = properties;
+        this.maxBuilds = maxBuilds;
+    }
+
+    static boolean isMultiJob(Properties props) {
+        String jobs = props.getProperty(JOBS);
+        return jobs != null && !jobs.isBlank();
+    }
+
+    // The jobs of JOBS, in the order listed
+    static List<JobConfig> fromProperties(Properties props) {
+        Set<String> names = new LinkedHashSet<>();
+        for (String name : props.getProperty(JOBS, "").split(",")) {
+            if (!name.isBlank()) {
+                names.add(name.trim());
+            }
+        }
+        List<JobConfig> jobs = new ArrayList<>();
+        for (String name : names) {
+            jobs.add(forJob(props, name));
+        }
+        return jobs;
+    }
+
+    // The jobs of JOBS, or the single job of the top-level configuration
+    static List<JobConfig> jobsOf(Properties props) {
+        if (isMultiJob(props)) {
+            return fromProperties(props);
+        }
+        return List.of(new JobConfig(SINGLE_JOB, props, DEFAULT_MAX_BUILDS));
+    }
+
+    // The top-level properties with the JOB.<name>. keys of one job laid over them
+    static JobConfig forJob(Properties props, String name) {
+        Properties properties = new Properties();
+        String prefix = PREFIX + name + ".";
+        for (String key : props.stringPropertyNames()) {
+            if (!key.startsWith(PREFIX) && !key.equals(JOBS) && !JOB_KEYS.contains(key)) {
+                properties.setProperty(key, props.getProperty(key));
+            }
+        }
+        // The job's builds must not overwrite each other's files in a shared SAVE_DIR
+        properties.setProperty("SAVE_DIR",
+                Paths.get(JenkinsArtifactDownloader.getSaveDirectory(props), JOBS_DIR, name) + "/");
+        for (String key : props.stringPropertyNames()) {
+            if (key.startsWith(prefix)) {
+                properties.setProperty(key.substring(prefix.length()), props.getProperty(key));
+            }
+        }
+        return new JobConfig(name, properties, maxBuilds(properties, name));
+    }
+
+    private static int maxBuilds(Properties properties, String name) {
+        String value = properties.getProperty("MAX_BUILDS");
+        if (value == null || value.isBlank()) {
+            return DEFAULT_MAX_BUILDS;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid " + PREFIX + name + ".MAX_BUILDS '" + value + "', using " + DEFAULT_MAX_BUILDS);
+            return DEFAULT_MAX_BUILDS;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.sap.fpa61;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs the builds of several jobs on one pool of worker threads. Every job has its own queue and a limit on the
+// builds it runs at once; a free worker takes the next job in turn (round robin) that has a build waiting and is
+// below its limit, so a job with a long backlog cannot hold up the others. Workers are named after the job they
+// work for while they run its build
+class JobScheduler implements AutoCloseable {
+
+    // A job's waiting builds and how many of its builds are running
+    private static class JobQueue {
+
+        final String name;
+        final int limit;
+        final Deque<Task<?>> tasks = new ArrayDeque<>();
+        int running = 0;
+
+        JobQueue(String name, int limit) {
+            this.name = name;
+            this.limit = Math.max(1, limit);
+        }
+    }
+
+    // A submitted build and the future of its result
+    private static class Task<T> {
+
+        final Callable<T> callable;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Task(Callable<T> callable) {
+            this.callable = callable;
+        }
+
+        void run() {
+            try {
+                result.complete(callable.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private final int threads;
+    private final ExecutorService workers;
+    private final List<JobQueue> queues = new ArrayList<>();
+    private final Map<String, JobQueue> queuesByName = new HashMap<>();
+    // Position of the job that is offered the next free worker first
+    private int next = 0;
+    private int running = 0;
+    private boolean closed = false;
+
+    JobScheduler(int threads) {
+        this.threads = Math.max(1, threads);
+        AtomicInteger workerCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(this.threads, runnable -> {
+            Thread thread = new Thread(runnable, "job-worker-" + workerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Registers a job with the number of its builds that may run at once
+    synchronized void addJob(String name, int limit) {
+        if (queuesByName.containsKey(name)) {
+            throw new IllegalArgumentException("Job " + name + " is already registered");
+        }
+        JobQueue queue = new JobQueue(name, limit);
+        queues.add(queue);
+        queuesByName.put(name, queue);
+    }
+
+    // Queues a build of a job; the future completes with its result, or exceptionally with its failure
+    synchronized <T> CompletableFuture<T> submit(String job, Callable<T> callable) {
+        JobQueue queue = queuesByName.get(job);
+        if (queue == null) {
+            throw new IllegalArgumentException("Unknown job " + job);
+        }
+        Task<T> task = new Task<>(callable);
+        if (closed) {
+            task.result.cancel(false);
+            return task.result;
+        }
+        queue.tasks.add(task);
+        dispatch();
+        return task.result;
+    }
+
+    // Builds waiting for a worker, over all jobs
+    synchronized int queued() {
+        return queues.stream().mapToInt(queue -> queue.tasks.size()).sum();
+    }
+
+    synchronized int running() {
+        return running;
+    }
+
+    // Hands waiting builds to free workers, taking the jobs in turn
+    private void dispatch() {
+        while (!closed && running < threads) {
+            JobQueue queue = nextEligible();
+            if (queue == null) {
+                return;
+            }
+            Task<?> task = queue.tasks.poll();
+            queue.running++;
+            running++;
+            workers.execute(() -> {
+                Thread thread = Thread.currentThread();
+                String workerName = thread.getName();
+                thread.setName("job-" + queue.name);
+                try {
+                    task.run();
+                } finally {
+                    thread.setName(workerName);
+                    finished(queue);
+                }
+            });
+        }
+    }
+
+    // The next job, starting after the last one served, with a build waiting and room below its limit
+    private JobQueue nextEligible() {
+        for (int i = 0; i < queues.size(); i++) {
+            int index = (next + i) % queues.size();
+            JobQueue queue = queues.get(index);
+            if (!queue.tasks.isEmpty() && queue.running < queue.limit) {
+                next = (index + 1) % queues.size();
+                return queue;
+            }
+        }
+        return null;
+    }
+
+    private synchronized void finished(JobQueue queue) {
+        queue.running--;
+        running--;
+        dispatch();
+    }
+
+    // Cancels the waiting builds and interrupts the running ones
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            for (JobQueue queue : queues) {
+                queue.tasks.forEach(task -> task.result.cancel(false));
+                queue.tasks.clear();
+            }
+        }
+        workers.shutdownNow();
+    }
+}
@@ -0,0 +1,126 @@
+package com.sap.fpa61;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.sap.fpa61.db.HanaDataUploader;
+import com.sap.fpa61.db.UploadDatabase;
+import com.sap.fpa61.jenkins.JenkinsArtifactDownloader;
+import com.sap.fpa61.jenkins.JenkinsBuild;
+import com.sap.fpa61.jenkins.JenkinsJob;
+
+// Uploads the latest successful build of every job of JOBS in one JVM instead of one run per job: the jobs share
+// the HTTP client and one DB pool (migrated and opened once), and a JobScheduler with JOBS_THREADS workers processes
+// them concurrently and in turn. Each build is written with the job's own JENKINS_JOB_NAME (by default the job name
+// of the build's display name)
+class MultiJobRunner implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(MultiJobRunner.class);
+
+    static final int DEFAULT_THREADS = 2;
+
+    private final List<JobConfig> jobs;
+    private final UploadDatabase database;
+    private final JobScheduler scheduler;
+
+    MultiJobRunner(List<JobConfig> jobs, UploadDatabase database, int threads) {
+        this.jobs = jobs;
+        this.database = database;
+        this.scheduler = new JobScheduler(threads);
+        for (JobConfig job : jobs) {
+            scheduler.addJob(job.name, job.maxBuilds);
+        }
+    }
+
+    static MultiJobRunner fromConfig(Properties properties) throws IOException, SQLException {
+        List<JobConfig> jobs = JobConfig.fromProperties(properties);
+        if (jobs.isEmpty()) {
+            throw new IOException("No jobs listed in JOBS");
+        }
+        int threads = getThreads(properties);
+        logger.info("Running {} jobs, {} at a time: {}", jobs.size(), threads,
+                jobs.stream().map(job -> job.name).toList());
+        return new MultiJobRunner(jobs, UploadDatabase.open(properties, threads), threads);
+    }
+
+    // Number of builds, over all jobs, processed at once
+    static int getThreads(Properties props) {
+        String value = props.getProperty("JOBS_THREADS");
+        if (value == null || value.isBlank()) {
+            return DEFAULT_THREADS;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid JOBS_THREADS '" + value + "', using " + DEFAULT_THREADS);
+            return DEFAULT_THREADS;
+        }
+    }
+
+    // Uploads the latest build of every job; returns the names of the jobs whose upload failed or was incomplete
+    List<String> runLatestBuilds() throws InterruptedException {
+        long startTime = System.currentTimeMillis();
+        Map<String, CompletableFuture<Boolean>> results = new LinkedHashMap<>();
+        for (JobConfig job : jobs) {
+            results.put(job.name, scheduler.submit(job.name, () -> uploadLatestBuild(job)));
+        }
+        List<String> failed = new ArrayList<>();
+        for (Map.Entry<String, CompletableFuture<Boolean>> result : results.entrySet()) {
+            try {
+                if (!result.getValue().get()) {
+                    failed.add(result.getKey());
+                }
+            } catch (ExecutionException e) {
+                logger.error("Job " + result.getKey() + " failed: " + e.getCause().getMessage(), e.getCause());
+                failed.add(result.getKey());
+            } catch (CancellationException e) {
+                failed.add(result.getKey());
+            }
+        }
+        logger.info("Uploaded {} of {} jobs in {} ms", jobs.size() - failed.size(), jobs.size(),
+                System.currentTimeMillis() - startTime);
+        return failed;
+    }
+
+    // Locates, downloads (or streams) and uploads the latest successful build of a job
+    boolean uploadLatestBuild(JobConfig job) throws Exception {
+        try (JenkinsBuild build = new JenkinsJob(job.properties).locateLastSuccessfulBuild()) {
+            return upload(job, build, database);
+        }
+    }
+
+    // Downloads (or streams) and uploads a located build of a job; returns whether every workbook was uploaded
+    static boolean upload(JobConfig job, JenkinsBuild build, UploadDatabase database) throws Exception {
+        long startTime = System.currentTimeMillis();
+        HanaDataUploader uploader = new HanaDataUploader(build.getJson(), job.properties, database);
+        boolean complete;
+        if (JenkinsArtifactDownloader.isStreamingMode(job.properties)) {
+            build.checkAllFilesFound();
+            complete = uploader.uploadAllStreams(build::open);
+        } else {
+            build.download();
+            complete = uploader.uploadAllFiles(build.getSaveDir());
+        }
+        logger.info("Job {}: build {} uploaded{} in {} ms", job.name, build.getJson().opt("id"),
+                complete ? "" : " partially", System.currentTimeMillis() - startTime);
+        return complete;
+    }
+
+    @Override
+    public void close() {
+        scheduler.close();
+        logger.info(database.summary());
+        database.close();
+    }
+}
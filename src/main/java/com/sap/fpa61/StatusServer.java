@@ -0,0 +1,60 @@
+package com.sap.fpa61;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import org.json.JSONObject;
+
+import com.sap.fpa61.metrics.MetricsRegistry;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// Local HTTP endpoint of the daemon, bound to the loopback address only: GET /health answers 200 "UP" while the
+// daemon is healthy and 503 "DOWN" otherwise, GET /status returns its state as JSON and GET /metrics the metrics
+// registry in the Prometheus text format. Port 0 picks a free port
+class StatusServer implements AutoCloseable {
+
+    private final HttpServer server;
+
+    StatusServer(int port, BooleanSupplier healthy, Supplier<JSONObject> status) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/health", exchange -> {
+            boolean up = healthy.getAsBoolean();
+            respond(exchange, up ? 200 : 503, "text/plain", up ? "UP" : "DOWN");
+        });
+        server.createContext("/status", exchange -> respond(exchange, 200, "application/json",
+                status.get().toString(2)));
+        server.createContext("/metrics", exchange -> respond(exchange, 200, "text/plain; version=0.0.4",
+                MetricsRegistry.global().scrape()));
+        server.start();
+    }
+
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
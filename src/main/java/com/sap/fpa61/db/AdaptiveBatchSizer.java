@@ -0,0 +1,100 @@
+package com.sap.fpa61.db;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+// Tunes the TEST_RESULT batch size from the measured executeBatch latency. Starting at the minimum, the size is
+// doubled after every measurement window as long as rows/second keep improving; once a step stops paying off
+// it falls back to the best size and stays there, unless throughput later drops so far that it searches again
+class AdaptiveBatchSizer {
+
+    private static final Logger logger = LogManager.getLogger(AdaptiveBatchSizer.class);
+
+    // Batches measured per size before comparing throughput
+    static final int WINDOW = 3;
+    // Minimum gain for a bigger batch to count as an improvement
+    static final double MIN_GAIN = 1.05;
+    // Throughput loss (against the settled rate) that restarts the search
+    static final double RESEARCH_DROP = 0.75;
+
+    private final int minSize;
+    private final int maxSize;
+
+    private int size;
+    private int bestSize;
+    private double bestThroughput = 0;
+    private boolean settled;
+
+    private int windowBatches = 0;
+    private long windowRows = 0;
+    private long windowNanos = 0;
+    private double lastThroughput = 0;
+
+    AdaptiveBatchSizer(int minSize, int maxSize) {
+        this.minSize = minSize;
+        this.maxSize = Math.max(minSize, maxSize);
+        this.size = minSize;
+        this.bestSize = minSize;
+        this.settled = minSize == this.maxSize;
+    }
+
+    synchronized int batchSize() {
+        return size;
+    }
+
+    // Records one executeBatch. Partial batches (the tail of a sheet) are not representative and are ignored
+    synchronized void record(int rows, long elapsedNanos) {
+        if (rows < size || elapsedNanos <= 0) {
+            return;
+        }
+        windowBatches++;
+        windowRows += rows;
+        windowNanos += elapsedNanos;
+        if (windowBatches < WINDOW) {
+            return;
+        }
+
+        double throughput = windowRows * 1_000_000_000.0 / windowNanos;
+        windowBatches = 0;
+        windowRows = 0;
+        windowNanos = 0;
+        lastThroughput = throughput;
+
+        if (settled) {
+            if (minSize < maxSize && throughput < bestThroughput * RESEARCH_DROP) {
+                logger.info("Batch throughput dropped to " + Math.round(throughput) + " rows/s, re-tuning batch size");
+                settled = false;
+                bestThroughput = 0;
+                size = minSize;
+                bestSize = minSize;
+            }
+            return;
+        }
+
+        if (bestThroughput == 0 || throughput >= bestThroughput * MIN_GAIN) {
+            bestThroughput = throughput;
+            bestSize = size;
+            int next = Math.min(maxSize, size * 2);
+            if (next == size) {
+                settle();
+            } else {
+                size = next;
+            }
+        } else {
+            settle();
+        }
+    }
+
+    private void settle() {
+        size = bestSize;
+        settled = true;
+        logger.debug("Batch size settled at " + size + " rows (" + Math.round(bestThroughput) + " rows/s)");
+    }
+
+    // One-line description for the run summary
+    synchronized String summary() {
+        String rate = lastThroughput > 0 ? ", last " + Math.round(lastThroughput) + " rows/s" : "";
+        return "JDBC batch size " + (settled ? "settled at " : "still tuning at ") + size + " rows" + rate
+                + " (limits " + minSize + "-" + maxSize + ")";
+    }
+}
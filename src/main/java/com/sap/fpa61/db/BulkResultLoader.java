@@ -0,0 +1,159 @@
+package com.sap.fpa61.db;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+// Bulk path for TEST_RESULT (UPLOAD_LOAD_MODE=bulk): decoded rows are appended to a CSV file in the staging
+// directory, imported into TEST_RESULT_STAGING with one CSV import (IMPORT FROM CSV FILE on HANA) and moved into TEST_RESULT with one
+// INSERT ... SELECT joined to TEST_RUN. Every load is tagged with its own LOAD_ID, so concurrent uploaders can
+// share the staging table. The path is not transactional: on HANA the import commits the open transaction, so
+// UploadOptions only allows it with UPLOAD_COMMIT=auto or rows
+class BulkResultLoader {
+
+    private static final Logger logger = LogManager.getLogger(BulkResultLoader.class);
+
+    static final String TABLE_STAGING = "TEST_RESULT_STAGING";
+    static final List<String> STAGING_COLUMNS = List.of("LOAD_ID", "RUN_ID", "ENTITY_NAME", "DURATION_MS");
+
+    private final SqlDialect dialect;
+
+    // Directory the uploader writes to, and the same directory as seen by the database server
+    private final Path stagingDir;
+    private final String serverDir;
+
+    private String loadId;
+    private Path csvFile;
+    private BufferedWriter writer;
+    private int stagedRows = 0;
+
+    BulkResultLoader(SqlDialect dialect, Path stagingDir, String serverDir) {
+        this.dialect = dialect;
+        this.stagingDir = stagingDir;
+        this.serverDir = serverDir;
+    }
+
+    // Appends results to the CSV file of the current load
+    void add(List<HanaDataUploader.TestResultBatch> results) throws SQLException {
+        try {
+            if (writer == null) {
+                Files.createDirectories(stagingDir);
+                loadId = UUID.randomUUID().toString();
+                csvFile = stagingDir.resolve("test_result_" + loadId + ".csv");
+                writer = Files.newBufferedWriter(csvFile, StandardCharsets.UTF_8);
+            }
+            for (HanaDataUploader.TestResultBatch result : results) {
+                writer.write(quote(loadId));
+                writer.write(',');
+                writer.write(quote(Integer.toString(result.runId)));
+                writer.write(',');
+                writer.write(quote(result.entityName));
+                writer.write(',');
+                writer.write(quote(Double.toString(result.duration)));
+                writer.write('\n');
+            }
+            stagedRows += results.size();
+        } catch (IOException e) {
+            discard();
+            throw new SQLException("Failed to write bulk load file", e);
+        }
+    }
+
+    int getStagedRows() {
+        return stagedRows;
+    }
+
+    // Imports the staged rows and moves them into TEST_RESULT, returns the number of results inserted. The import
+    // and the move run on the caller's connection, but the import commits on its own on HANA, so a failed load can
+    // leave committed staging rows behind. They are deleted through the cleanup connection (auto-commit, or the
+    // caller's connection when there is no other) whether the load succeeds or not
+    int load(Connection connection, Connection cleanupConnection) throws SQLException {
+        if (writer == null) {
+            return 0;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            discard();
+            throw new SQLException("Failed to write bulk load file", e);
+        }
+
+        long startTime = System.currentTimeMillis();
+        int staged = stagedRows;
+        String stagedLoadId = loadId;
+        int inserted;
+        try {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute(dialect.csvImport(TABLE_STAGING, STAGING_COLUMNS, serverDir + "/" + csvFile.getFileName()));
+            }
+
+            String insertSql = "INSERT INTO " + HanaDataUploader.TABLE_TEST_RESULT + " (RUN_ID, ENTITY_NAME, DURATION_MS) "
+                    + "SELECT s.RUN_ID, s.ENTITY_NAME, s.DURATION_MS FROM " + TABLE_STAGING + " s "
+                    + "JOIN " + HanaDataUploader.TABLE_TEST_RUN + " r ON r.RUN_ID = s.RUN_ID WHERE s.LOAD_ID = ?";
+            try (PreparedStatement stmt = connection.prepareStatement(insertSql)) {
+                stmt.setString(1, loadId);
+                inserted = stmt.executeUpdate();
+            }
+        } catch (SQLException e) {
+            logger.error("Bulk load of " + staged + " test results failed: " + e.getMessage(), e);
+            throw new SQLException("Bulk load of test results failed", e);
+        } finally {
+            discard();
+            deleteStagingRows(cleanupConnection, stagedLoadId);
+        }
+
+        if (inserted != staged) {
+            throw new SQLException((staged - inserted) + " of " + staged + " staged test results reference missing test runs");
+        }
+        logger.debug("Bulk loaded {} test results in {} ms", inserted, System.currentTimeMillis() - startTime);
+        return inserted;
+    }
+
+    // Deletes the staging rows of a load; a failure is only logged, the rows are tagged and harmless to other loads
+    private static void deleteStagingRows(Connection connection, String loadId) {
+        try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM " + TABLE_STAGING + " WHERE LOAD_ID = ?")) {
+            stmt.setString(1, loadId);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            logger.warn("Could not delete the staging rows of bulk load " + loadId + ": " + e.getMessage());
+        }
+    }
+
+    // Drops the current load file without importing it
+    void discard() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                // Deleted below anyway
+            }
+            writer = null;
+        }
+        if (csvFile != null) {
+            try {
+                Files.deleteIfExists(csvFile);
+            } catch (IOException e) {
+                logger.warn("Could not delete bulk load file " + csvFile + ": " + e.getMessage());
+            }
+            csvFile = null;
+        }
+        stagedRows = 0;
+    }
+
+    // Helper method to quote a CSV field, doubling embedded quotes. Every field is quoted, so separators, quotes and
+    // line breaks in entity names stay inside their field
+    static String quote(String value) {
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,344 @@
+package com.sap.fpa61.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+// Small pool of worker connections, positioned on the upload schema, shared by the parallel file, sheet and
+// writer modes and the scenario inserts. Connections are handed out as proxies whose close() returns them;
+// they are validated on borrow, the minimum is opened up front (connect, TLS handshake and login happen
+// before the upload starts), and connections held longer than the leak threshold are logged with the
+// stack trace of the borrower at the next borrow, or when the pool is closed
+class ConnectionPool implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(ConnectionPool.class);
+
+    // Seconds a validation round trip may take before the connection is replaced
+    static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    private final String url;
+    private final Properties properties;
+    private final String initSql;
+    private final int minSize;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long leakThresholdMillis;
+
+    // Limits the connections in use (borrowed) to maxSize
+    private final Semaphore permits;
+    private final Deque<Connection> idle = new ArrayDeque<>();
+    private final Map<Connection, Borrow> borrowed = new ConcurrentHashMap<>();
+    private boolean closed = false;
+
+    // Counters for the summary
+    private int created = 0;
+    private int replaced = 0;
+    private int maxInUse = 0;
+    private int leaksReported = 0;
+
+    // Who holds a connection since when, for leak detection
+    private static class Borrow {
+
+        final long since = System.currentTimeMillis();
+        final Exception borrower = new Exception("Connection borrowed here");
+        boolean reported = false;
+    }
+
+    // initSql is run on every new connection (e.g. SET SCHEMA), or null
+    ConnectionPool(String url, Properties properties, String initSql, int minSize, int maxSize, long borrowTimeoutMillis,
+            long leakThresholdMillis) {
+        this.url = url;
+        this.properties = properties;
+        this.initSql = initSql;
+        this.maxSize = Math.max(1, maxSize);
+        this.minSize = Math.min(Math.max(0, minSize), this.maxSize);
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.permits = new Semaphore(this.maxSize, true);
+    }
+
+    // Opens the minimum number of connections in parallel, so their handshakes overlap
+    void warmUp() throws SQLException {
+        int missing;
+        synchronized (this) {
+            missing = minSize - idle.size() - borrowed.size();
+        }
+        if (missing <= 0) {
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(missing);
+        try {
+            List<CompletableFuture<Connection>> futures = new ArrayList<>();
+            for (int i = 0; i < missing; i++) {
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return createConnection();
+                    } catch (SQLException e) {
+                        throw new CompletionException(e);
+                    }
+                }, executor));
+            }
+            SQLException failure = null;
+            for (CompletableFuture<Connection> future : futures) {
+                try {
+                    Connection connection = future.join();
+                    synchronized (this) {
+                        idle.push(connection);
+                    }
+                } catch (CompletionException e) {
+                    failure = e.getCause() instanceof SQLException ? (SQLException) e.getCause() : new SQLException(e.getCause());
+                }
+            }
+            if (failure != null) {
+                throw new SQLException("Connection pool warm-up failed", failure);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        logger.info("Opened {} pooled connections in {} ms", missing, System.currentTimeMillis() - startTime);
+    }
+
+    // Hands out an idle connection after validating it, or opens a new one; waits while maxSize connections are in use
+    Connection borrow() throws SQLException {
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                reportLeaks();
+                throw new SQLException("Timed out after " + borrowTimeoutMillis + " ms waiting for one of "
+                        + maxSize + " pooled connections");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a pooled connection", e);
+        }
+
+        try {
+            Connection connection = takeValidIdle();
+            if (connection == null) {
+                connection = createConnection();
+            }
+            synchronized (this) {
+                if (closed) {
+                    connection.close();
+                    throw new SQLException("Connection pool is closed");
+                }
+                borrowed.put(connection, new Borrow());
+                maxInUse = Math.max(maxInUse, borrowed.size());
+            }
+            reportLeaks();
+            return proxy(connection);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    // Number of connections currently borrowed
+    int inUse() {
+        return borrowed.size();
+    }
+
+    synchronized int idleCount() {
+        return idle.size();
+    }
+
+    // Logs the borrowers of connections held longer than the leak threshold (once per borrow), returns their number
+    int reportLeaks() {
+        long now = System.currentTimeMillis();
+        int leaks = 0;
+        for (Borrow borrow : borrowed.values()) {
+            if (now - borrow.since < leakThresholdMillis) {
+                continue;
+            }
+            leaks++;
+            synchronized (borrow) {
+                if (!borrow.reported) {
+                    borrow.reported = true;
+                    logger.warn("Pooled connection held for " + (now - borrow.since) + " ms, possible leak", borrow.borrower);
+                    synchronized (this) {
+                        leaksReported++;
+                    }
+                }
+            }
+        }
+        return leaks;
+    }
+
+    synchronized String summary() {
+        return "Connection pool: " + created + " opened, " + replaced + " replaced after failed validation, max "
+                + maxInUse + " of " + maxSize + " in use" + (leaksReported > 0 ? ", " + leaksReported + " possible leaks" : "");
+    }
+
+    // Closes the idle connections, and the borrowed ones, which are reported as leaked
+    @Override
+    public void close() {
+        List<Connection> toClose;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+            for (Map.Entry<Connection, Borrow> entry : borrowed.entrySet()) {
+                logger.warn("Pooled connection not returned before the pool was closed", entry.getValue().borrower);
+                if (!entry.getValue().reported) {
+                    leaksReported++;
+                }
+                toClose.add(entry.getKey());
+            }
+            borrowed.clear();
+        }
+        for (Connection connection : toClose) {
+            closeQuietly(connection);
+        }
+        logger.info(summary());
+    }
+
+    private Connection takeValidIdle() {
+        while (true) {
+            Connection connection;
+            synchronized (this) {
+                connection = idle.poll();
+            }
+            if (connection == null) {
+                return null;
+            }
+            if (isValid(connection)) {
+                return connection;
+            }
+            logger.warn("Discarding pooled connection that failed validation");
+            synchronized (this) {
+                replaced++;
+            }
+            closeQuietly(connection);
+        }
+    }
+
+    private static boolean isValid(Connection connection) {
+        try {
+            return !connection.isClosed() && connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private Connection createConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection(url, properties);
+        if (initSql != null) {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute(initSql);
+            } catch (SQLException e) {
+                connection.close();
+                throw e;
+            }
+        }
+        synchronized (this) {
+            created++;
+        }
+        return connection;
+    }
+
+    // Takes a connection back: an open transaction is rolled back and auto-commit restored, a broken one is dropped
+    private void release(Connection connection) {
+        Borrow borrow;
+        boolean keep;
+        synchronized (this) {
+            borrow = borrowed.remove(connection);
+            keep = !closed;
+        }
+        if (borrow == null) {
+            // Already released, or closed with the pool
+            return;
+        }
+        try {
+            if (keep) {
+                try {
+                    if (!connection.getAutoCommit()) {
+                        connection.rollback();
+                        connection.setAutoCommit(true);
+                    }
+                } catch (SQLException e) {
+                    logger.warn("Dropping pooled connection that could not be reset: " + e.getMessage());
+                    keep = false;
+                }
+            }
+            if (keep) {
+                synchronized (this) {
+                    idle.push(connection);
+                }
+            } else {
+                closeQuietly(connection);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.debug("Error closing pooled connection: " + e.getMessage());
+        }
+    }
+
+    // Wraps a pooled connection so that close() returns it to the pool and later calls fail
+    private Connection proxy(Connection connection) {
+        InvocationHandler handler = new InvocationHandler() {
+            private boolean returned = false;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close":
+                        if (!returned) {
+                            returned = true;
+                            release(connection);
+                        }
+                        return null;
+                    case "isClosed":
+                        return returned || connection.isClosed();
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "Pooled " + connection;
+                    default:
+                        if (returned) {
+                            throw new SQLException("Connection has been returned to the pool");
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                }
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {Connection.class}, handler);
+    }
+}
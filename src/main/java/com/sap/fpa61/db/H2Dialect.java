@@ -0,0 +1,93 @@
+package com.sap.fpa61.db;
+
+import java.util.List;
+import java.util.Properties;
+
+// Embedded H2 database running inside the uploader process (DB_URL=jdbc:h2:...), for local runs and tests
+// without a HANA server. H2 upper-cases unquoted identifiers like HANA, so the upload SQL is shared as is
+class H2Dialect implements SqlDialect {
+
+    static final String URL_PREFIX = "jdbc:h2:";
+
+    @Override
+    public String name() {
+        return "H2";
+    }
+
+    // A file database named after the host, in the working directory
+    @Override
+    public String jdbcUrl(String host, String port) {
+        return URL_PREFIX + "./" + (host == null ? "pnr-results" : host);
+    }
+
+    // Only credentials: H2 rejects unknown connection settings such as encrypt
+    @Override
+    public Properties connectionProperties(Properties config) {
+        Properties connProps = new Properties();
+        HanaDialect.copyProperty(config, "DB_USER", connProps, "user");
+        HanaDialect.copyProperty(config, "DB_PASSWORD", connProps, "password");
+        return connProps;
+    }
+
+    @Override
+    public String setSchema(String schema) {
+        return "SET SCHEMA " + schema;
+    }
+
+    @Override
+    public String currentSchemaQuery() {
+        return "SELECT CURRENT_SCHEMA";
+    }
+
+    @Override
+    public String nextValueQuery(String sequence) {
+        return "SELECT NEXT VALUE FOR " + sequence;
+    }
+
+    @Override
+    public String upsert(String table, List<String> columns, List<String> keyColumns) {
+        return "MERGE INTO " + table + " (" + String.join(", ", columns) + ") KEY (" + String.join(", ", keyColumns)
+                + ") VALUES (" + HanaDialect.placeholders(columns.size()) + ")";
+    }
+
+    // The database runs in process, so the server path is a local path
+    @Override
+    public String csvImport(String table, List<String> columns, String serverPath) {
+        String columnList = String.join(",", columns);
+        return "INSERT INTO " + table + " (" + columnList + ") SELECT * FROM CSVREAD('" + serverPath.replace("'", "''")
+                + "', '" + columnList + "', 'charset=UTF-8')";
+    }
+
+    // H2 has no column store: COLUMN TABLE becomes a regular table
+    @Override
+    public String adaptDdl(String statement) {
+        return statement.replaceAll("(?i)\\bCREATE\\s+COLUMN\\s+TABLE\\b", "CREATE TABLE");
+    }
+
+    @Override
+    public String migrationVariant() {
+        return "h2";
+    }
+
+    @Override
+    public String schemaExistsQuery() {
+        return "SELECT COUNT(*) FROM INFORMATION_SCHEMA.SCHEMATA WHERE SCHEMA_NAME = ?";
+    }
+
+    @Override
+    public String tableExistsQuery(String schema) {
+        return "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = '" + schema + "' AND TABLE_NAME = ?";
+    }
+
+    // DDL always commits in H2
+    @Override
+    public String ddlInTransaction(boolean enabled) {
+        return null;
+    }
+
+    // An embedded database is opened by a single process, whose uploaders migrate it from one connection
+    @Override
+    public String lockTable(String qualifiedTable) {
+        return null;
+    }
+}
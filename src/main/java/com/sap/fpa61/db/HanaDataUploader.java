@@ -1,9 +1,7 @@
 package com.sap.fpa61.db;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.Connection;
@@ -12,13 +10,21 @@ import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
 import java.sql.Statement;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -28,10 +34,12 @@ import org.apache.poi.ss.usermodel.DateUtil;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import com.sap.fpa61.jfr.BatchFlushEvent;
+import com.sap.fpa61.jfr.TestRunInsertEvent;
+
 public class HanaDataUploader {
 
     static final Logger logger = LogManager.getLogger(HanaDataUploader.class);
@@ -40,21 +48,96 @@ public class HanaDataUploader {
     static final String REGRESSION_FILE = "regression_dolphin.xlsx";
     static final String REGRESSION_BURN_IN_FILE = "regression_dolphin_burn_in.xlsx";
 
+    static final String SCHEMA_NAME = "REGRESSION_UPLOAD";
     static final String TABLE_TEST_RUN = "TEST_RUN";
     static final String TABLE_TEST_SCENARIO = "TEST_SCENARIO";
     static final String TABLE_TEST_RESULT = "TEST_RESULT";
+    static final String SEQUENCE_RUN_ID = "TEST_RUN_ID_SEQ";
+    static final String SEQUENCE_SCENARIO_ID = "TEST_SCENARIO_ID_SEQ";
+
+    // Number of IDs reserved per sequence call, must match INCREMENT BY in db/migration/V2__client_side_ids.sql
+    static final int RUN_ID_BLOCK_SIZE = 100;
+    static final int SCENARIO_ID_BLOCK_SIZE = 10;
 
+    // Default lower limit of the adaptive TEST_RESULT batch size, and the TEST_RUN batch size
     static final int BATCH_SIZE = 100;
     static final int MAX_DEPLOYMENT_LENGTH = 255;
     static final int MAX_IMAGE_LENGTH = 255;
     static final int MAX_BUILD_NUMBER_LENGTH = 255;
     static final int MAX_JOB_NAME_LENGTH = 255;
 
+    // Returned by insertTestRun for a column whose run is already loaded completely (incremental ingestion)
+    static final int RUN_ALREADY_LOADED = 0;
+
     Connection connection;
+    UploadOptions options = new UploadOptions();
+    // SQL of the target database, chosen from the JDBC URL in connectToHana()
+    SqlDialect dialect = SqlDialect.HANA;
     final String jenkinsJobName;
     final String buildNumber;
 
+    // Configuration given by the caller instead of config.properties on the classpath, or null
+    private final Properties config;
+
+    // Database shared with other uploads in this JVM (pool and migrated schema), or null to connect on its own
+    private final UploadDatabase database;
+
+    // Settings of the main connection, reused to open worker connections
+    String connectionUrl;
+    Properties connectionProperties;
+
+    // Worker connections of the parallel modes, shared by all workers; null until connected
+    ConnectionPool connectionPool;
+
+    // TEST_SCENARIO IDs, loaded once per upload and shared by all workers
+    final ScenarioCache scenarioCache;
+
+    // Natural keys of the runs already loaded for this job, shared by all workers
+    final LoadedRunIndex loadedRuns;
+
+    // TEST_RESULT batch size tuned from measured executeBatch latency, shared by all workers
+    AdaptiveBatchSizer batchSizer;
+
+    // Client-side RUN_ID/SCENARIO_ID assignment, shared by all workers
+    final IdBlockAllocator runIds;
+    final IdBlockAllocator scenarioIds;
+
+    // Round trips and runs of this upload, shared by all workers
+    final UploadMetrics metrics;
+
+    // Name of the workbook being processed: SOURCE_FILE of its runs, and the file of its sheets' flight recording events
+    String currentFile;
+
+    // TEST_RUN rows waiting for the next batch, always written before the results referencing them
+    private final List<TestRunBatch> pendingRuns = new ArrayList<>();
+    // Runs claimed in loadedRuns by the open transaction (or written by it, for a pipeline writer), marked as
+    // committed when it commits and released again if it is rolled back
+    private final List<String> claimedRuns = new ArrayList<>();
+    // Runs written by the open transaction whose results may still be coming, marked LOADED when their sheet is done
+    private final List<Integer> unfinishedRuns = new ArrayList<>();
+
+    // CSV staging of TEST_RESULT rows in bulk load mode, created on first use
+    private BulkResultLoader bulkLoader;
+
+    // Writer threads of the file being processed (UPLOAD_WRITER_THREADS > 0), or null to write on this thread
+    IngestPipeline pipeline;
+
+    // Transaction state of this uploader's connection (see UploadOptions.CommitMode)
+    private boolean transactional = false;
+    private int uncommittedRows = 0;
+
     public HanaDataUploader(JSONObject jsonResponse) throws JSONException {
+        this(jsonResponse, null);
+    }
+
+    // Uploader that reads the DB settings from the given properties instead of config.properties
+    public HanaDataUploader(JSONObject jsonResponse, Properties config) throws JSONException {
+        this(jsonResponse, config, null);
+    }
+
+    // Uploader that borrows its connections from a database shared with other uploads. JENKINS_JOB_NAME in the
+    // given properties replaces the job name taken from the build's display name
+    public HanaDataUploader(JSONObject jsonResponse, Properties config, UploadDatabase database) throws JSONException {
         if (!jsonResponse.has("fullDisplayName") || jsonResponse.isNull("fullDisplayName")) {
             throw new JSONException("Missing required field 'fullDisplayName' in Jenkins API response");
         }
@@ -62,56 +145,108 @@ public class HanaDataUploader {
             throw new JSONException("Missing required field 'id' in Jenkins API response");
         }
 
-        this.jenkinsJobName = jsonResponse.getString("fullDisplayName");
+        String configuredJobName = config != null ? config.getProperty("JENKINS_JOB_NAME") : null;
+        this.jenkinsJobName = configuredJobName != null && !configuredJobName.isBlank()
+                ? configuredJobName.trim() : jsonResponse.getString("fullDisplayName");
         this.buildNumber = jsonResponse.getString("id");
+        this.config = config;
+        this.database = database;
+        this.scenarioCache = new ScenarioCache();
+        this.loadedRuns = new LoadedRunIndex();
+        this.batchSizer = new AdaptiveBatchSizer(options.batchMinSize, options.batchMaxSize);
+        this.runIds = new IdBlockAllocator(SEQUENCE_RUN_ID, RUN_ID_BLOCK_SIZE);
+        this.scenarioIds = new IdBlockAllocator(SEQUENCE_SCENARIO_ID, SCENARIO_ID_BLOCK_SIZE);
+        this.metrics = new UploadMetrics();
+    }
+
+    // Creates an uploader for the same build that writes through another connection (used by parallel workers)
+    HanaDataUploader(HanaDataUploader parent, Connection connection) {
+        this.connection = connection;
+        this.options = parent.options;
+        this.dialect = parent.dialect;
+        this.config = parent.config;
+        this.database = parent.database;
+        this.jenkinsJobName = parent.jenkinsJobName;
+        this.buildNumber = parent.buildNumber;
+        this.connectionUrl = parent.connectionUrl;
+        this.connectionProperties = parent.connectionProperties;
+        this.connectionPool = parent.connectionPool;
+        this.scenarioCache = parent.scenarioCache;
+        this.loadedRuns = parent.loadedRuns;
+        this.batchSizer = parent.batchSizer;
+        this.runIds = parent.runIds;
+        this.scenarioIds = parent.scenarioIds;
+        this.metrics = parent.metrics;
+        this.currentFile = parent.currentFile;
+    }
+
+    // Main upload controller method; returns whether every file was uploaded (throws if none was)
+    public boolean uploadAllFiles(String saveDir) throws Exception {
+        return uploadAll(saveDir, HanaDataUploader::processBurnInAnalysis, HanaDataUploader::processRegressionFile);
+    }
+
+    // Uploads the workbooks from the given streams (e.g. HTTP response bodies) through spool files in UPLOAD_SPOOL_DIR
+    // instead of the download directory
+    public boolean uploadAllStreams(WorkbookStreams streams) throws Exception {
+        return uploadAll("",
+                (writer, fileName) -> {
+                    try (WorkbookSource source = WorkbookSource.stream(fileName, streams, Paths.get(writer.options.spoolDir))) {
+                        writer.processBurnInAnalysis(source);
+                    }
+                },
+                (writer, fileName) -> {
+                    try (WorkbookSource source = WorkbookSource.stream(fileName, streams, Paths.get(writer.options.spoolDir))) {
+                        writer.processRegressionFile(source);
+                    }
+                });
     }
 
-    // Main upload controller method
-    public void uploadAllFiles(String saveDir) throws Exception {
+    // Uploads the three workbooks, named location + file name, through the given processors
+    private boolean uploadAll(String location, FileProcessor burnInProcessor, FileProcessor regressionProcessor) throws Exception {
         try {
             connectToHana();
             if (connection == null) {
                 throw new SQLException("Failed to establish database connection");
             }
-            logger.info("HANA DB connection established");
+            logger.info(dialect.name() + " DB connection established");
         } catch (SQLException | IOException e) {
             logger.error("Database connection failed: " + e.getMessage(), e);
             throw new Exception("Failed to connect to database", e);
         }
 
-        boolean burnInUploaded = false;
-        boolean regressionUploaded = false;
-        boolean regressionBurnInUploaded = false;
+        long startTime = System.currentTimeMillis();
 
-        // Process burn-in analysis
+        // The three files are independent: with worker connections available they are processed concurrently,
+        // each on its own connection and in its own transaction
+        ExecutorService executor = options.fileThreads > 1 && connectionUrl != null
+                ? Executors.newFixedThreadPool(options.fileThreads) : null;
+        boolean burnInUploaded;
+        boolean regressionUploaded;
+        boolean regressionBurnInUploaded;
         try {
-            logger.info("Burn-in results uploading...");
-            processBurnInAnalysis(saveDir + BURN_IN_FILE);
-            logger.info("Burn-in results uploaded successfully");
-            burnInUploaded = true;
-        } catch (Exception e) {
-            logger.error("Error uploading burn-in results: " + e.getMessage(), e);
-        }
-
-        // Process regression files
-        try {
-            logger.info("Regression results uploading...");
-            processRegressionFile(saveDir + REGRESSION_FILE);
-            logger.info("Regression results uploaded successfully");
-            regressionUploaded = true;
-        } catch (Exception e) {
-            logger.error("Error uploading regression results: " + e.getMessage(), e);
-        }
-
-        // Process regression burn-in files
-        try {
-            logger.info("Regression burn-in results uploading...");
-            processRegressionFile(saveDir + REGRESSION_BURN_IN_FILE);
-            logger.info("Regression burn-in results uploaded successfully");
-            regressionBurnInUploaded = true;
-        } catch (Exception e) {
-            logger.error("Error uploading regression burn-in results: " + e.getMessage(), e);
+            // Process burn-in analysis
+            CompletableFuture<Boolean> burnIn = startFileUpload(executor, "Burn-in",
+                    location + BURN_IN_FILE, burnInProcessor);
+            // Process regression files
+            CompletableFuture<Boolean> regression = startFileUpload(executor, "Regression",
+                    location + REGRESSION_FILE, regressionProcessor);
+            // Process regression burn-in files
+            CompletableFuture<Boolean> regressionBurnIn = startFileUpload(executor, "Regression burn-in",
+                    location + REGRESSION_BURN_IN_FILE, regressionProcessor);
+
+            burnInUploaded = burnIn.join();
+            regressionUploaded = regression.join();
+            regressionBurnInUploaded = regressionBurnIn.join();
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
         }
+        long elapsed = System.currentTimeMillis() - startTime;
+        logger.info("File uploads finished in " + elapsed + " ms (" + metrics.getRoundTrips() + " DB round trips)");
+        logger.info(batchSizer.summary());
+        metrics.finish(runIds.getReservedBlocks() + scenarioIds.getReservedBlocks(), elapsed,
+                burnInUploaded && regressionUploaded && regressionBurnInUploaded);
 
         // Close connection
         try {
@@ -124,96 +259,235 @@ public class HanaDataUploader {
         if (!burnInUploaded && !regressionUploaded && !regressionBurnInUploaded) {
             throw new Exception("All file uploads failed");
         }
+        return burnInUploaded && regressionUploaded && regressionBurnInUploaded;
     }
 
-    // Establishes connection to HANA db server
-    void connectToHana() throws SQLException, IOException {
+    // Processing step for one downloaded file (path, or file name for streams), run against the uploader that owns the target connection
+    @FunctionalInterface
+    interface FileProcessor {
+
+        void process(HanaDataUploader writer, String filePath) throws Exception;
+    }
+
+    // Starts the upload of one file, on the executor (own connection and transaction) or inline on the main connection
+    CompletableFuture<Boolean> startFileUpload(ExecutorService executor, String label, String filePath, FileProcessor processor) {
+        if (executor == null) {
+            return CompletableFuture.completedFuture(uploadFile(label, filePath, processor, false));
+        }
+        return CompletableFuture.supplyAsync(() -> uploadFile(label, filePath, processor, true), executor);
+    }
+
+    // Uploads one file and reports whether it succeeded; errors are logged, not thrown
+    boolean uploadFile(String label, String filePath, FileProcessor processor, boolean ownConnection) {
         try {
-            // Load properties from config.properties file
-            Properties configProps = new Properties();
-            try (InputStream input = getClass().getClassLoader().getResourceAsStream("config.properties")) {
-                if (input == null) {
-                    logger.error("Unable to find config.properties");
-                    throw new SQLException("Configuration file not found");
+            logger.info(label + " results uploading...");
+            if (ownConnection) {
+                try (Connection fileConnection = openConnection()) {
+                    processInTransaction(new HanaDataUploader(this, fileConnection), filePath, processor);
                 }
-                configProps.load(input);
-            } catch (IOException e) {
-                logger.error("Error loading configuration: " + e.getMessage(), e);
-                throw new IOException("Failed to load configuration", e);
+            } else {
+                processInTransaction(this, filePath, processor);
             }
+            logger.info(label + " results uploaded successfully");
+            return true;
+        } catch (Exception e) {
+            logger.error("Error uploading " + label.toLowerCase() + " results: " + e.getMessage(), e);
+            return false;
+        }
+    }
+
+    // Runs a file processor in the writer's transaction: the rows not committed yet are committed when the file is
+    // done, and a failure rolls back everything since the last commit (the whole file with UPLOAD_COMMIT=file).
+    // With writer threads the rows are written by the pipeline, which commits or rolls back its writers first
+    private static void processInTransaction(HanaDataUploader writer, String filePath, FileProcessor processor) throws Exception {
+        writer.currentFile = Paths.get(filePath).getFileName().toString();
+        writer.beginTransaction();
+        IngestPipeline pipeline = writer.startPipeline();
+        try {
+            processor.process(writer, filePath);
+            if (pipeline != null) {
+                pipeline.finish();
+            }
+            writer.commitTransaction();
+        } catch (Exception e) {
+            if (pipeline != null) {
+                pipeline.abort();
+            }
+            writer.rollbackTransaction();
+            throw e;
+        } finally {
+            writer.pipeline = null;
+        }
+    }
+
+    // Starts the writer threads for one file, if configured and worker connections are available
+    IngestPipeline startPipeline() throws SQLException {
+        if (options.writerThreads > 0 && connectionUrl != null) {
+            pipeline = new IngestPipeline(this, options.writerThreads, options.queueCapacity);
+        }
+        return pipeline;
+    }
+
+    // Turns off auto-commit unless UPLOAD_COMMIT=auto
+    void beginTransaction() throws SQLException {
+        transactional = options.commitMode != UploadOptions.CommitMode.AUTO;
+        uncommittedRows = 0;
+        if (transactional) {
+            connection.setAutoCommit(false);
+        }
+    }
+
+    void commitTransaction() throws SQLException {
+        if (transactional) {
+            connection.commit();
+            metrics.roundTrip(UploadMetrics.COMMIT);
+            logger.debug("Committed {} rows", uncommittedRows);
+            uncommittedRows = 0;
+        }
+        loadedRuns.committed(claimedRuns);
+        claimedRuns.clear();
+    }
+
+    void rollbackTransaction() throws SQLException {
+        pendingRuns.clear();
+        // Runs a pipeline writer committed already stay claimed
+        if (transactional) {
+            for (String key : claimedRuns) {
+                loadedRuns.release(key);
+            }
+        }
+        claimedRuns.clear();
+        unfinishedRuns.clear();
+        if (bulkLoader != null) {
+            bulkLoader.discard();
+        }
+        if (transactional) {
+            logger.warn("Rolling back " + uncommittedRows + " uncommitted rows");
+            uncommittedRows = 0;
+            connection.rollback();
+        }
+    }
 
-            String hanaHost = configProps.getProperty("DB_HOST");
-            String hanaPort = configProps.getProperty("DB_PORT");
-            String dbUser = configProps.getProperty("DB_USER");
-            String dbPassword = configProps.getProperty("DB_PASSWORD");
-            String dbEncrypt = configProps.getProperty("DB_ENCRYPT");
-            String dbValidateCert = configProps.getProperty("DB_VALIDATE_CERTIFICATE");
+    // Counts written rows and commits every UPLOAD_COMMIT_ROWS rows in ROWS mode
+    void rowsWritten(int rows) throws SQLException {
+        uncommittedRows += rows;
+        if (options.commitMode == UploadOptions.CommitMode.ROWS && uncommittedRows >= options.commitRows) {
+            commitTransaction();
+        }
+    }
 
-            String url = "jdbc:sap://" + hanaHost + ":" + hanaPort + "/";
-            logger.info("Connecting to HANA DB at " + url + "...");
+    // Called once all columns of a sheet are written; loads staged bulk rows, marks the sheet's runs as loaded and
+    // commits in SHEET and COLUMN mode
+    void sheetFinished() throws SQLException {
+        if (pipeline != null) {
+            // The writers finish the sheet on their own connections
+            pipeline.endSheet();
+            return;
+        }
+        flushBulkLoad();
+        markRunsLoaded();
+        if (options.commitMode == UploadOptions.CommitMode.SHEET || options.commitMode == UploadOptions.CommitMode.COLUMN) {
+            commitTransaction();
+        }
+    }
 
-            Properties connProps = new Properties();
-            connProps.setProperty("user", dbUser);
-            connProps.setProperty("password", dbPassword);
-            connProps.setProperty("encrypt", dbEncrypt);
-            connProps.setProperty("validateCertificate", dbValidateCert);
+    // Establishes connection to the HANA db server, or to the database given by DB_URL
+    void connectToHana() throws SQLException, IOException {
+        try {
+            // Load properties from config.properties file, unless the caller gave its own
+            Properties configProps = config != null ? config : loadConfig();
+            options = UploadOptions.fromProperties(configProps);
+            batchSizer = new AdaptiveBatchSizer(options.batchMinSize, options.batchMaxSize);
+
+            if (database != null) {
+                // Migrated when the shared database was opened; the main connection comes from its pool too
+                dialect = database.dialect;
+                connectionUrl = database.url;
+                connectionProperties = database.connectionProperties;
+                connectionPool = database.pool;
+                connection = connectionPool.borrow();
+                scenarioCache.load(connection);
+                loadedRuns.load(connection, jobName());
+                metrics.roundTrip(UploadMetrics.QUERY);
+                metrics.roundTrip(UploadMetrics.QUERY);
+                return;
+            }
 
-            connection = DriverManager.getConnection(url, connProps);
-            executeDDLScript();
+            // DB_URL selects any supported database (e.g. an embedded H2 file), DB_HOST/DB_PORT a HANA server
+            String url = UploadDatabase.jdbcUrl(configProps);
+            dialect = SqlDialect.forUrl(url);
+            logger.info("Connecting to " + dialect.name() + " DB at " + url + "...");
+
+            connectionUrl = url;
+            connectionProperties = dialect.connectionProperties(configProps);
+            connection = DriverManager.getConnection(url, connectionProperties);
+            new SchemaMigrator(dialect).migrate(connection);
+            scenarioCache.load(connection);
+            loadedRuns.load(connection, jobName());
+            metrics.roundTrip(UploadMetrics.QUERY);
+            metrics.roundTrip(UploadMetrics.QUERY);
+
+            // The schema exists now: open the worker connections before the upload starts
+            connectionPool = new ConnectionPool(url, connectionProperties, dialect.setSchema(SCHEMA_NAME), options.poolMinSize,
+                    options.effectivePoolMaxSize(), options.poolTimeoutMillis, options.poolLeakMillis);
+            try {
+                connectionPool.warmUp();
+            } catch (SQLException e) {
+                connectionPool.close();
+                connectionPool = null;
+                throw e;
+            }
 
             // Verify connection to the schema
-            try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery("SELECT CURRENT_SCHEMA FROM DUMMY")) {
+            try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(dialect.currentSchemaQuery())) {
                 if (rs.next()) {
                     logger.info("Connected to schema: " + rs.getString(1));
                 }
             }
         } catch (SQLException e) {
-            logger.error("Connection to HANA failed: " + e.getMessage(), e);
-            throw new SQLException("Connection to HANA failed", e);
+            logger.error("Connection to " + dialect.name() + " failed: " + e.getMessage(), e);
+            throw new SQLException("Connection to " + dialect.name() + " failed", e);
         }
     }
 
-    void executeDDLScript() throws IOException, SQLException {
-        String scriptPath = "src/main/resources/ddl_script.sql";
-        logger.info("Executing DDL script...");
-
-        try {
-            // Read the SQL file
-            Path path = Paths.get(scriptPath);
-            String sqlScript = Files.readString(path);
-
-            // Split the script by semicolons to execute each statement separately
-            // But preserve semicolons inside quotes
-            List<String> statements = splitSqlStatements(sqlScript);
-
-            try (Statement stmt = connection.createStatement()) {
-                for (String statement : statements) {
-                    // Skip empty statements
-                    statement = statement.trim();
-                    if (!statement.isEmpty()) {
-                        try {
-                            stmt.execute(statement);
-                            logger.debug("Executed SQL: " + statement.substring(0, Math.min(50, statement.length()))
-                                    + (statement.length() > 50 ? "..." : ""));
-                        } catch (SQLException e) {
-                            logger.error("Error executing SQL statement: " + statement, e);
-                            throw new SQLException("Failed to execute SQL statement", e);
-                        }
-                    }
-                }
-                logger.info("DDL script execution completed");
+    private Properties loadConfig() throws SQLException, IOException {
+        Properties configProps = new Properties();
+        try (InputStream input = getClass().getClassLoader().getResourceAsStream("config.properties")) {
+            if (input == null) {
+                logger.error("Unable to find config.properties");
+                throw new SQLException("Configuration file not found");
             }
+            configProps.load(input);
         } catch (IOException e) {
-            logger.error("Failed to read DDL script file: " + e.getMessage(), e);
-            throw new IOException("Failed to read DDL script file", e);
+            logger.error("Error loading configuration: " + e.getMessage(), e);
+            throw new IOException("Failed to load configuration", e);
+        }
+        return configProps;
+    }
+
+    // Borrows an additional connection with the settings of the main one, positioned on the upload schema.
+    // Closing it returns it to the pool
+    Connection openConnection() throws SQLException {
+        if (connectionUrl == null) {
+            throw new SQLException("No DB connection settings, connectToHana() has not been called");
+        }
+        if (connectionPool != null) {
+            return connectionPool.borrow();
+        }
+
+        Connection workerConnection = DriverManager.getConnection(connectionUrl, connectionProperties);
+        try (Statement stmt = workerConnection.createStatement()) {
+            stmt.execute(dialect.setSchema(SCHEMA_NAME));
         } catch (SQLException e) {
-            logger.error("Failed to execute DDL script: " + e.getMessage(), e);
-            throw new SQLException("Failed to execute DDL script", e);
+            workerConnection.close();
+            throw e;
         }
+        return workerConnection;
     }
 
-    // Helper method to help split SQL script into separate statements while handling quoted content
-    List<String> splitSqlStatements(String script) {
+    // Helper method to help split SQL script into separate statements while handling quoted content.
+    // SQLScript blocks (DO BEGIN ... END;) are kept together as one statement
+    static List<String> splitSqlStatements(String script) {
         List<String> statements = new ArrayList<>();
         StringBuilder currentStatement = new StringBuilder();
         boolean inQuote = false;
@@ -233,7 +507,7 @@ public class HanaDataUploader {
             }
 
             // Handle semicolons (statement separators) when not in quotes
-            if (c == ';' && !inQuote) {
+            if (c == ';' && !inQuote && !isOpenBlock(currentStatement)) {
                 currentStatement.append(c);
                 statements.add(currentStatement.toString());
                 currentStatement = new StringBuilder();
@@ -250,99 +524,30 @@ public class HanaDataUploader {
         return statements;
     }
 
+    // Helper method that tells whether a statement read so far is a DO block whose END has not been reached
+    private static boolean isOpenBlock(CharSequence statement) {
+        String text = statement.toString().replaceAll("(?m)^\\s*--.*$", "").trim().toUpperCase(Locale.ROOT);
+        return text.matches("(?s)DO\\s+BEGIN\\b.*") && !text.endsWith("END");
+    }
+
     // Processes burn-in analysis Excel file (special structure)
     void processBurnInAnalysis(String filePath) throws Exception {
-        try (Workbook workbook = new XSSFWorkbook(new File(filePath))) {
-            Sheet sheet = workbook.getSheet("results");
-            if (sheet == null) {
-                logger.warn("Sheet 'results' not found in file: " + filePath);
-                return;
-            }
-
-            Row headerRow = sheet.getRow(0);
-            if (headerRow == null) {
-                logger.warn("Header row not found in sheet 'results'");
-                return;
-            }
-
-            // Process each column as separate test run (columns B, C, D...)
-            for (int col = 1; col <= headerRow.getLastCellNum(); col++) {
-                Cell dateCell = headerRow.getCell(col);
-                if (dateCell == null) {
-                    logger.debug("Skipping empty column " + col);
-                    continue;
-                }
-
-                String jobDate;
-                if (dateCell.getCellType() == CellType.NUMERIC && DateUtil.isCellDateFormatted(dateCell)) {
-                    // Handle date formatted cells
-                    java.util.Date date = dateCell.getDateCellValue();
-                    SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
-                    jobDate = sdf.format(date);
-                } else {
-                    // Handle string dates
-                    jobDate = dateCell.getStringCellValue();
-                }
-
-                Row deploymentRow = sheet.getRow(1);
-                Row imageRow = sheet.getRow(2);
-
-                if (deploymentRow == null || imageRow == null) {
-                    logger.warn("Missing deployment or image row");
-                    continue;
-                }
-
-                Cell deploymentCell = deploymentRow.getCell(col);
-                Cell imageCell = imageRow.getCell(col);
-
-                if (deploymentCell == null || imageCell == null) {
-                    logger.warn("Missing deployment or image data for column " + col);
-                    continue;
-                }
-
-                // Process deployment string to remove "Deployment: " prefix
-                String deploymentFull = deploymentCell.getStringCellValue();
-                String[] deploymentParts = deploymentFull.split(": ", 2);
-                String deployment = deploymentParts.length > 1 ? deploymentParts[1] : deploymentFull;
-
-                // Process image string to remove "Image: " prefix
-                String imageFull = imageCell.getStringCellValue();
-                String[] imageParts = imageFull.split(": ", 2);
-                String image = imageParts.length > 1 ? imageParts[1] : imageFull;
-
-                // Insert test run and get generated ID
-                int runId = insertTestRun("burn_in", jobDate, deployment, image);
-                if (runId == -1) {
-                    throw new SQLException("Failed to insert test run");
-                }
-
-                // Prepare batch insert for test results
-                List<TestResultBatch> batchResults = new ArrayList<>();
-
-                // Process metric results
-                for (int row = 5; row <= sheet.getLastRowNum(); row++) {
-                    Row dataRow = sheet.getRow(row);
-                    if (dataRow == null) {
-                        continue;
-                    }
-
-                    Cell metricCell = dataRow.getCell(0);
-                    Cell durationCell = dataRow.getCell(col);
-
-                    if (metricCell == null || durationCell == null) {
-                        logger.debug("Skipping row " + row + " due to missing data");
-                        continue;
-                    }
-
-                    String metric = metricCell.getStringCellValue();
-                    Double duration = extractNumericValue(durationCell, row, col);
+        processBurnInAnalysis(WorkbookSource.file(filePath));
+    }
 
-                    if (duration != null) {
-                        batchResults.add(new TestResultBatch(runId, metric, duration));
+    void processBurnInAnalysis(WorkbookSource source) throws Exception {
+        // Part of the natural key of the runs
+        currentFile = Paths.get(source.name()).getFileName().toString();
+        try {
+            if (options.readerMode == UploadOptions.ReaderMode.DOM) {
+                readBurnInWorkbook(source);
+            } else {
+                try (StreamingWorkbookReader reader = new StreamingWorkbookReader(source)) {
+                    int sheetsRead = reader.read(sheetName -> "results".equals(sheetName) ? "burn_in" : null, this);
+                    if (sheetsRead == 0) {
+                        logger.warn("Sheet 'results' not found in file: " + source.name());
                     }
                 }
-
-                insertTestResultsBatch(batchResults);
             }
         } catch (Exception e) {
             logger.error("Error processing burn-in test file: " + e.getMessage(), e);
@@ -350,143 +555,227 @@ public class HanaDataUploader {
         }
     }
 
-    // Processes regression Excel files with multiple sheets
-    void processRegressionFile(String filePath) throws Exception {
-        try (Workbook workbook = new XSSFWorkbook(new File(filePath))) {
-            // Process each sheet (scenario: (median, error, etc.))
-            for (Sheet sheet : workbook) {
-                String scenarioName = sheet.getSheetName().toLowerCase();
+    // Reads the burn-in workbook through the POI DOM (fallback for UPLOAD_READER=dom)
+    void readBurnInWorkbook(WorkbookSource source) throws Exception {
+        try (Workbook workbook = source.openWorkbook()) {
+            Sheet sheet = workbook.getSheet("results");
+            if (sheet == null) {
+                logger.warn("Sheet 'results' not found in file: " + source.name());
+                return;
+            }
 
-                Row headerRow = sheet.getRow(0);
-                if (headerRow == null) {
-                    logger.warn("Header row not found in sheet: " + scenarioName);
-                    continue;
-                }
+            transposeSheet(sheet, "burn_in");
+        }
+    }
 
-                // Process columns as separate test runs
-                for (int col = 1; col <= headerRow.getLastCellNum(); col++) {
-                    Cell dateCell = headerRow.getCell(col);
-                    if (dateCell == null) {
-                        logger.debug("Skipping empty column " + col + " in sheet " + scenarioName);
-                        continue;
-                    }
+    // Processes regression Excel files with multiple sheets
+    void processRegressionFile(String filePath) throws Exception {
+        processRegressionFile(WorkbookSource.file(filePath));
+    }
 
-                    String jobDate;
-                    if (dateCell.getCellType() == CellType.NUMERIC && DateUtil.isCellDateFormatted(dateCell)) {
-                        // Handle date formatted cells
-                        java.util.Date date = dateCell.getDateCellValue();
-                        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
-                        jobDate = sdf.format(date);
+    void processRegressionFile(WorkbookSource source) throws Exception {
+        // Part of the natural key of the runs
+        currentFile = Paths.get(source.name()).getFileName().toString();
+        try {
+            if (options.readerMode == UploadOptions.ReaderMode.DOM) {
+                readRegressionWorkbook(source);
+            } else {
+                try (StreamingWorkbookReader reader = new StreamingWorkbookReader(source)) {
+                    if (useParallelSheets(reader.getSheetNames().size())) {
+                        ingestSheetsInParallel(reader.getSheetNames(), (writer, sheetIndex, scenarioName)
+                                -> reader.readSheet(sheetIndex, scenarioName, writer));
                     } else {
-                        // Handle string dates
-                        jobDate = dateCell.getStringCellValue();
+                        reader.read(sheetName -> sheetName.toLowerCase(), this);
                     }
-                    Row deploymentRow = sheet.getRow(1);
-                    Row imageRow = sheet.getRow(2);
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Error processing regression test file: " + e.getMessage(), e);
+            throw new Exception("Error processing regression test file", e);
+        }
+    }
 
-                    if (deploymentRow == null || imageRow == null) {
-                        logger.warn("Missing deployment or image row in sheet " + scenarioName);
-                        continue;
+    // Reads a regression workbook through the POI DOM (fallback for UPLOAD_READER=dom). A POI workbook is not safe
+    // for use from several threads, so parallel workers each open their own copy of the file
+    void readRegressionWorkbook(WorkbookSource source) throws Exception {
+        try (Workbook workbook = source.openWorkbook()) {
+            if (useParallelSheets(workbook.getNumberOfSheets())) {
+                List<String> sheetNames = new ArrayList<>();
+                for (Sheet sheet : workbook) {
+                    sheetNames.add(sheet.getSheetName());
+                }
+                ingestSheetsInParallel(sheetNames, (writer, sheetIndex, scenarioName) -> {
+                    try (Workbook sheetWorkbook = source.openWorkbook()) {
+                        writer.transposeSheet(sheetWorkbook.getSheetAt(sheetIndex), scenarioName);
                     }
+                });
+                return;
+            }
 
-                    Cell deploymentCell = deploymentRow.getCell(col);
-                    Cell imageCell = imageRow.getCell(col);
+            // Process each sheet (scenario: (median, error, etc.))
+            for (Sheet sheet : workbook) {
+                transposeSheet(sheet, sheet.getSheetName().toLowerCase());
+            }
+        }
+    }
 
-                    if (deploymentCell == null || imageCell == null) {
-                        logger.warn("Missing deployment or image data for column " + col + " in sheet " + scenarioName);
-                        continue;
-                    }
+    // Work done for one sheet by a parallel worker, writing through the worker's own uploader/connection
+    @FunctionalInterface
+    interface SheetIngest {
 
-                    // Process deployment string to remove "Deployment: " prefix
-                    String deploymentFull = deploymentCell.getStringCellValue();
-                    String[] deploymentParts = deploymentFull.split(": ", 2);
-                    String deployment = deploymentParts.length > 1 ? deploymentParts[1] : deploymentFull;
+        void ingest(HanaDataUploader writer, int sheetIndex, String scenarioName) throws Exception;
+    }
 
-                    // Process image string to remove "Image: " prefix
-                    String imageFull = imageCell.getStringCellValue();
-                    String[] imageParts = imageFull.split(": ", 2);
-                    String image = imageParts.length > 1 ? imageParts[1] : imageFull;
+    // Parallel sheet ingestion needs worker connections and more than one sheet to be worth it, and is not combined
+    // with writer threads
+    boolean useParallelSheets(int sheetCount) {
+        return options.sheetThreads > 1 && sheetCount > 1 && connectionUrl != null && pipeline == null;
+    }
 
-                    // Create test run with scenario-specific ID
-                    int runId = insertTestRun(scenarioName, jobDate, deployment, image);
-                    if (runId == -1) {
-                        throw new SQLException("Failed to insert test run");
-                    }
+    // Ingests the sheets of a workbook on a bounded pool. Every sheet is written through its own connection and
+    // transaction, so a failing sheet is rolled back and reported without affecting the others
+    void ingestSheetsInParallel(List<String> sheetNames, SheetIngest ingest) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(options.sheetThreads, sheetNames.size()));
+        Map<String, Future<?>> futures = new LinkedHashMap<>();
+        try {
+            for (int i = 0; i < sheetNames.size(); i++) {
+                int sheetIndex = i;
+                String scenarioName = sheetNames.get(i).toLowerCase();
+                futures.put(sheetNames.get(i), executor.submit(() -> {
+                    ingestSheet(sheetIndex, scenarioName, ingest);
+                    return null;
+                }));
+            }
+        } finally {
+            executor.shutdown();
+        }
 
-                    // Prepare batch insert for test results
-                    List<TestResultBatch> batchResults = new ArrayList<>();
+        List<String> failedSheets = new ArrayList<>();
+        for (Map.Entry<String, Future<?>> entry : futures.entrySet()) {
+            try {
+                entry.getValue().get();
+            } catch (ExecutionException e) {
+                logger.error("Error uploading sheet " + entry.getKey() + ": " + e.getCause().getMessage(), e.getCause());
+                failedSheets.add(entry.getKey());
+            }
+        }
 
-                    // Process endpoint results
-                    for (int row = 5; row <= sheet.getLastRowNum(); row++) {
-                        Row dataRow = sheet.getRow(row);
-                        if (dataRow == null) {
-                            continue;
-                        }
+        if (!failedSheets.isEmpty()) {
+            throw new SQLException("Failed to upload sheets " + failedSheets + " (" + (sheetNames.size() - failedSheets.size())
+                    + " of " + sheetNames.size() + " sheets uploaded)");
+        }
+    }
 
-                        Cell endpointCell = dataRow.getCell(0);
-                        Cell durationCell = dataRow.getCell(col);
+    private void ingestSheet(int sheetIndex, String scenarioName, SheetIngest ingest) throws Exception {
+        try (Connection workerConnection = openConnection()) {
+            HanaDataUploader worker = new HanaDataUploader(this, workerConnection);
+            worker.beginTransaction();
+            try {
+                ingest.ingest(worker, sheetIndex, scenarioName);
+                worker.commitTransaction();
+            } catch (Exception e) {
+                worker.rollbackTransaction();
+                throw e;
+            }
+        }
+    }
 
-                        if (endpointCell == null || durationCell == null) {
-                            logger.debug("Skipping row " + row + " due to missing data in sheet " + scenarioName);
-                            continue;
-                        }
+    // Walks a DOM sheet once in row order, feeding every cell to a transposer that builds the runs of all columns at once
+    void transposeSheet(Sheet sheet, String scenarioName) throws SQLException {
+        if (sheet.getRow(ResultSheetTransposer.HEADER_ROW) == null) {
+            logger.warn("Header row not found in sheet: " + scenarioName);
+            return;
+        }
 
-                        String endpoint = endpointCell.getStringCellValue();
-                        Double duration = extractNumericValue(durationCell, row, col);
+        ResultSheetTransposer transposer = new ResultSheetTransposer(this, scenarioName);
+        for (Row row : sheet) {
+            int rowNum = row.getRowNum();
+            if (rowNum > ResultSheetTransposer.IMAGE_ROW && rowNum < ResultSheetTransposer.FIRST_DATA_ROW) {
+                continue;
+            }
+            transposer.startRow(rowNum);
 
-                        if (duration != null) {
-                            batchResults.add(new TestResultBatch(runId, endpoint, duration));
-                        }
+            for (Cell cell : row) {
+                int colNum = cell.getColumnIndex();
+                if (rowNum == ResultSheetTransposer.HEADER_ROW) {
+                    if (colNum > 0) {
+                        transposer.textCell(rowNum, colNum, formatJobDate(cell));
                     }
-
-                    insertTestResultsBatch(batchResults);
+                } else if (rowNum < ResultSheetTransposer.FIRST_DATA_ROW || colNum == 0) {
+                    transposer.textCell(rowNum, colNum, cell.getStringCellValue());
+                } else {
+                    transposer.resultCell(rowNum, colNum, extractNumericValue(cell, rowNum, colNum));
                 }
             }
-        } catch (Exception e) {
-            logger.error("Error processing regression test file: " + e.getMessage(), e);
-            throw new Exception("Error processing regression test file", e);
         }
+        transposer.finish();
     }
 
-    // Creates TEST_RUN record with Jenkins metadata
-    int insertTestRun(String scenarioName, String jobDate, String deployment, String image) throws SQLException {
-        // SQL to insert and return the generated ID
-        String sql = "INSERT INTO " + TABLE_TEST_RUN + " (SCENARIO_ID, JOB_DATE, DEPLOYMENT_NAME, IMAGE_NAME, BUILD_NUMBER, JENKINS_JOB_NAME) "
-                + "VALUES (?, ?, ?, ?, ?, ?)";
+    // Helper method to read the job date of a header cell, either a date formatted cell or a date string
+    String formatJobDate(Cell dateCell) {
+        if (dateCell.getCellType() == CellType.NUMERIC && DateUtil.isCellDateFormatted(dateCell)) {
+            // Handle date formatted cells
+            java.util.Date date = dateCell.getDateCellValue();
+            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
+            return sdf.format(date);
+        }
+        // Handle string dates
+        return dateCell.getStringCellValue();
+    }
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+    // Creates TEST_RUN record with Jenkins metadata. The RUN_ID is assigned client-side and the row is queued
+    // for the next TEST_RUN batch (see flushTestRuns). Returns RUN_ALREADY_LOADED if the run is already loaded completely
+    int insertTestRun(String scenarioName, String jobDate, String deployment, String image) throws SQLException {
+        try {
             String entityType = scenarioName.startsWith("burn_in") ? "metric" : "endpoint";
             int scenarioId = getOrCreateScenario(scenarioName, entityType);
             if (scenarioId == -1) {
                 throw new SQLException("Failed to get or create scenario");
             }
 
-            // Process job name string to remove build number suffix
-            String jobNameFull = jenkinsJobName;
-            String[] jobNameParts = jobNameFull.split(" #", 2);
-            String newJobNameString = jobNameParts.length > 1 ? jobNameParts[0] : jobNameFull;
-
-            stmt.setInt(1, scenarioId);
             // Parse date with flexible format handling
             Date sqlDate = parseDateString(jobDate);
-            stmt.setDate(2, sqlDate);
             // Trim and truncate strings to max column sizes
-            stmt.setString(3, trimToLength(deployment, MAX_DEPLOYMENT_LENGTH));
-            stmt.setString(4, trimToLength(image, MAX_IMAGE_LENGTH));
-            stmt.setString(5, trimToLength(buildNumber, MAX_BUILD_NUMBER_LENGTH));
-            stmt.setString(6, trimToLength(newJobNameString, MAX_JOB_NAME_LENGTH));
-
-            stmt.executeUpdate();
-
-            // Get generated key
-            try (Statement idStmt = connection.createStatement(); ResultSet generatedKeys = idStmt.executeQuery("SELECT CURRENT_IDENTITY_VALUE() FROM DUMMY")) {
-                if (generatedKeys.next()) {
-                    int runId = generatedKeys.getInt(1);
-                    return runId;
-                } else {
-                    throw new SQLException("Failed to retrieve generated key for test run");
+            String trimmedDeployment = trimToLength(deployment, MAX_DEPLOYMENT_LENGTH);
+            String trimmedImage = trimToLength(image, MAX_IMAGE_LENGTH);
+            String jobName = jobName();
+
+            // Skip columns an earlier upload loaded completely, unless UPLOAD_SKIP_LOADED=false; a run it left
+            // incomplete, or one that is not skipped, is replaced. Repeated columns of this sheet get their own KEY_SEQ
+            String columnKey = LoadedRunIndex.columnKey(scenarioId, sqlDate, trimmedDeployment, trimmedImage, jobName);
+            int keySeq = loadedRuns.claimNext(columnKey, currentFile);
+            String runKey = LoadedRunIndex.key(columnKey, currentFile, keySeq);
+            claimedRuns.add(runKey);
+            List<Integer> replacedRunIds;
+            LoadedRunIndex.StoredRun stored = loadedRuns.storedRun(runKey);
+            if (stored != null) {
+                if (stored.loaded && options.skipLoadedRuns) {
+                    return RUN_ALREADY_LOADED;
+                }
+                replacedRunIds = List.of(stored.runId);
+            } else if (loadedRuns.loadedBefore(columnKey)) {
+                // Loaded before the key had a source workbook, so the column counts as loaded
+                if (options.skipLoadedRuns) {
+                    return RUN_ALREADY_LOADED;
                 }
+                replacedRunIds = loadedRuns.takeEarlierRuns(columnKey);
+            } else {
+                replacedRunIds = List.of();
+            }
+
+            int runId = runIds.nextId(connection, dialect);
+            TestRunBatch run = new TestRunBatch(runId, scenarioId, sqlDate, trimmedDeployment, trimmedImage,
+                    trimToLength(buildNumber, MAX_BUILD_NUMBER_LENGTH), jobName, currentFile, keySeq, replacedRunIds);
+            if (pipeline != null) {
+                pipeline.addRun(run);
+                return runId;
             }
+            pendingRuns.add(run);
+
+            if (pendingRuns.size() >= BATCH_SIZE) {
+                flushTestRuns();
+            }
+            return runId;
 
         } catch (SQLException e) {
             logger.error("Error inserting test run: " + e.getMessage(), e);
@@ -494,6 +783,143 @@ public class HanaDataUploader {
         }
     }
 
+    // Class to hold a test run queued for batch insertion
+    static class TestRunBatch {
+
+        final int runId;
+        final int scenarioId;
+        final Date jobDate;
+        final String deployment;
+        final String image;
+        final String buildNumber;
+        final String jobName;
+        // Workbook of the run and which column with the same JOB_DATE, deployment and image of its sheet it is
+        final String sourceFile;
+        final int keySeq;
+        // RUN_IDs of the stored runs with the same natural key that this run replaces
+        final List<Integer> replacedRunIds;
+
+        TestRunBatch(int runId, int scenarioId, Date jobDate, String deployment, String image, String buildNumber, String jobName,
+                String sourceFile, int keySeq) {
+            this(runId, scenarioId, jobDate, deployment, image, buildNumber, jobName, sourceFile, keySeq, List.of());
+        }
+
+        TestRunBatch(int runId, int scenarioId, Date jobDate, String deployment, String image, String buildNumber, String jobName,
+                String sourceFile, int keySeq, List<Integer> replacedRunIds) {
+            this.runId = runId;
+            this.scenarioId = scenarioId;
+            this.jobDate = jobDate;
+            this.deployment = deployment;
+            this.image = image;
+            this.buildNumber = buildNumber;
+            this.jobName = jobName;
+            this.sourceFile = sourceFile;
+            this.keySeq = keySeq;
+            this.replacedRunIds = replacedRunIds;
+        }
+
+        String key() {
+            return LoadedRunIndex.key(LoadedRunIndex.columnKey(scenarioId, jobDate, deployment, image, jobName), sourceFile, keySeq);
+        }
+    }
+
+    // Queues runs decoded by another thread for the next TEST_RUN batch (used by pipeline writers, which commit them)
+    void queueTestRuns(List<TestRunBatch> runs) {
+        pendingRuns.addAll(runs);
+        for (TestRunBatch run : runs) {
+            claimedRuns.add(run.key());
+        }
+    }
+
+    // Writes the queued TEST_RUN rows in one JDBC batch. They are not LOADED until their sheet is finished
+    void flushTestRuns() throws SQLException {
+        if (pendingRuns.isEmpty()) {
+            return;
+        }
+
+        String sql = "INSERT INTO " + TABLE_TEST_RUN + " (RUN_ID, SCENARIO_ID, JOB_DATE, DEPLOYMENT_NAME, IMAGE_NAME, BUILD_NUMBER, JENKINS_JOB_NAME, "
+                + "SOURCE_FILE, KEY_SEQ, LOADED) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, FALSE)";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            deleteReplacedRuns();
+            for (TestRunBatch run : pendingRuns) {
+                stmt.setInt(1, run.runId);
+                stmt.setInt(2, run.scenarioId);
+                stmt.setDate(3, run.jobDate);
+                stmt.setString(4, run.deployment);
+                stmt.setString(5, run.image);
+                stmt.setString(6, run.buildNumber);
+                stmt.setString(7, run.jobName);
+                stmt.setString(8, run.sourceFile);
+                stmt.setInt(9, run.keySeq);
+                stmt.addBatch();
+                unfinishedRuns.add(run.runId);
+            }
+            TestRunInsertEvent event = new TestRunInsertEvent();
+            event.begin();
+            long start = System.nanoTime();
+            stmt.executeBatch();
+            UploadMetrics.batchExecuted(TABLE_TEST_RUN, pendingRuns.size(), System.nanoTime() - start);
+            event.rows = pendingRuns.size();
+            event.commit();
+            metrics.roundTrip(UploadMetrics.BATCH);
+            logger.debug("Executed batch of {} test runs", pendingRuns.size());
+            int runsWritten = pendingRuns.size();
+            metrics.runsWritten(runsWritten);
+            pendingRuns.clear();
+            rowsWritten(runsWritten);
+        } catch (SQLException e) {
+            logger.error("Error batch inserting test runs: " + e.getMessage(), e);
+            throw new SQLException("Error batch inserting test runs", e);
+        }
+    }
+
+    // Deletes the stored runs that queued runs replace, with their results, in the same transaction as the new rows
+    private void deleteReplacedRuns() throws SQLException {
+        List<Integer> replacedRunIds = new ArrayList<>();
+        for (TestRunBatch run : pendingRuns) {
+            replacedRunIds.addAll(run.replacedRunIds);
+        }
+        if (replacedRunIds.isEmpty()) {
+            return;
+        }
+
+        for (String table : List.of(TABLE_TEST_RESULT, TABLE_TEST_RUN)) {
+            try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM " + table + " WHERE RUN_ID = ?")) {
+                for (int runId : replacedRunIds) {
+                    stmt.setInt(1, runId);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                metrics.roundTrip(UploadMetrics.BATCH);
+            }
+        }
+        logger.info("Replaced {} test runs that were loaded before", replacedRunIds.size());
+    }
+
+    // Marks the runs of the finished sheet as completely loaded, in the transaction that wrote their last results
+    private void markRunsLoaded() throws SQLException {
+        if (unfinishedRuns.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement stmt = connection.prepareStatement("UPDATE " + TABLE_TEST_RUN + " SET LOADED = TRUE WHERE RUN_ID = ?")) {
+            for (int runId : unfinishedRuns) {
+                stmt.setInt(1, runId);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            metrics.roundTrip(UploadMetrics.BATCH);
+        }
+        unfinishedRuns.clear();
+    }
+
+    // Helper method that returns the Jenkins job name without the build number suffix, truncated to the column size
+    String jobName() {
+        String[] jobNameParts = jenkinsJobName.split(" #", 2);
+        String newJobNameString = jobNameParts.length > 1 ? jobNameParts[0] : jenkinsJobName;
+        return trimToLength(newJobNameString, MAX_JOB_NAME_LENGTH);
+    }
+
     // Helper method to trim and truncate strings to a specified maximum length
     private String trimToLength(String input, int maxLength) {
         if (input == null) {
@@ -510,32 +936,30 @@ public class HanaDataUploader {
 
     // Maintains TEST_SCENARIO table (prevents duplicates)
     int getOrCreateScenario(String name, String entityType) throws SQLException {
-        // Check for existing scenario first
-        String checkSql = "SELECT SCENARIO_ID FROM " + TABLE_TEST_SCENARIO + " WHERE NAME = ?";
+        return scenarioCache.getOrCreate(name, () -> lookupOrInsertScenario(name, entityType));
+    }
 
-        try (PreparedStatement checkStmt = connection.prepareStatement(checkSql)) {
-            checkStmt.setString(1, name);
-            ResultSet rs = checkStmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt(1);
+    int lookupOrInsertScenario(String name, String entityType) throws SQLException {
+        try {
+            // Check for existing scenario first
+            Integer scenarioId = selectScenarioId(name);
+            if (scenarioId != null) {
+                return scenarioId;
             }
 
             // If not found, insert a new scenario
-            String insertSql = "INSERT INTO " + TABLE_TEST_SCENARIO + " (NAME, ENTITY_TYPE) VALUES (?, ?)";
-            try (PreparedStatement insertStmt = connection.prepareStatement(insertSql)) {
-                insertStmt.setString(1, name);
-                insertStmt.setString(2, entityType);
-                insertStmt.executeUpdate();
-
-                // Get generated key
-                try (Statement idStmt = connection.createStatement(); ResultSet generatedKeys = idStmt.executeQuery("SELECT CURRENT_IDENTITY_VALUE() FROM DUMMY")) {
-                    if (generatedKeys.next()) {
-                        return generatedKeys.getInt(1);
-                    } else {
-                        throw new SQLException("Failed to retrieve generated key for scenario");
-                    }
+            try {
+                return insertScenario(name, entityType);
+            } catch (SQLException e) {
+                if (!isUniqueViolation(e)) {
+                    throw e;
                 }
-
+                // Another uploader process created the same scenario in the meantime
+                scenarioId = selectScenarioId(name);
+                if (scenarioId == null) {
+                    throw e;
+                }
+                return scenarioId;
             }
         } catch (SQLException e) {
             logger.error("Error getting or creating scenario: " + e.getMessage(), e);
@@ -543,6 +967,48 @@ public class HanaDataUploader {
         }
     }
 
+    private Integer selectScenarioId(String name) throws SQLException {
+        String checkSql = "SELECT SCENARIO_ID FROM " + TABLE_TEST_SCENARIO + " WHERE NAME = ?";
+        try (PreparedStatement checkStmt = connection.prepareStatement(checkSql)) {
+            checkStmt.setString(1, name);
+            metrics.roundTrip(UploadMetrics.QUERY);
+            try (ResultSet rs = checkStmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : null;
+            }
+        }
+    }
+
+    // New scenarios are committed right away on a separate connection, so every worker can reference them and
+    // a rolled back upload does not leave a cached ID behind that is missing in the table
+    private int insertScenario(String name, String entityType) throws SQLException {
+        if (connectionUrl == null) {
+            return insertScenario(connection, name, entityType);
+        }
+        try (Connection scenarioConnection = openConnection()) {
+            return insertScenario(scenarioConnection, name, entityType);
+        }
+    }
+
+    private int insertScenario(Connection target, String name, String entityType) throws SQLException {
+        int scenarioId = scenarioIds.nextId(target, dialect);
+        String insertSql = "INSERT INTO " + TABLE_TEST_SCENARIO + " (SCENARIO_ID, NAME, ENTITY_TYPE) VALUES (?, ?, ?)";
+        try (PreparedStatement insertStmt = target.prepareStatement(insertSql)) {
+            insertStmt.setInt(1, scenarioId);
+            insertStmt.setString(2, name);
+            insertStmt.setString(3, entityType);
+            insertStmt.executeUpdate();
+            metrics.roundTrip(UploadMetrics.UPDATE);
+            return scenarioId;
+        }
+    }
+
+    // Helper method that recognizes unique constraint violations (HANA error 301 or SQL state class 23)
+    static boolean isUniqueViolation(SQLException e) {
+        String sqlState = e.getSQLState();
+        return e instanceof SQLIntegrityConstraintViolationException || e.getErrorCode() == 301
+                || (sqlState != null && sqlState.startsWith("23"));
+    }
+
     // Class to hold test result data for batch processing
     static class TestResultBatch {
 
@@ -564,9 +1030,23 @@ public class HanaDataUploader {
             return;
         }
 
+        // The runs referenced by these results must exist first
+        flushTestRuns();
+
+        if (pipeline != null) {
+            pipeline.addResults(results);
+            return;
+        }
+
+        if (options.loadMode == UploadOptions.LoadMode.BULK) {
+            bulkLoader().add(results);
+            return;
+        }
+
         String sql = "INSERT INTO " + TABLE_TEST_RESULT + " (RUN_ID, ENTITY_NAME, DURATION_MS) VALUES (?, ?, ?)";
 
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int batchSize = batchSizer.batchSize();
             int batchCount = 0;
 
             for (TestResultBatch result : results) {
@@ -578,17 +1058,18 @@ public class HanaDataUploader {
                 batchCount++;
 
                 // Execute batch when it reaches the batch size
-                if (batchCount % BATCH_SIZE == 0) {
-                    stmt.executeBatch();
-                    logger.debug("Executed batch of {} test results", BATCH_SIZE);
+                if (batchCount == batchSize) {
+                    executeTimedBatch(stmt, batchCount);
+                    batchCount = 0;
+                    batchSize = batchSizer.batchSize();
                 }
             }
 
             // Execute any remaining batched statements
-            if (batchCount % BATCH_SIZE != 0) {
-                stmt.executeBatch();
-                logger.debug("Executed final batch of {} test results", batchCount % BATCH_SIZE);
+            if (batchCount > 0) {
+                executeTimedBatch(stmt, batchCount);
             }
+            rowsWritten(results.size());
 
         } catch (SQLException e) {
             logger.error("Error batch inserting test results: " + e.getMessage(), e);
@@ -596,6 +1077,51 @@ public class HanaDataUploader {
         }
     }
 
+    private BulkResultLoader bulkLoader() {
+        if (bulkLoader == null) {
+            Path stagingDir = Paths.get(options.bulkStagingDir).toAbsolutePath();
+            String serverDir = options.bulkServerDir != null ? options.bulkServerDir : stagingDir.toString();
+            bulkLoader = new BulkResultLoader(dialect, stagingDir, serverDir);
+        }
+        return bulkLoader;
+    }
+
+    // Moves the results staged in bulk load mode into TEST_RESULT
+    void flushBulkLoad() throws SQLException {
+        if (bulkLoader != null && bulkLoader.getStagedRows() > 0) {
+            metrics.roundTrip(UploadMetrics.BULK_LOAD);
+            BatchFlushEvent event = new BatchFlushEvent();
+            event.begin();
+            int rows;
+            // The staging rows are cleaned up outside the upload transaction, which a failure rolls back
+            try (Connection cleanupConnection = connectionUrl != null ? openConnection() : null) {
+                rows = bulkLoader.load(connection, cleanupConnection != null ? cleanupConnection : connection);
+            }
+            event.table = TABLE_TEST_RESULT;
+            event.mode = "bulk";
+            event.rows = rows;
+            event.commit();
+            rowsWritten(rows);
+        }
+    }
+
+    // Executes the pending batch and feeds its latency to the adaptive batch sizer
+    private void executeTimedBatch(PreparedStatement stmt, int rows) throws SQLException {
+        BatchFlushEvent event = new BatchFlushEvent();
+        event.begin();
+        long start = System.nanoTime();
+        stmt.executeBatch();
+        long elapsed = System.nanoTime() - start;
+        event.table = TABLE_TEST_RESULT;
+        event.mode = "batch";
+        event.rows = rows;
+        event.commit();
+        batchSizer.record(rows, elapsed);
+        UploadMetrics.batchExecuted(TABLE_TEST_RESULT, rows, elapsed);
+        metrics.roundTrip(UploadMetrics.BATCH);
+        logger.debug("Executed batch of {} test results in {} ms", rows, elapsed / 1_000_000);
+    }
+
     // Helper method to extract a numeric value from a cell, regardless of cell format
     Double extractNumericValue(Cell cell, int rowNum, int colNum) {
         if (cell == null) {
@@ -751,5 +1277,10 @@ public class HanaDataUploader {
         } catch (SQLException e) {
             logger.error("Error closing connection: " + e.getMessage(), e);
         }
+        // A shared pool stays open for the next upload
+        if (connectionPool != null && database == null) {
+            connectionPool.close();
+        }
+        connectionPool = null;
     }
 }
@@ -0,0 +1,102 @@
+package com.sap.fpa61.db;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+// SAP HANA, the production database
+class HanaDialect implements SqlDialect {
+
+    @Override
+    public String name() {
+        return "HANA";
+    }
+
+    @Override
+    public String jdbcUrl(String host, String port) {
+        return "jdbc:sap://" + host + ":" + port + "/";
+    }
+
+    @Override
+    public Properties connectionProperties(Properties config) {
+        Properties connProps = new Properties();
+        copyProperty(config, "DB_USER", connProps, "user");
+        copyProperty(config, "DB_PASSWORD", connProps, "password");
+        copyProperty(config, "DB_ENCRYPT", connProps, "encrypt");
+        copyProperty(config, "DB_VALIDATE_CERTIFICATE", connProps, "validateCertificate");
+        return connProps;
+    }
+
+    @Override
+    public String setSchema(String schema) {
+        return "SET SCHEMA " + schema;
+    }
+
+    @Override
+    public String currentSchemaQuery() {
+        return "SELECT CURRENT_SCHEMA FROM DUMMY";
+    }
+
+    @Override
+    public String nextValueQuery(String sequence) {
+        return "SELECT " + sequence + ".NEXTVAL FROM DUMMY";
+    }
+
+    // HANA's UPSERT matches on the primary key, so keyColumns only documents the key here
+    @Override
+    public String upsert(String table, List<String> columns, List<String> keyColumns) {
+        return "UPSERT " + table + " (" + String.join(", ", columns) + ") VALUES (" + placeholders(columns.size())
+                + ") WITH PRIMARY KEY";
+    }
+
+    // The file is read server-side
+    @Override
+    public String csvImport(String table, List<String> columns, String serverPath) {
+        return "IMPORT FROM CSV FILE '" + serverPath.replace("'", "''") + "' INTO " + table
+                + " WITH RECORD DELIMITED BY '\\n' FIELD DELIMITED BY ',' OPTIONALLY ENCLOSED BY '\"'";
+    }
+
+    // The migration scripts are written for HANA
+    @Override
+    public String adaptDdl(String statement) {
+        return statement;
+    }
+
+    @Override
+    public String migrationVariant() {
+        return null;
+    }
+
+    @Override
+    public String schemaExistsQuery() {
+        return "SELECT COUNT(*) FROM SYS.SCHEMAS WHERE SCHEMA_NAME = ?";
+    }
+
+    @Override
+    public String tableExistsQuery(String schema) {
+        return "SELECT COUNT(*) FROM SYS.TABLES WHERE SCHEMA_NAME = '" + schema + "' AND TABLE_NAME = ?";
+    }
+
+    @Override
+    public String ddlInTransaction(boolean enabled) {
+        return "SET TRANSACTION AUTOCOMMIT DDL " + (enabled ? "OFF" : "ON");
+    }
+
+    @Override
+    public String lockTable(String qualifiedTable) {
+        return "LOCK TABLE " + qualifiedTable + " IN EXCLUSIVE MODE";
+    }
+
+    // Helper method that copies a config value into the driver properties if it is set
+    static void copyProperty(Properties config, String key, Properties connProps, String driverKey) {
+        String value = config.getProperty(key);
+        if (value != null) {
+            connProps.setProperty(driverKey, value);
+        }
+    }
+
+    // Helper method that builds the "?, ?, ?" list of an insert
+    static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
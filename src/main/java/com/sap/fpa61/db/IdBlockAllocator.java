@@ -0,0 +1,59 @@
+package com.sap.fpa61.db;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+// Assigns primary keys client-side from blocks reserved on a DB sequence. The sequence is incremented by the
+// block size, so one NEXTVAL reserves [value, value + blockSize) for this process; other uploader processes
+// draw their own blocks from the same sequence and can never receive overlapping IDs
+class IdBlockAllocator {
+
+    private static final Logger logger = LogManager.getLogger(IdBlockAllocator.class);
+
+    private final String sequenceName;
+    private final int blockSize;
+
+    private long nextId = 0;
+    private long blockEnd = 0;
+    private int reservedBlocks = 0;
+
+    // blockSize must match the INCREMENT BY of the sequence (db/migration/V2__client_side_ids.sql)
+    IdBlockAllocator(String sequenceName, int blockSize) {
+        this.sequenceName = sequenceName;
+        this.blockSize = blockSize;
+    }
+
+    // Returns the next ID, reserving a new block through the given connection when the current one is used up.
+    // Sequence values are not transactional, so a rolled back upload only leaves a gap
+    synchronized int nextId(Connection connection, SqlDialect dialect) throws SQLException {
+        if (nextId >= blockEnd) {
+            long blockStart = reserveBlock(connection, dialect);
+            reservedBlocks++;
+            UploadMetrics.SEQUENCE.inc();
+            nextId = blockStart;
+            blockEnd = blockStart + blockSize;
+            logger.debug("Reserved IDs " + blockStart + " to " + (blockEnd - 1) + " from " + sequenceName);
+        }
+        return Math.toIntExact(nextId++);
+    }
+
+    // Blocks reserved so far, one round trip each
+    synchronized int getReservedBlocks() {
+        return reservedBlocks;
+    }
+
+    private long reserveBlock(Connection connection, SqlDialect dialect) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(dialect.nextValueQuery(sequenceName))) {
+            if (!rs.next()) {
+                throw new SQLException("Failed to reserve ID block from " + sequenceName);
+            }
+            return rs.getLong(1);
+        }
+    }
+}
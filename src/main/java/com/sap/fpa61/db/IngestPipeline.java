@@ -0,0 +1,323 @@
+package com.sap.fpa61.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+// Decouples workbook decoding from JDBC writes (UPLOAD_WRITER_THREADS > 0). The decoding thread hands its
+// TEST_RUN/TEST_RESULT rows to a pool of writer threads, each draining its own bounded queue through its own
+// connection and transaction, so POI parsing continues while executeBatch waits on the network.
+// Rows are routed by RUN_ID, so the results of a run are always written by the writer that inserted the run.
+// A full queue blocks the decoder (backpressure); a failing writer fails the decoder at its next hand-off.
+// The queued hand-offs and the time the decoder was blocked are exported as pnr_ingest_queue_depth and
+// pnr_ingest_decoder_blocked_seconds_total
+class IngestPipeline {
+
+    private static final Logger logger = LogManager.getLogger(IngestPipeline.class);
+
+    // How often a blocked decoder or an idle writer checks for failures
+    private static final long POLL_MILLIS = 100;
+
+    private enum TaskType {
+        BATCH,
+        SHEET_END,
+        END
+    }
+
+    // One hand-off to a writer: runs are written before the results that reference them
+    private static class Task {
+
+        final TaskType type;
+        final List<HanaDataUploader.TestRunBatch> runs;
+        final List<HanaDataUploader.TestResultBatch> results;
+
+        Task(TaskType type, List<HanaDataUploader.TestRunBatch> runs, List<HanaDataUploader.TestResultBatch> results) {
+            this.type = type;
+            this.runs = runs;
+            this.results = results;
+        }
+    }
+
+    // A writer thread with its queue and, on the decoder side, the rows not handed off yet
+    private class Writer {
+
+        final BlockingQueue<Task> queue;
+        final Connection connection;
+        final HanaDataUploader uploader;
+        List<HanaDataUploader.TestRunBatch> runs = new ArrayList<>();
+        List<HanaDataUploader.TestResultBatch> results = new ArrayList<>();
+
+        Writer(HanaDataUploader parent, int queueCapacity) throws SQLException {
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.connection = parent.openConnection();
+            this.uploader = new HanaDataUploader(parent, connection);
+        }
+
+        void run() throws InterruptedException {
+            while (true) {
+                long idleStart = System.nanoTime();
+                Task task = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                writerIdleNanos.addAndGet(System.nanoTime() - idleStart);
+                if (task == null) {
+                    continue;
+                }
+                if (task.type == TaskType.END) {
+                    return;
+                }
+                UploadMetrics.ingestDequeued(1);
+                if (failure.get() != null) {
+                    // Keep draining, so a blocked decoder can see the failure
+                    continue;
+                }
+                try {
+                    write(task);
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        }
+
+        private void write(Task task) throws SQLException {
+            uploader.queueTestRuns(task.runs);
+            if (task.results.isEmpty()) {
+                uploader.flushTestRuns();
+            } else {
+                uploader.insertTestResultsBatch(task.results);
+            }
+            if (task.type == TaskType.SHEET_END) {
+                uploader.sheetFinished();
+            }
+            batchesWritten.incrementAndGet();
+        }
+    }
+
+    private final HanaDataUploader parent;
+    private final List<Writer> writers = new ArrayList<>();
+    private final ExecutorService executor;
+    private final List<Future<?>> futures = new ArrayList<>();
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+    private final int queueCapacity;
+
+    // Queue metrics of this pipeline, logged when it ends
+    private final AtomicLong batchesWritten = new AtomicLong();
+    private final AtomicLong writerIdleNanos = new AtomicLong();
+    private long producerWaitNanos = 0;
+    private int maxQueueDepth = 0;
+    private boolean closed = false;
+
+    // Opens one connection per writer and starts the writers in the parent's commit mode
+    IngestPipeline(HanaDataUploader parent, int writerThreads, int queueCapacity) throws SQLException {
+        this.parent = parent;
+        this.queueCapacity = queueCapacity;
+        try {
+            for (int i = 0; i < writerThreads; i++) {
+                Writer writer = new Writer(parent, queueCapacity);
+                writers.add(writer);
+                writer.uploader.beginTransaction();
+            }
+        } catch (SQLException e) {
+            closeConnections();
+            throw e;
+        }
+
+        executor = Executors.newFixedThreadPool(writerThreads);
+        for (Writer writer : writers) {
+            futures.add(executor.submit(() -> {
+                writer.run();
+                return null;
+            }));
+        }
+        logger.debug("Started ingest pipeline with {} writers, queue capacity {}", writerThreads, queueCapacity);
+    }
+
+    // Buffers a run for the writer that owns its RUN_ID; it is handed off with that writer's next results
+    void addRun(HanaDataUploader.TestRunBatch run) {
+        writerFor(run.runId).runs.add(run);
+    }
+
+    // Buffers results per writer and hands off every writer buffer that reaches the current batch size
+    void addResults(List<HanaDataUploader.TestResultBatch> results) throws SQLException {
+        checkFailure();
+        int batchSize = parent.batchSizer.batchSize();
+        for (HanaDataUploader.TestResultBatch result : results) {
+            Writer writer = writerFor(result.runId);
+            writer.results.add(result);
+            if (writer.results.size() >= batchSize) {
+                handOff(writer, TaskType.BATCH);
+            }
+        }
+    }
+
+    // Hands off everything buffered and lets every writer finish the sheet (bulk load, commit per sheet)
+    void endSheet() throws SQLException {
+        checkFailure();
+        for (Writer writer : writers) {
+            handOff(writer, TaskType.SHEET_END);
+        }
+    }
+
+    // Waits for the writers to drain their queues and commits their transactions; throws the first writer failure,
+    // in which case every writer is rolled back
+    void finish() throws SQLException {
+        try {
+            for (Writer writer : writers) {
+                if (!writer.runs.isEmpty() || !writer.results.isEmpty()) {
+                    handOff(writer, TaskType.BATCH);
+                }
+            }
+            stop();
+            checkFailure();
+            for (Writer writer : writers) {
+                writer.uploader.commitTransaction();
+            }
+        } catch (SQLException e) {
+            failure.compareAndSet(null, e);
+            stop();
+            rollback();
+            throw e;
+        } finally {
+            closeConnections();
+        }
+        logger.info(summary());
+    }
+
+    // Stops the writers without writing what is still queued and rolls back their transactions
+    void abort() {
+        if (closed) {
+            return;
+        }
+        failure.compareAndSet(null, new SQLException("Ingest pipeline aborted"));
+        stop();
+        rollback();
+        closeConnections();
+    }
+
+    // Number of hand-offs waiting in the writer queues
+    int queueDepth() {
+        int depth = 0;
+        for (Writer writer : writers) {
+            depth += writer.queue.size();
+        }
+        return depth;
+    }
+
+    String summary() {
+        return "Ingest pipeline: " + writers.size() + " writers, " + batchesWritten.get() + " batches written, max queue depth "
+                + maxQueueDepth + "/" + queueCapacity + ", decoder blocked " + TimeUnit.NANOSECONDS.toMillis(producerWaitNanos)
+                + " ms, writers idle " + TimeUnit.NANOSECONDS.toMillis(writerIdleNanos.get()) + " ms";
+    }
+
+    private Writer writerFor(int runId) {
+        return writers.get(Math.floorMod(runId, writers.size()));
+    }
+
+    // Queues the writer's buffered rows, blocking while its queue is full
+    private void handOff(Writer writer, TaskType type) throws SQLException {
+        Task task = new Task(type, writer.runs, writer.results);
+        writer.runs = new ArrayList<>();
+        writer.results = new ArrayList<>();
+        put(writer, task);
+    }
+
+    // The hand-off is counted in pnr_ingest_queue_depth before it is offered, so a writer that takes it at once never
+    // drives the depth below zero; a decoder blocked on a full queue counts its pending hand-off
+    private void put(Writer writer, Task task) throws SQLException {
+        long start = System.nanoTime();
+        UploadMetrics.ingestQueued();
+        boolean queued = false;
+        try {
+            while (!writer.queue.offer(task, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+            }
+            queued = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for ingest writers", e);
+        } finally {
+            if (!queued) {
+                UploadMetrics.ingestDequeued(1);
+            }
+        }
+        long waitNanos = System.nanoTime() - start;
+        producerWaitNanos += waitNanos;
+        UploadMetrics.decoderBlocked(waitNanos);
+        maxQueueDepth = Math.max(maxQueueDepth, writer.queue.size());
+    }
+
+    // Sends END to every writer and waits for them to exit
+    private void stop() {
+        if (executor.isShutdown()) {
+            return;
+        }
+        for (Writer writer : writers) {
+            try {
+                writer.queue.put(new Task(TaskType.END, List.of(), List.of()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        executor.shutdown();
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                failure.compareAndSet(null, new SQLException("Ingest writer stopped", e.getCause()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                executor.shutdownNow();
+                return;
+            }
+        }
+    }
+
+    private void rollback() {
+        for (Writer writer : writers) {
+            try {
+                writer.uploader.rollbackTransaction();
+            } catch (SQLException e) {
+                logger.error("Error rolling back ingest writer: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void closeConnections() {
+        closed = true;
+        for (Writer writer : writers) {
+            // Hand-offs a writer interrupted by shutdownNow never took
+            int left = 0;
+            for (Task task : writer.queue) {
+                if (task.type != TaskType.END) {
+                    left++;
+                }
+            }
+            writer.queue.clear();
+            UploadMetrics.ingestDequeued(left);
+            try {
+                writer.connection.close();
+            } catch (SQLException e) {
+                logger.warn("Error closing ingest writer connection: " + e.getMessage());
+            }
+        }
+    }
+
+    private void checkFailure() throws SQLException {
+        Exception e = failure.get();
+        if (e != null) {
+            throw new SQLException("Ingest writer failed: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.sap.fpa61.db;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+// Natural keys of the test runs already in TEST_RUN for this Jenkins job, loaded once per upload, and of the runs
+// claimed by the upload itself. A column's key is its scenario, JOB_DATE, DEPLOYMENT_NAME, IMAGE_NAME and job; a
+// run's key adds the workbook it came from (SOURCE_FILE) and which column with that key of the sheet it is (KEY_SEQ),
+// so both regression workbooks and repeated columns of one sheet keep their own runs. Workbooks repeat all historical
+// date columns every night, so only columns without a completely loaded run are ingested.
+// A claim stays with the upload once the transaction that wrote the run has committed; before that a rollback
+// gives it back
+class LoadedRunIndex {
+
+    private static final Logger logger = LogManager.getLogger(LoadedRunIndex.class);
+
+    // A run stored by an earlier upload
+    static class StoredRun {
+
+        final int runId;
+        // False if the upload that wrote it stopped before all of its results were written
+        final boolean loaded;
+
+        StoredRun(int runId, boolean loaded) {
+            this.runId = runId;
+            this.loaded = loaded;
+        }
+    }
+
+    // Every stored run by run key
+    private final Map<String, StoredRun> storedRuns = new ConcurrentHashMap<>();
+    // RUN_IDs of the runs loaded before schema version 4, which have no SOURCE_FILE and KEY_SEQ, by column key
+    private final Map<String, List<Integer>> earlierRuns = new ConcurrentHashMap<>();
+    // Runs claimed by this upload, and the claims whose runs are committed
+    private final Set<String> claimedKeys = ConcurrentHashMap.newKeySet();
+    private final Set<String> committedKeys = ConcurrentHashMap.newKeySet();
+
+    // Loads the keys of every run of the given job
+    void load(Connection connection, String jobName) throws SQLException {
+        String sql = "SELECT SCENARIO_ID, JOB_DATE, DEPLOYMENT_NAME, IMAGE_NAME, RUN_ID, SOURCE_FILE, KEY_SEQ, LOADED FROM "
+                + HanaDataUploader.TABLE_TEST_RUN + " WHERE JENKINS_JOB_NAME = ?";
+        int earlier = 0;
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, jobName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String columnKey = columnKey(rs.getInt(1), rs.getDate(2), rs.getString(3), rs.getString(4), jobName);
+                    String sourceFile = rs.getString(6);
+                    if (sourceFile == null) {
+                        earlierRuns.computeIfAbsent(columnKey, k -> new ArrayList<>()).add(rs.getInt(5));
+                        earlier++;
+                    } else {
+                        storedRuns.put(key(columnKey, sourceFile, rs.getInt(7)), new StoredRun(rs.getInt(5), rs.getBoolean(8)));
+                    }
+                }
+            }
+        }
+        logger.info("Loaded " + (storedRuns.size() + earlier) + " existing test runs of " + jobName);
+    }
+
+    // The stored run with this run key, or null if there is none
+    StoredRun storedRun(String key) {
+        return storedRuns.get(key);
+    }
+
+    // Whether runs loaded before schema version 4 hold this column
+    boolean loadedBefore(String columnKey) {
+        return earlierRuns.containsKey(columnKey);
+    }
+
+    // Takes the RUN_IDs of the runs loaded before schema version 4 that hold this column, for the first column of
+    // this upload that replaces them; later columns get an empty list
+    List<Integer> takeEarlierRuns(String columnKey) {
+        List<Integer> runIds = earlierRuns.remove(columnKey);
+        return runIds != null ? runIds : List.of();
+    }
+
+    // Claims the next column with this column key in a sheet of the given workbook and returns its KEY_SEQ
+    int claimNext(String columnKey, String sourceFile) {
+        int keySeq = 1;
+        while (!claimedKeys.add(key(columnKey, sourceFile, keySeq))) {
+            keySeq++;
+        }
+        return keySeq;
+    }
+
+    // Records that the runs of these claims are committed, so a later rollback no longer gives them back
+    void committed(Collection<String> keys) {
+        committedKeys.addAll(keys);
+    }
+
+    // Gives a claim back after the transaction that would have loaded the run was rolled back
+    void release(String key) {
+        if (!committedKeys.contains(key)) {
+            claimedKeys.remove(key);
+        }
+    }
+
+    int size() {
+        return storedRuns.size();
+    }
+
+    static String columnKey(int scenarioId, Date jobDate, String deployment, String image, String jobName) {
+        return scenarioId + "\u0001" + jobDate + "\u0001" + deployment + "\u0001" + image + "\u0001" + jobName;
+    }
+
+    static String key(String columnKey, String sourceFile, int keySeq) {
+        return columnKey + "\u0001" + sourceFile + "\u0001" + keySeq;
+    }
+}
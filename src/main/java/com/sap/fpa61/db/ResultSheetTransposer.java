@@ -0,0 +1,200 @@
+package com.sap.fpa61.db;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.sap.fpa61.jfr.ColumnDecodeEvent;
+import com.sap.fpa61.jfr.SheetParseEvent;
+
+// Transposes one result sheet, read once in row order, into column-oriented test runs:
+// every dated column gets an accumulator that is filled while the rows go by, and its TEST_RUN
+// and TEST_RESULT rows are handed to the uploader, so parsing is O(cells) instead of O(columns x rows)
+class ResultSheetTransposer {
+
+    private static final Logger logger = LogManager.getLogger(ResultSheetTransposer.class);
+
+    static final int HEADER_ROW = 0;
+    static final int DEPLOYMENT_ROW = 1;
+    static final int IMAGE_ROW = 2;
+    static final int FIRST_DATA_ROW = 5;
+
+    private final HanaDataUploader uploader;
+    private final String scenarioName;
+
+    // Per-column accumulators, keyed and ordered by column index
+    private final Map<Integer, ColumnRun> columns = new TreeMap<>();
+    private final List<HanaDataUploader.TestResultBatch> pendingResults = new ArrayList<>();
+
+    private boolean hasDeploymentRow = false;
+    private boolean hasImageRow = false;
+    private boolean runsCreated = false;
+    private String currentEntity;
+    private int currentRow = -1;
+    private int rows = 0;
+    private long cells = 0;
+    // Spans the sheet from its first row to its last write
+    private final SheetParseEvent event = new SheetParseEvent();
+
+    ResultSheetTransposer(HanaDataUploader uploader, String scenarioName) {
+        this.uploader = uploader;
+        this.scenarioName = scenarioName;
+        event.begin();
+    }
+
+    // Metadata of one column (= one test run) collected from the header rows
+    static class ColumnRun {
+
+        String jobDate;
+        String deployment;
+        String image;
+        int runId = -1;
+    }
+
+    // Must be called before the cells of a row; rows arrive in ascending order
+    void startRow(int rowNum) throws SQLException {
+        if (rowNum != currentRow) {
+            rows++;
+        }
+        currentRow = rowNum;
+        currentEntity = null;
+        if (rowNum > IMAGE_ROW) {
+            createRuns();
+        }
+    }
+
+    // A text cell of the header, deployment or image row, or the entity name in column 0 of a data row
+    void textCell(int rowNum, int colNum, String value) throws SQLException {
+        cells++;
+        if (value == null) {
+            return;
+        }
+        if (rowNum == HEADER_ROW) {
+            if (colNum > 0) {
+                columns.computeIfAbsent(colNum, c -> new ColumnRun()).jobDate = value;
+            }
+        } else if (rowNum == DEPLOYMENT_ROW) {
+            hasDeploymentRow = true;
+            ColumnRun run = columns.get(colNum);
+            if (run != null) {
+                run.deployment = stripLabel(value);
+            }
+        } else if (rowNum == IMAGE_ROW) {
+            hasImageRow = true;
+            ColumnRun run = columns.get(colNum);
+            if (run != null) {
+                run.image = stripLabel(value);
+            }
+        } else if (rowNum >= FIRST_DATA_ROW && colNum == 0) {
+            currentEntity = value;
+        }
+    }
+
+    // A decoded duration of a data row (row 5 onwards); null values are skipped
+    void resultCell(int rowNum, int colNum, Double duration) throws SQLException {
+        cells++;
+        if (rowNum < FIRST_DATA_ROW || colNum == 0 || duration == null) {
+            return;
+        }
+        if (rowNum != currentRow) {
+            startRow(rowNum);
+        }
+
+        ColumnRun run = columns.get(colNum);
+        if (run == null || run.runId == -1) {
+            return;
+        }
+        if (currentEntity == null) {
+            logger.debug("Skipping row " + rowNum + " due to missing data in sheet " + scenarioName);
+            return;
+        }
+
+        pendingResults.add(new HanaDataUploader.TestResultBatch(run.runId, currentEntity, duration));
+        if (pendingResults.size() >= uploader.batchSizer.batchSize()) {
+            flushResults();
+        }
+    }
+
+    // Completes the sheet: creates runs that have not been created yet, writes the remaining results and
+    // lets the uploader commit if it commits per sheet
+    void finish() throws SQLException {
+        UploadMetrics.sheetParsed(rows, cells);
+        createRuns();
+        uploader.flushTestRuns();
+        flushResults();
+        uploader.sheetFinished();
+        event.file = uploader.currentFile;
+        event.sheet = scenarioName;
+        event.rows = rows;
+        event.cells = cells;
+        event.commit();
+    }
+
+    // Queues one TEST_RUN per dated column once the header, deployment and image rows have been read
+    private void createRuns() throws SQLException {
+        if (runsCreated) {
+            return;
+        }
+        runsCreated = true;
+
+        if (columns.isEmpty()) {
+            logger.warn("Header row not found in sheet: " + scenarioName);
+            return;
+        }
+        if (!hasDeploymentRow || !hasImageRow) {
+            logger.warn("Missing deployment or image row in sheet " + scenarioName);
+            return;
+        }
+
+        int alreadyLoaded = 0;
+        for (Map.Entry<Integer, ColumnRun> entry : columns.entrySet()) {
+            ColumnRun run = entry.getValue();
+            if (run.deployment == null || run.image == null) {
+                logger.warn("Missing deployment or image data for column " + entry.getKey() + " in sheet " + scenarioName);
+                continue;
+            }
+
+            ColumnDecodeEvent columnEvent = new ColumnDecodeEvent();
+            columnEvent.begin();
+            int runId = uploader.insertTestRun(scenarioName, run.jobDate, run.deployment, run.image);
+            if (runId == -1) {
+                throw new SQLException("Failed to insert test run");
+            }
+            if (columnEvent.shouldCommit()) {
+                columnEvent.sheet = scenarioName;
+                columnEvent.column = entry.getKey();
+                columnEvent.jobDate = run.jobDate;
+                columnEvent.alreadyLoaded = runId == HanaDataUploader.RUN_ALREADY_LOADED;
+                columnEvent.commit();
+            }
+            if (runId == HanaDataUploader.RUN_ALREADY_LOADED) {
+                // Its results are skipped as well
+                alreadyLoaded++;
+                continue;
+            }
+            run.runId = runId;
+        }
+        if (alreadyLoaded > 0) {
+            logger.info("Skipped " + alreadyLoaded + " of " + columns.size() + " columns already loaded in sheet " + scenarioName);
+        }
+    }
+
+    private void flushResults() throws SQLException {
+        if (pendingResults.isEmpty()) {
+            return;
+        }
+        uploader.insertTestResultsBatch(new ArrayList<>(pendingResults));
+        pendingResults.clear();
+    }
+
+    // Removes the "Deployment: " / "Image: " label in front of the value
+    static String stripLabel(String value) {
+        String[] parts = value.split(": ", 2);
+        return parts.length > 1 ? parts[1] : value;
+    }
+}
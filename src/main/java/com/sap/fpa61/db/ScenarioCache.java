@@ -0,0 +1,65 @@
+package com.sap.fpa61.db;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+// In-memory copy of the TEST_SCENARIO dimension (name -> SCENARIO_ID). It is loaded with one query per upload
+// and shared by all workers, so lookups no longer need a round trip and only missing scenarios are inserted
+class ScenarioCache {
+
+    private static final Logger logger = LogManager.getLogger(ScenarioCache.class);
+
+    private final Map<String, Integer> scenarioIds = new ConcurrentHashMap<>();
+    private final Map<String, Object> creationLocks = new ConcurrentHashMap<>();
+
+    // Resolves the ID of a scenario missing from the cache (looks it up in the DB or inserts it)
+    @FunctionalInterface
+    interface ScenarioResolver {
+
+        int resolve() throws SQLException;
+    }
+
+    // Loads the whole TEST_SCENARIO table into the cache
+    void load(Connection connection) throws SQLException {
+        String sql = "SELECT SCENARIO_ID, NAME FROM " + HanaDataUploader.TABLE_TEST_SCENARIO;
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                scenarioIds.put(rs.getString(2), rs.getInt(1));
+            }
+        }
+        logger.info("Loaded " + scenarioIds.size() + " test scenarios into cache");
+    }
+
+    Integer get(String name) {
+        return scenarioIds.get(name);
+    }
+
+    int size() {
+        return scenarioIds.size();
+    }
+
+    // Returns the cached ID or resolves it. Writers that miss on the same name at the same time are serialized
+    // per name, so the resolver runs once and the others pick up its result
+    int getOrCreate(String name, ScenarioResolver resolver) throws SQLException {
+        Integer scenarioId = scenarioIds.get(name);
+        if (scenarioId != null) {
+            return scenarioId;
+        }
+
+        synchronized (creationLocks.computeIfAbsent(name, n -> new Object())) {
+            scenarioId = scenarioIds.get(name);
+            if (scenarioId == null) {
+                scenarioId = resolver.resolve();
+                scenarioIds.put(name, scenarioId);
+            }
+            return scenarioId;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.sap.fpa61.db;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.sap.fpa61.jfr.DdlEvent;
+
+// Brings the REGRESSION_UPLOAD schema up to date with the versioned scripts in db/migration on the classpath.
+// Applied versions are recorded in SCHEMA_VERSION, so an up-to-date schema costs a single query at startup;
+// pending scripts are applied under an exclusive lock on SCHEMA_VERSION, so concurrent uploaders migrate once.
+// Scripts are written for HANA; other dialects rewrite their statements or replace a script with their own
+// variant from db/migration/<variant>/
+class SchemaMigrator {
+
+    private static final Logger logger = LogManager.getLogger(SchemaMigrator.class);
+
+    static final String MIGRATION_DIR = "db/migration/";
+    static final String MIGRATION_INDEX = MIGRATION_DIR + "migrations.txt";
+    static final String TABLE_SCHEMA_VERSION = "SCHEMA_VERSION";
+
+    private static final Pattern SCRIPT_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+    private final String schema;
+    private final SqlDialect dialect;
+
+    SchemaMigrator(SqlDialect dialect) {
+        this(HanaDataUploader.SCHEMA_NAME, dialect);
+    }
+
+    SchemaMigrator(String schema, SqlDialect dialect) {
+        this.schema = schema;
+        this.dialect = dialect;
+    }
+
+    // One versioned script from the migration index
+    static class Migration {
+
+        final int version;
+        final String description;
+        final String resource;
+
+        Migration(int version, String description, String resource) {
+            this.version = version;
+            this.description = description;
+            this.resource = resource;
+        }
+    }
+
+    // Applies the pending migrations and leaves the connection on the upload schema
+    void migrate(Connection connection) throws SQLException, IOException {
+        List<Migration> migrations = loadMigrations();
+        int latest = migrations.isEmpty() ? 0 : migrations.get(migrations.size() - 1).version;
+
+        Integer current = currentVersion(connection);
+        if (current == null || current < latest) {
+            applyPending(connection, migrations);
+        } else {
+            logger.info("Schema " + schema + " is up to date (version " + current + ")");
+        }
+
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(dialect.setSchema(schema));
+        }
+    }
+
+    // Reads the migration index; scripts must be listed in ascending version order
+    List<Migration> loadMigrations() throws IOException {
+        List<Migration> migrations = new ArrayList<>();
+        try (InputStream input = resource(MIGRATION_INDEX);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                Matcher matcher = SCRIPT_NAME.matcher(line);
+                if (!matcher.matches()) {
+                    throw new IOException("Invalid migration script name: " + line);
+                }
+                Migration migration = new Migration(Integer.parseInt(matcher.group(1)), matcher.group(2).replace('_', ' '),
+                        MIGRATION_DIR + line);
+                if (!migrations.isEmpty() && migration.version <= migrations.get(migrations.size() - 1).version) {
+                    throw new IOException("Migration " + line + " is out of order in " + MIGRATION_INDEX);
+                }
+                migrations.add(migration);
+            }
+        }
+        return migrations;
+    }
+
+    // The single metadata query of an up-to-date startup. Returns null if the version table does not exist yet
+    Integer currentVersion(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(VERSION) FROM " + schema + "." + TABLE_SCHEMA_VERSION)) {
+            rs.next();
+            int version = rs.getInt(1);
+            return rs.wasNull() ? 0 : version;
+        } catch (SQLException e) {
+            if (tableExists(connection, TABLE_SCHEMA_VERSION)) {
+                throw e;
+            }
+            return null;
+        }
+    }
+
+    private void applyPending(Connection connection, List<Migration> migrations) throws SQLException, IOException {
+        boolean legacySchema = createVersionTable(connection);
+
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement stmt = connection.createStatement()) {
+            // Keep DDL inside the transaction, so the lock is held until every pending script is applied
+            executeIfSupported(stmt, dialect.ddlInTransaction(true));
+            executeIfSupported(stmt, dialect.lockTable(schema + "." + TABLE_SCHEMA_VERSION));
+
+            // Another uploader may have migrated while we waited for the lock
+            Integer current = currentVersion(connection);
+            int version = current == null ? 0 : current;
+            stmt.execute(dialect.setSchema(schema));
+
+            for (Migration migration : migrations) {
+                if (migration.version <= version) {
+                    continue;
+                }
+                if (legacySchema && migration.version == 1) {
+                    // Tables created by the former ddl_script.sql: record the baseline without running it
+                    logger.info("Existing schema found, recording " + migration.resource + " as applied");
+                } else {
+                    String resource = scriptResource(migration);
+                    logger.info("Applying schema migration " + resource + "...");
+                    for (String statement : HanaDataUploader.splitSqlStatements(readScript(resource))) {
+                        statement = statement.trim();
+                        if (!statement.isEmpty() && !statement.equals(";")) {
+                            DdlEvent event = new DdlEvent();
+                            event.begin();
+                            stmt.execute(dialect.adaptDdl(statement));
+                            event.migration = resource;
+                            event.statement = statement;
+                            event.commit();
+                        }
+                    }
+                }
+                recordVersion(connection, migration);
+                version = migration.version;
+            }
+            connection.commit();
+            logger.info("Schema " + schema + " migrated to version " + version);
+        } catch (SQLException | IOException e) {
+            connection.rollback();
+            logger.error("Schema migration failed: " + e.getMessage(), e);
+            throw new SQLException("Schema migration failed", e);
+        } finally {
+            try (Statement stmt = connection.createStatement()) {
+                executeIfSupported(stmt, dialect.ddlInTransaction(false));
+            }
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    // Creates the schema and the version table if needed. Returns true if the schema already held the
+    // tables of the baseline, created before migrations were tracked
+    private boolean createVersionTable(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            if (!exists(connection, dialect.schemaExistsQuery(), schema)) {
+                logger.info("Creating schema " + schema);
+                stmt.execute("CREATE SCHEMA " + schema);
+            }
+            if (tableExists(connection, TABLE_SCHEMA_VERSION)) {
+                return false;
+            }
+            boolean legacySchema = tableExists(connection, HanaDataUploader.TABLE_TEST_RUN);
+            try {
+                stmt.execute(dialect.adaptDdl("CREATE COLUMN TABLE " + schema + "." + TABLE_SCHEMA_VERSION + " ("
+                        + "VERSION INT NOT NULL PRIMARY KEY, "
+                        + "DESCRIPTION NVARCHAR(256) NOT NULL, "
+                        + "INSTALLED_ON TIMESTAMP NOT NULL)"));
+            } catch (SQLException e) {
+                // Created by a concurrent uploader in the meantime
+                if (!tableExists(connection, TABLE_SCHEMA_VERSION)) {
+                    throw e;
+                }
+            }
+            return legacySchema;
+        }
+    }
+
+    // Upserted on VERSION: a version whose DDL was committed without its record (H2 commits every DDL statement)
+    // is recorded when its script is run again instead of failing on the key
+    private void recordVersion(Connection connection, Migration migration) throws SQLException {
+        String sql = dialect.upsert(schema + "." + TABLE_SCHEMA_VERSION, List.of("VERSION", "DESCRIPTION", "INSTALLED_ON"),
+                List.of("VERSION"));
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setInt(1, migration.version);
+            stmt.setString(2, migration.description);
+            stmt.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+            stmt.executeUpdate();
+        }
+    }
+
+    // The dialect's own variant of a script if there is one, otherwise the script from the index
+    String scriptResource(Migration migration) {
+        String variant = dialect.migrationVariant();
+        if (variant != null) {
+            String variantResource = MIGRATION_DIR + variant + "/" + migration.resource.substring(MIGRATION_DIR.length());
+            if (SchemaMigrator.class.getClassLoader().getResource(variantResource) != null) {
+                return variantResource;
+            }
+        }
+        return migration.resource;
+    }
+
+    private boolean tableExists(Connection connection, String table) throws SQLException {
+        return exists(connection, dialect.tableExistsQuery(schema), table);
+    }
+
+    private static void executeIfSupported(Statement stmt, String sql) throws SQLException {
+        if (sql != null) {
+            stmt.execute(sql);
+        }
+    }
+
+    private static boolean exists(Connection connection, String countSql, String name) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(countSql)) {
+            stmt.setString(1, name);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) > 0;
+            }
+        }
+    }
+
+    private static String readScript(String resource) throws IOException {
+        try (InputStream input = resource(resource)) {
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static InputStream resource(String name) throws IOException {
+        InputStream input = SchemaMigrator.class.getClassLoader().getResourceAsStream(name);
+        if (input == null) {
+            throw new IOException("Migration resource not found on classpath: " + name);
+        }
+        return input;
+    }
+}
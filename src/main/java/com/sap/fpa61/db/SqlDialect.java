@@ -0,0 +1,59 @@
+package com.sap.fpa61.db;
+
+import java.util.List;
+import java.util.Properties;
+
+// Database-specific SQL used by the uploader. Everything else (the migrations, the inserts and selects of the
+// upload itself) is plain SQL shared by all dialects. The dialect is picked from the JDBC URL: HANA for
+// jdbc:sap:// and an embedded in-process H2 database for jdbc:h2:, which needs no server for local runs and tests
+interface SqlDialect {
+
+    SqlDialect HANA = new HanaDialect();
+    SqlDialect H2 = new H2Dialect();
+
+    // Picks the dialect of a JDBC URL
+    static SqlDialect forUrl(String url) {
+        if (url != null && url.startsWith(H2Dialect.URL_PREFIX)) {
+            return H2;
+        }
+        return HANA;
+    }
+
+    String name();
+
+    // JDBC URL of the database described by DB_HOST/DB_PORT, used when DB_URL is not set
+    String jdbcUrl(String host, String port);
+
+    // Driver properties from config.properties (DB_USER, DB_PASSWORD, ...)
+    Properties connectionProperties(Properties config);
+
+    String setSchema(String schema);
+
+    String currentSchemaQuery();
+
+    // Query returning the next value of a sequence; this is how RUN_ID and SCENARIO_ID blocks are reserved
+    String nextValueQuery(String sequence);
+
+    // Statement that inserts a row or, if a row with the same primary key exists, replaces it
+    String upsert(String table, List<String> columns, List<String> keyColumns);
+
+    // Statement that imports a CSV file, readable by the database server at serverPath, into a table
+    String csvImport(String table, List<String> columns, String serverPath);
+
+    // Rewrites one statement of a migration script for this database
+    String adaptDdl(String statement);
+
+    // Subdirectory of db/migration with scripts that replace the default ones for this database, or null
+    String migrationVariant();
+
+    // Count queries with one parameter (the name) telling whether a schema or a table of the schema exists
+    String schemaExistsQuery();
+
+    String tableExistsQuery(String schema);
+
+    // Statement making DDL part of the open transaction (or not), or null if the database has no such switch
+    String ddlInTransaction(boolean enabled);
+
+    // Statement taking an exclusive lock on a table until the end of the transaction, or null if not needed
+    String lockTable(String qualifiedTable);
+}
@@ -0,0 +1,206 @@
+package com.sap.fpa61.db;
+
+import java.io.InputStream;
+import java.sql.SQLException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.opc.PackagingURIHelper;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+// Reads PNR result workbooks through the XSSF event model (SAX), so heap use does not grow with the workbook size
+class StreamingWorkbookReader implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(StreamingWorkbookReader.class);
+
+    private final WorkbookSource source;
+    private final OPCPackage pkg;
+    private final ReadOnlySharedStringsTable strings;
+    private final StylesTable styles;
+    private final List<String> sheetNames = new ArrayList<>();
+    private final List<String> sheetPartNames = new ArrayList<>();
+
+    // Opens the workbook read-only and loads the shared strings, styles and sheet list (no sheet data yet)
+    StreamingWorkbookReader(String filePath) throws Exception {
+        this(WorkbookSource.file(filePath));
+    }
+
+    StreamingWorkbookReader(WorkbookSource source) throws Exception {
+        this.source = source;
+        this.pkg = source.openPackage();
+        try {
+            XSSFReader reader = new XSSFReader(pkg);
+            this.strings = new ReadOnlySharedStringsTable(pkg);
+            this.styles = reader.getStylesTable();
+
+            XSSFReader.SheetIterator sheets = reader.getSheetIterator();
+            while (sheets.hasNext()) {
+                // Only the sheet list is read here, not the sheet data
+                sheets.next().close();
+                sheetNames.add(sheets.getSheetName());
+                sheetPartNames.add(sheets.getSheetPart().getPartName().getName());
+            }
+        } catch (Exception e) {
+            pkg.revert();
+            throw e;
+        }
+    }
+
+    List<String> getSheetNames() {
+        return sheetNames;
+    }
+
+    // Streams every sheet the mapper accepts (non-null scenario name) into TEST_RUN/TEST_RESULT, returns the number of sheets read
+    int read(Function<String, String> scenarioForSheet, HanaDataUploader writer) throws Exception {
+        int sheetsRead = 0;
+        for (int i = 0; i < sheetNames.size(); i++) {
+            String scenarioName = scenarioForSheet.apply(sheetNames.get(i));
+            if (scenarioName == null) {
+                logger.debug("Skipping sheet " + sheetNames.get(i));
+                continue;
+            }
+            parseSheet(pkg, i, scenarioName, writer);
+            sheetsRead++;
+        }
+        return sheetsRead;
+    }
+
+    // Streams a single sheet through the given writer. Opens a private handle on the file, so different sheets can be
+    // read from several threads at once while sharing the shared strings and styles
+    void readSheet(int sheetIndex, String scenarioName, HanaDataUploader writer) throws Exception {
+        OPCPackage sheetPkg = source.openPackage();
+        try {
+            parseSheet(sheetPkg, sheetIndex, scenarioName, writer);
+        } finally {
+            sheetPkg.revert();
+        }
+    }
+
+    private void parseSheet(OPCPackage source, int sheetIndex, String scenarioName, HanaDataUploader writer) throws Exception {
+        PackagePart part = source.getPart(PackagingURIHelper.createPartName(sheetPartNames.get(sheetIndex)));
+        try (InputStream sheetStream = part.getInputStream()) {
+            ResultSheetHandler handler = new ResultSheetHandler(writer, scenarioName);
+            XMLReader parser = XMLHelper.newXMLReader();
+            parser.setContentHandler(new XSSFSheetXMLHandler(styles, strings, handler, new ResultDataFormatter(), false));
+            try {
+                parser.parse(new InputSource(sheetStream));
+            } catch (SheetWriteException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        // Opened read-only, so nothing needs to be saved
+        pkg.revert();
+    }
+
+    // Wraps DB errors raised inside SAX callbacks, which cannot throw checked exceptions
+    static class SheetWriteException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        SheetWriteException(SQLException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized SQLException getCause() {
+            return (SQLException) super.getCause();
+        }
+    }
+
+    // Formats cached numeric values exactly (no display rounding) and date cells as yyyy-MM-dd
+    static class ResultDataFormatter extends DataFormatter {
+
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString, boolean use1904Windowing) {
+            if (DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value)) {
+                SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
+                return sdf.format(DateUtil.getJavaDate(value, use1904Windowing));
+            }
+            return Double.toString(value);
+        }
+    }
+
+    // Adapts the SAX cell callbacks of one sheet to the row-major ResultSheetTransposer
+    static class ResultSheetHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private final ResultSheetTransposer transposer;
+
+        ResultSheetHandler(HanaDataUploader uploader, String scenarioName) {
+            this.transposer = new ResultSheetTransposer(uploader, scenarioName);
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            try {
+                transposer.startRow(rowNum);
+            } catch (SQLException e) {
+                throw new SheetWriteException(e);
+            }
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            if (cellReference == null || formattedValue == null) {
+                return;
+            }
+            CellReference ref = new CellReference(cellReference);
+            int row = ref.getRow();
+            int col = ref.getCol();
+
+            try {
+                if (row >= ResultSheetTransposer.FIRST_DATA_ROW && col > 0) {
+                    transposer.resultCell(row, col, parseNumericValue(formattedValue, row, col));
+                } else {
+                    transposer.textCell(row, col, formattedValue);
+                }
+            } catch (SQLException e) {
+                throw new SheetWriteException(e);
+            }
+        }
+
+        @Override
+        public void endSheet() {
+            try {
+                transposer.finish();
+            } catch (SQLException e) {
+                throw new SheetWriteException(e);
+            }
+        }
+
+        // Parses the text of a result cell, mirroring HanaDataUploader.extractNumericValue for string cells
+        static Double parseNumericValue(String value, int rowNum, int colNum) {
+            String stringValue = value.trim();
+            try {
+                return Double.valueOf(stringValue);
+            } catch (NumberFormatException e) {
+                logger.warn("Unable to parse numeric value from text: '" + stringValue
+                        + "' at row " + rowNum + ", column " + colNum);
+                return null;
+            }
+        }
+    }
+}
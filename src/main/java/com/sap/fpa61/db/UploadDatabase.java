@@ -0,0 +1,74 @@
+package com.sap.fpa61.db;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+// The target database shared by the uploads of several builds or jobs in one JVM: the schema is migrated once when
+// it is opened, and every upload borrows its main and worker connections from one pool, which stays warm between
+// uploads. Unless UPLOAD_POOL_MAX is set, the pool holds the connections `uploads` concurrent uploads need
+public class UploadDatabase implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(UploadDatabase.class);
+
+    final String url;
+    final SqlDialect dialect;
+    final Properties connectionProperties;
+    final ConnectionPool pool;
+
+    private UploadDatabase(String url, SqlDialect dialect, Properties connectionProperties, ConnectionPool pool) {
+        this.url = url;
+        this.dialect = dialect;
+        this.connectionProperties = connectionProperties;
+        this.pool = pool;
+    }
+
+    // Migrates the schema of the database in the DB settings (DB_URL, or DB_HOST/DB_PORT) and opens the pool
+    public static UploadDatabase open(Properties config, int uploads) throws SQLException, IOException {
+        UploadOptions options = UploadOptions.fromProperties(config);
+        String url = jdbcUrl(config);
+        SqlDialect dialect = SqlDialect.forUrl(url);
+        Properties connectionProperties = dialect.connectionProperties(config);
+        logger.info("Connecting to " + dialect.name() + " DB at " + url + "...");
+        try (Connection connection = DriverManager.getConnection(url, connectionProperties)) {
+            new SchemaMigrator(dialect).migrate(connection);
+        }
+
+        // Per upload its main connection and the worker connections of its threads
+        int maxSize = options.poolMaxSize > 0 ? options.poolMaxSize
+                : (options.effectivePoolMaxSize() + 1) * Math.max(1, uploads);
+        ConnectionPool pool = new ConnectionPool(url, connectionProperties, dialect.setSchema(HanaDataUploader.SCHEMA_NAME),
+                options.poolMinSize, maxSize, options.poolTimeoutMillis, options.poolLeakMillis);
+        try {
+            pool.warmUp();
+        } catch (SQLException e) {
+            pool.close();
+            throw e;
+        }
+        logger.info("Shared {} connection pool ready (up to {} connections)", dialect.name(), maxSize);
+        return new UploadDatabase(url, dialect, connectionProperties, pool);
+    }
+
+    // JDBC URL of the DB settings: DB_URL selects any supported database, DB_HOST/DB_PORT a HANA server
+    static String jdbcUrl(Properties config) {
+        String url = config.getProperty("DB_URL");
+        if (url == null || url.trim().isEmpty()) {
+            url = SqlDialect.HANA.jdbcUrl(config.getProperty("DB_HOST"), config.getProperty("DB_PORT"));
+        }
+        return url.trim();
+    }
+
+    public String summary() {
+        return pool.summary();
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+}
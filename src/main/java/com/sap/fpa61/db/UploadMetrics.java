@@ -0,0 +1,108 @@
+package com.sap.fpa61.db;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sap.fpa61.metrics.Counter;
+import com.sap.fpa61.metrics.Gauge;
+import com.sap.fpa61.metrics.Histogram;
+import com.sap.fpa61.metrics.MetricsRegistry;
+
+// Metrics of the upload side: rows and cells parsed per sheet, executeBatch latency and rows/second per table, the
+// backpressure of the ingest pipelines (hand-offs queued for the writers, time the decoders were blocked), and
+// the DB round trips (batches, queries, commits, ID blocks) per TEST_RUN written. An instance counts the round trips
+// of one upload and is shared by the worker uploaders of that upload
+final class UploadMetrics {
+
+    private static final MetricsRegistry REGISTRY = MetricsRegistry.global();
+
+    // Round trips by kind
+    static final Counter BATCH = roundTrips("batch");
+    static final Counter QUERY = roundTrips("query");
+    static final Counter UPDATE = roundTrips("update");
+    static final Counter COMMIT = roundTrips("commit");
+    static final Counter BULK_LOAD = roundTrips("bulk_load");
+    static final Counter SEQUENCE = roundTrips("sequence");
+
+    private static final Histogram SHEET_ROWS = REGISTRY.histogram("pnr_sheet_rows",
+            "Rows parsed per result sheet", Histogram.SIZE_BUCKETS);
+    private static final Histogram SHEET_CELLS = REGISTRY.histogram("pnr_sheet_cells",
+            "Cells parsed per result sheet", Histogram.SIZE_BUCKETS);
+    private static final Counter CELLS = REGISTRY.counter("pnr_cells_parsed_total", "Cells parsed from the workbooks");
+    private static final Counter TEST_RUNS = REGISTRY.counter("pnr_test_runs_written_total", "TEST_RUN rows written");
+    private static final Histogram ROUND_TRIPS_PER_RUN = REGISTRY.histogram("pnr_db_round_trips_per_test_run",
+            "DB round trips per TEST_RUN row written, per upload", Histogram.COUNT_BUCKETS);
+    private static final Gauge LAST_UPLOAD_SECONDS = REGISTRY.gauge("pnr_upload_last_duration_seconds",
+            "Duration of the last upload of a build's workbooks");
+    private static final Gauge LAST_SUCCESS = REGISTRY.gauge("pnr_upload_last_success_timestamp_seconds",
+            "Unix time of the last upload in which every workbook was uploaded");
+
+    private static final Gauge INGEST_QUEUE_DEPTH = REGISTRY.gauge("pnr_ingest_queue_depth",
+            "Hand-offs waiting in the ingest writer queues");
+    private static final Counter DECODER_BLOCKED = REGISTRY.counter("pnr_ingest_decoder_blocked_seconds_total",
+            "Time the workbook decoders waited for a full ingest writer queue");
+
+    private final LongAdder roundTrips = new LongAdder();
+    private final LongAdder runs = new LongAdder();
+
+    private static Counter roundTrips(String kind) {
+        return REGISTRY.counter("pnr_db_round_trips_total", "DB round trips of the uploads", "kind", kind);
+    }
+
+    void roundTrip(Counter kind) {
+        kind.inc();
+        roundTrips.increment();
+    }
+
+    void runsWritten(int count) {
+        TEST_RUNS.add(count);
+        runs.add(count);
+    }
+
+    long getRoundTrips() {
+        return roundTrips.sum();
+    }
+
+    // Called once the upload is done; idBlocks are the ID blocks reserved by its allocators
+    void finish(long idBlocks, long elapsedMillis, boolean complete) {
+        long written = runs.sum();
+        if (written > 0) {
+            ROUND_TRIPS_PER_RUN.observe((double) (roundTrips.sum() + idBlocks) / written);
+        }
+        LAST_UPLOAD_SECONDS.set(elapsedMillis / 1000.0);
+        if (complete) {
+            LAST_SUCCESS.set(System.currentTimeMillis() / 1000.0);
+        }
+    }
+
+    static void sheetParsed(int rows, long cells) {
+        SHEET_ROWS.observe(rows);
+        SHEET_CELLS.observe(cells);
+        CELLS.add(cells);
+    }
+
+    // One executeBatch of a table and its duration
+    static void batchExecuted(String table, int rows, long elapsedNanos) {
+        REGISTRY.histogram("pnr_db_batch_seconds", "executeBatch latency", Histogram.LATENCY_BUCKETS,
+                "table", table).observe(elapsedNanos / 1e9);
+        REGISTRY.counter("pnr_db_rows_written_total", "Rows written in JDBC batches", "table", table).add(rows);
+        if (elapsedNanos > 0) {
+            REGISTRY.histogram("pnr_db_batch_rows_per_second", "Rows per second of each executeBatch",
+                    Histogram.SIZE_BUCKETS, "table", table).observe(rows * 1e9 / elapsedNanos);
+        }
+    }
+
+    // A hand-off queued for an ingest writer
+    static void ingestQueued() {
+        INGEST_QUEUE_DEPTH.add(1);
+    }
+
+    // Time a decoder waited for room in a full ingest writer queue
+    static void decoderBlocked(long waitNanos) {
+        DECODER_BLOCKED.add(waitNanos / 1e9);
+    }
+
+    // Hand-offs taken off the ingest writer queues, by a writer or when a stopped pipeline is closed
+    static void ingestDequeued(int count) {
+        INGEST_QUEUE_DEPTH.add(-count);
+    }
+}
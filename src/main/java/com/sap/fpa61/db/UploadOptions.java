@@ -0,0 +1,147 @@
+package com.sap.fpa61.db;
+
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Properties;
+
+// Tuning options for the upload, read from config.properties next to the DB credentials
+class UploadOptions {
+
+    // How workbooks are decoded: XSSF event model (constant memory) or the full POI DOM (fallback)
+    enum ReaderMode {
+        STREAMING,
+        DOM
+    }
+
+    // When the upload transaction is committed; a failure rolls back everything since the last commit.
+    // Columns are transposed in one pass over the sheet, so a column is complete only at the end of its sheet
+    // and COLUMN commits at the same points as SHEET
+    enum CommitMode {
+        AUTO,
+        ROWS,
+        COLUMN,
+        SHEET,
+        FILE
+    }
+
+    // How TEST_RESULT rows are written: JDBC batches, or CSV staging + IMPORT FROM for wide backfills. IMPORT FROM
+    // commits the open transaction on HANA, so BULK is only allowed with the AUTO and ROWS commit modes
+    enum LoadMode {
+        BATCH,
+        BULK
+    }
+
+    ReaderMode readerMode = ReaderMode.STREAMING;
+    // Number of sheets of a regression workbook ingested in parallel, each on its own connection (1 = sequential)
+    int sheetThreads = 1;
+    // Number of files (burn-in, regression, regression burn-in) uploaded concurrently, each on its own connection
+    int fileThreads = 3;
+    // Writer threads per file draining decoded rows into the DB, each on its own connection (0 = write while decoding)
+    int writerThreads = 0;
+    // Hand-offs (one batch of rows each) a writer queue holds before the decoder blocks
+    int queueCapacity = 16;
+    // Worker connection pool: connections opened at start, upper limit (0 = derived from the thread settings),
+    // how long to wait for a free connection and after how long a borrowed connection is reported as leaked
+    int poolMinSize = 3;
+    int poolMaxSize = 0;
+    long poolTimeoutMillis = 60_000;
+    long poolLeakMillis = 600_000;
+    CommitMode commitMode = CommitMode.FILE;
+    // Rows (TEST_RUN and TEST_RESULT) written between commits in ROWS mode
+    int commitRows = 10000;
+    // Limits of the adaptive TEST_RESULT batch size (equal limits give a fixed batch size)
+    int batchMinSize = HanaDataUploader.BATCH_SIZE;
+    int batchMaxSize = 5000;
+    // Whether runs already loaded completely are skipped (incremental ingestion) or replaced (UPLOAD_SKIP_LOADED=false).
+    // Runs a failed upload left incomplete are always replaced
+    boolean skipLoadedRuns = true;
+    LoadMode loadMode = LoadMode.BATCH;
+    // Where bulk load CSV files are written, and the same directory as seen by the DB server (for IMPORT FROM)
+    String bulkStagingDir = Paths.get(System.getProperty("java.io.tmpdir"), "pnr-bulk-load").toString();
+    String bulkServerDir = null;
+    // Where workbooks read from streams (DOWNLOAD_MODE=stream) are spooled while they are parsed, e.g. a tmpfs
+    String spoolDir = Paths.get(System.getProperty("java.io.tmpdir"), "pnr-spool").toString();
+
+    // Builds the options from config.properties, keeping the defaults for anything not set
+    static UploadOptions fromProperties(Properties props) {
+        UploadOptions options = new UploadOptions();
+        options.readerMode = enumProperty(props, "UPLOAD_READER", ReaderMode.class, options.readerMode);
+        options.sheetThreads = intProperty(props, "UPLOAD_SHEET_THREADS", options.sheetThreads, 1);
+        options.fileThreads = intProperty(props, "UPLOAD_FILE_THREADS", options.fileThreads, 1);
+        options.writerThreads = intProperty(props, "UPLOAD_WRITER_THREADS", options.writerThreads, 0);
+        options.queueCapacity = intProperty(props, "UPLOAD_QUEUE_CAPACITY", options.queueCapacity, 1);
+        options.poolMinSize = intProperty(props, "UPLOAD_POOL_MIN", options.poolMinSize, 0);
+        options.poolMaxSize = intProperty(props, "UPLOAD_POOL_MAX", options.poolMaxSize, 0);
+        options.poolTimeoutMillis = intProperty(props, "UPLOAD_POOL_TIMEOUT_MS", (int) options.poolTimeoutMillis, 1);
+        options.poolLeakMillis = intProperty(props, "UPLOAD_POOL_LEAK_MS", (int) options.poolLeakMillis, 1);
+        options.commitMode = enumProperty(props, "UPLOAD_COMMIT", CommitMode.class, options.commitMode);
+        options.commitRows = intProperty(props, "UPLOAD_COMMIT_ROWS", options.commitRows, 1);
+        options.batchMinSize = intProperty(props, "UPLOAD_BATCH_MIN", options.batchMinSize, 1);
+        options.batchMaxSize = intProperty(props, "UPLOAD_BATCH_MAX", options.batchMaxSize, options.batchMinSize);
+        options.skipLoadedRuns = booleanProperty(props, "UPLOAD_SKIP_LOADED", options.skipLoadedRuns);
+        options.loadMode = enumProperty(props, "UPLOAD_LOAD_MODE", LoadMode.class, options.loadMode);
+        options.bulkStagingDir = props.getProperty("UPLOAD_BULK_DIR", options.bulkStagingDir).trim();
+        options.bulkServerDir = props.getProperty("UPLOAD_BULK_SERVER_DIR", options.bulkServerDir);
+        options.spoolDir = props.getProperty("UPLOAD_SPOOL_DIR", options.spoolDir).trim();
+        if (options.loadMode == LoadMode.BULK && options.commitMode != CommitMode.AUTO && options.commitMode != CommitMode.ROWS) {
+            HanaDataUploader.logger.warn("UPLOAD_LOAD_MODE=bulk is not transactional and needs UPLOAD_COMMIT=auto or rows, not "
+                    + options.commitMode.name().toLowerCase(Locale.ROOT) + ", using batch");
+            options.loadMode = LoadMode.BATCH;
+        }
+        return options;
+    }
+
+    // Largest number of worker connections the configured threads can hold at once: per file its own connection,
+    // its sheet workers or writers, and a short-lived connection per concurrent scenario insert
+    int effectivePoolMaxSize() {
+        if (poolMaxSize > 0) {
+            return poolMaxSize;
+        }
+        return fileThreads * (2 + Math.max(writerThreads, 2 * sheetThreads));
+    }
+
+    // Helper method that reads an integer property, falling back to the default if missing, invalid or below the minimum
+    static int intProperty(Properties props, String key, int defaultValue, int minValue) {
+        String value = props.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed >= minValue) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        HanaDataUploader.logger.warn("Invalid value '" + value + "' for " + key + ", using " + defaultValue);
+        return defaultValue;
+    }
+
+    // Helper method that reads a true/false property case-insensitively, falling back to the default if missing or invalid
+    static boolean booleanProperty(Properties props, String key, boolean defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        if (value.trim().equalsIgnoreCase("true") || value.trim().equalsIgnoreCase("false")) {
+            return Boolean.parseBoolean(value.trim());
+        }
+        HanaDataUploader.logger.warn("Invalid value '" + value + "' for " + key + ", using " + defaultValue);
+        return defaultValue;
+    }
+
+    // Helper method that reads an enum property case-insensitively, falling back to the default if missing or invalid
+    static <E extends Enum<E>> E enumProperty(Properties props, String key, Class<E> type, E defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            HanaDataUploader.logger.warn("Invalid value '" + value + "' for " + key + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.sap.fpa61.db;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+
+// Where a result workbook is read from: a file on disk, or a stream (e.g. an HTTP response body). A zip keeps its
+// directory at the end and the sheets need the shared strings, which are often stored after them, so a stream is
+// copied once, while it arrives, into a spool file (UPLOAD_SPOOL_DIR, best on tmpfs) and read from there like a
+// download: POI reads the entries it needs from the file instead of unpacking the whole workbook into heap.
+// Closing the source deletes its spool file
+class WorkbookSource implements AutoCloseable {
+
+    private final String name;
+    private final WorkbookStreams streams;
+    private final Path spoolDir;
+    // The file the workbook is read from; for a stream, null until it is spooled
+    private File file;
+    private boolean spooled = false;
+
+    private WorkbookSource(String name, File file, WorkbookStreams streams, Path spoolDir) {
+        this.name = name;
+        this.file = file;
+        this.streams = streams;
+        this.spoolDir = spoolDir;
+    }
+
+    static WorkbookSource file(String filePath) {
+        return new WorkbookSource(filePath, new File(filePath), null, null);
+    }
+
+    static WorkbookSource stream(String fileName, WorkbookStreams streams, Path spoolDir) {
+        return new WorkbookSource(fileName, null, streams, spoolDir);
+    }
+
+    // File path or file name, for messages
+    String name() {
+        return name;
+    }
+
+    // Opens the package read-only. Every call opens a new handle on the file, so sheets can be read on several threads
+    OPCPackage openPackage() throws Exception {
+        return OPCPackage.open(file(), PackageAccess.READ);
+    }
+
+    // Opens the workbook through the POI DOM (UPLOAD_READER=dom) read-only, so closing the workbook never writes
+    // the file back
+    Workbook openWorkbook() throws Exception {
+        return WorkbookFactory.create(file(), null, true);
+    }
+
+    // Copies a stream into its spool file the first time the workbook is opened; the stream is read only once
+    private synchronized File file() throws IOException {
+        if (file == null) {
+            Files.createDirectories(spoolDir);
+            Path spoolFile = Files.createTempFile(spoolDir, "pnr-", "-" + name);
+            try (InputStream in = streams.open(name)) {
+                Files.copy(in, spoolFile, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                Files.deleteIfExists(spoolFile);
+                throw e;
+            }
+            file = spoolFile.toFile();
+            spooled = true;
+        }
+        return file;
+    }
+
+    // Deletes the spool file of a stream; a file on disk is left alone
+    @Override
+    public synchronized void close() throws IOException {
+        if (spooled) {
+            Files.deleteIfExists(file.toPath());
+            spooled = false;
+        }
+    }
+}
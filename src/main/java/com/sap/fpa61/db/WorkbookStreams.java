@@ -0,0 +1,11 @@
+package com.sap.fpa61.db;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// Opens the content of a result workbook by file name, e.g. the body of its HTTP download
+@FunctionalInterface
+public interface WorkbookStreams {
+
+    InputStream open(String fileName) throws IOException;
+}
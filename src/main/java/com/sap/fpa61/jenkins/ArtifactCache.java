@@ -0,0 +1,282 @@
+package com.sap.fpa61.jenkins;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+// Local cache of downloaded artifacts in SAVE_DIR/.artifact-cache, keyed by job name, build id and artifact
+// relativePath. The artifacts of a build never change, so a cached copy of the same build is used without any
+// request. Otherwise the copy last fetched for the same job and path supplies its ETag/Last-Modified for a
+// conditional GET, and a 304 reuses it for the new build. The index records size, validators and last use of
+// every copy; the least recently used copies are evicted once the cache grows beyond its size limit.
+// Not thread-safe: callers hold lockFor(dir) while they use a cache directory, and one process uses it at a time
+class ArtifactCache {
+
+    private static final Logger logger = LogManager.getLogger(ArtifactCache.class);
+
+    static final String DIRECTORY = ".artifact-cache";
+    static final String INDEX_FILE = "index.json";
+    static final long DEFAULT_MAX_MB = 512;
+
+    // Lock per cache directory, shared by the builds of a backfill that download at the same time
+    private static final Map<Path, Object> LOCKS = new ConcurrentHashMap<>();
+
+    // A cached copy of one artifact of one build
+    static class Entry {
+
+        final String job;
+        String buildId;
+        final String relativePath;
+        final String blob;
+        final long size;
+        final String etag;
+        final String lastModified;
+        long lastUsed;
+
+        Entry(String job, String buildId, String relativePath, String blob, long size, String etag, String lastModified,
+                long lastUsed) {
+            this.job = job;
+            this.buildId = buildId;
+            this.relativePath = relativePath;
+            this.blob = blob;
+            this.size = size;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.lastUsed = lastUsed;
+        }
+
+        String key() {
+            return ArtifactCache.key(job, buildId, relativePath);
+        }
+    }
+
+    private final Path dir;
+    private final long maxBytes;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    // Strictly increasing use stamps, so that uses within the same millisecond keep their order
+    private long clock = 0;
+
+    ArtifactCache(Path dir, long maxBytes) throws IOException {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(dir);
+        load();
+    }
+
+    // Brings the files (file name -> relativePath) of a build into saveDir, from the cache where current and
+    // from downloadBaseUrl + relativePath otherwise; buildId may be null when the build is not known
+    void fetch(ArtifactDownloadEngine engine, Path saveDir, String downloadBaseUrl, String job, String buildId,
+            Map<String, String> relativePaths) throws IOException {
+        List<ArtifactDownloadEngine.Download> downloads = new ArrayList<>();
+        Map<ArtifactDownloadEngine.Download, Entry> previous = new LinkedHashMap<>();
+        Map<ArtifactDownloadEngine.Download, String> paths = new LinkedHashMap<>();
+        for (Map.Entry<String, String> file : relativePaths.entrySet()) {
+            String fileName = file.getKey();
+            String relativePath = file.getValue();
+            Entry hit = buildId != null ? lookup(job, buildId, relativePath) : null;
+            if (hit != null) {
+                logger.info("Using cached {} of build {}", fileName, buildId);
+                copyTo(hit, saveDir.resolve(fileName));
+                continue;
+            }
+            Entry latest = latest(job, relativePath);
+            ArtifactDownloadEngine.Download download = new ArtifactDownloadEngine.Download(fileName,
+                    downloadBaseUrl + relativePath, dir.resolve(blobName(job, buildId, relativePath, fileName)),
+                    latest != null ? latest.etag : null, latest != null ? latest.lastModified : null);
+            downloads.add(download);
+            previous.put(download, latest);
+            paths.put(download, relativePath);
+        }
+
+        if (!downloads.isEmpty()) {
+            engine.downloadAll(downloads);
+        }
+        for (ArtifactDownloadEngine.Download download : downloads) {
+            Entry entry = download.notModified
+                    ? renew(previous.get(download), buildId)
+                    : store(job, buildId, paths.get(download), download);
+            copyTo(entry, saveDir.resolve(download.fileName));
+        }
+
+        evict();
+        save();
+    }
+
+    // The cached copy of an artifact of a build, if its file is intact
+    Entry lookup(String job, String buildId, String relativePath) {
+        Entry entry = entries.get(key(job, buildId, relativePath));
+        if (entry == null) {
+            return null;
+        }
+        if (!isIntact(entry)) {
+            logger.warn("Dropping damaged cache entry for {} of build {}", relativePath, buildId);
+            remove(entry);
+            return null;
+        }
+        entry.lastUsed = tick();
+        return entry;
+    }
+
+    // The most recently used intact copy of an artifact of a job, from any build
+    Entry latest(String job, String relativePath) {
+        return entries.values().stream()
+                .filter(entry -> entry.job.equals(job) && entry.relativePath.equals(relativePath) && isIntact(entry))
+                .max(Comparator.comparingLong(entry -> entry.lastUsed))
+                .orElse(null);
+    }
+
+    long totalBytes() {
+        return entries.values().stream().mapToLong(entry -> entry.size).sum();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    // Removes the least recently used copies until the cache fits into its size limit
+    void evict() throws IOException {
+        List<Entry> byAge = new ArrayList<>(entries.values());
+        byAge.sort(Comparator.comparingLong(entry -> entry.lastUsed));
+        long total = totalBytes();
+        for (Entry entry : byAge) {
+            if (total <= maxBytes) {
+                break;
+            }
+            logger.info("Evicting cached {} of build {} ({} bytes)", entry.relativePath, entry.buildId, entry.size);
+            remove(entry);
+            total -= entry.size;
+        }
+    }
+
+    // Writes the index, replacing the previous one atomically
+    void save() throws IOException {
+        JSONArray list = new JSONArray();
+        for (Entry entry : entries.values()) {
+            JSONObject json = new JSONObject();
+            json.put("job", entry.job);
+            json.put("buildId", entry.buildId);
+            json.put("relativePath", entry.relativePath);
+            json.put("blob", entry.blob);
+            json.put("size", entry.size);
+            json.putOpt("etag", entry.etag);
+            json.putOpt("lastModified", entry.lastModified);
+            json.put("lastUsed", entry.lastUsed);
+            list.put(json);
+        }
+        Path temp = dir.resolve(INDEX_FILE + ".tmp");
+        Files.writeString(temp, new JSONObject().put("entries", list).toString(2), StandardCharsets.UTF_8);
+        Files.move(temp, dir.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static Object lockFor(Path dir) {
+        return LOCKS.computeIfAbsent(dir.toAbsolutePath().normalize(), d -> new Object());
+    }
+
+    static String key(String job, String buildId, String relativePath) {
+        return job + "\n" + (buildId != null ? buildId : "") + "\n" + relativePath;
+    }
+
+    // A downloaded file, now in the cache directory, becomes the copy of the build
+    private Entry store(String job, String buildId, String relativePath, ArtifactDownloadEngine.Download download) {
+        Entry entry = new Entry(job, buildId, relativePath, download.target.getFileName().toString(), download.size,
+                download.etag, download.lastModified, tick());
+        Entry replaced = entries.put(entry.key(), entry);
+        if (replaced != null && !replaced.blob.equals(entry.blob)) {
+            deleteBlob(replaced);
+        }
+        return entry;
+    }
+
+    // The server confirmed an older copy is current: it becomes the copy of the new build
+    private Entry renew(Entry entry, String buildId) {
+        entries.remove(entry.key());
+        entry.buildId = buildId;
+        entry.lastUsed = tick();
+        Entry replaced = entries.put(entry.key(), entry);
+        if (replaced != null && replaced != entry && !replaced.blob.equals(entry.blob)) {
+            deleteBlob(replaced);
+        }
+        return entry;
+    }
+
+    private void copyTo(Entry entry, Path target) throws IOException {
+        Path part = target.resolveSibling(target.getFileName() + ArtifactDownloadEngine.PART_SUFFIX);
+        Files.copy(dir.resolve(entry.blob), part, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private boolean isIntact(Entry entry) {
+        try {
+            return Files.size(dir.resolve(entry.blob)) == entry.size;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void remove(Entry entry) {
+        entries.remove(entry.key());
+        deleteBlob(entry);
+    }
+
+    private void deleteBlob(Entry entry) {
+        try {
+            Files.deleteIfExists(dir.resolve(entry.blob));
+        } catch (IOException e) {
+            logger.warn("Could not delete cached file " + entry.blob + ": " + e.getMessage());
+        }
+    }
+
+    private long tick() {
+        clock = Math.max(System.currentTimeMillis(), clock + 1);
+        return clock;
+    }
+
+    // File name of the cached copy: a digest of the key, so that any job, build and path maps to a safe name
+    private static String blobName(String job, String buildId, String relativePath, String fileName) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key(job, buildId, relativePath).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 12) + "-" + fileName;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void load() throws IOException {
+        Path index = dir.resolve(INDEX_FILE);
+        if (!Files.exists(index)) {
+            return;
+        }
+        try {
+            JSONArray list = new JSONObject(Files.readString(index, StandardCharsets.UTF_8)).getJSONArray("entries");
+            for (int i = 0; i < list.length(); i++) {
+                JSONObject json = list.getJSONObject(i);
+                Entry entry = new Entry(json.getString("job"), json.optString("buildId", null), json.getString("relativePath"),
+                        json.getString("blob"), json.getLong("size"), json.optString("etag", null),
+                        json.optString("lastModified", null), json.getLong("lastUsed"));
+                entries.put(entry.key(), entry);
+                clock = Math.max(clock, entry.lastUsed);
+            }
+        } catch (JSONException e) {
+            // Start over; the orphaned files are not referenced any more
+            logger.warn("Ignoring unreadable artifact cache index: " + e.getMessage());
+            entries.clear();
+        }
+    }
+}
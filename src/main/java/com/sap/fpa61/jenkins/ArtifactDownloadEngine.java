@@ -0,0 +1,366 @@
+package com.sap.fpa61.jenkins;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.sap.fpa61.jfr.ArtifactDownloadEvent;
+
+// Downloads build artifacts in parallel over one java.net.http.HttpClient, shared by the whole JVM, which keeps
+// connections alive and negotiates HTTP/2 where the server supports it, so the requests share connections instead
+// of each opening its own. Bodies are streamed straight to a ".part" file next to the target and moved into place once complete,
+// so a failed or cancelled download never leaves a truncated workbook behind. At most `concurrency` downloads
+// run at once; with all files in flight, the total time is about that of the largest artifact. A request fails
+// once the server sends no response headers, or no body data, for the timeout (DOWNLOAD_TIMEOUT_SECONDS)
+public class ArtifactDownloadEngine implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(ArtifactDownloadEngine.class);
+
+    static final int DEFAULT_CONCURRENCY = 3;
+    static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(30);
+    static final Duration DEFAULT_TIMEOUT = Duration.ofMinutes(2);
+    static final String PART_SUFFIX = ".part";
+
+    private final HttpClient client;
+    private final ExecutorService executor;
+    private final String authorization;
+    private final int concurrency;
+    private final Duration timeout;
+
+    // One client for all Jenkins requests of the JVM (every engine, build and job), so its connections are reused
+    private static class SharedClient {
+
+        static final HttpClient INSTANCE = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .build();
+    }
+
+    // Fails the reads of stalled response bodies, for every engine of the JVM
+    private static class Watchdog {
+
+        static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "download-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public ArtifactDownloadEngine(String username, String apiToken, int concurrency) {
+        this(username, apiToken, concurrency, DEFAULT_TIMEOUT);
+    }
+
+    public ArtifactDownloadEngine(String username, String apiToken, int concurrency, Duration timeout) {
+        this.concurrency = Math.max(1, concurrency);
+        this.timeout = timeout;
+        this.client = sharedClient();
+        // Java 17 has no virtual threads: blocking sends run on a bounded pool sized to the concurrency limit
+        this.executor = Executors.newFixedThreadPool(this.concurrency);
+        String auth = username + ":" + apiToken;
+        this.authorization = "Basic " + Base64.getEncoder().encodeToString(auth.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // One file to fetch. The validators of a cached copy (ETag, Last-Modified) turn it into a conditional request
+    static class Download {
+
+        final String fileName;
+        final String url;
+        final Path target;
+        final String ifNoneMatch;
+        final String ifModifiedSince;
+
+        // Filled in by the download
+        boolean notModified = false;
+        long size = 0;
+        String etag;
+        String lastModified;
+
+        Download(String fileName, String url, Path target, String ifNoneMatch, String ifModifiedSince) {
+            this.fileName = fileName;
+            this.url = url;
+            this.target = target;
+            this.ifNoneMatch = ifNoneMatch;
+            this.ifModifiedSince = ifModifiedSince;
+        }
+    }
+
+    // Downloads every file (file name -> URL) into saveDir and waits for all of them
+    public void downloadAll(String saveDir, Map<String, String> fileUrls) throws IOException {
+        Path dir = Path.of(saveDir);
+        List<Download> downloads = new ArrayList<>();
+        for (Map.Entry<String, String> file : fileUrls.entrySet()) {
+            downloads.add(new Download(file.getKey(), file.getValue(), dir.resolve(file.getKey()), null, null));
+        }
+        downloadAll(downloads);
+    }
+
+    // Runs the downloads in parallel and waits for all of them; on the first failure the remaining downloads
+    // are cancelled and that failure is thrown
+    void downloadAll(List<Download> downloads) throws IOException {
+        long startTime = System.currentTimeMillis();
+        List<Future<?>> futures = new ArrayList<>();
+        for (Download download : downloads) {
+            futures.add(executor.submit(() -> {
+                download(download);
+                return null;
+            }));
+        }
+
+        IOException failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+                    futures.forEach(f -> f.cancel(true));
+                }
+            } catch (CancellationException e) {
+                // Cancelled after an earlier failure
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                throw new IOException("Interrupted while downloading artifacts", e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+
+        long totalBytes = 0;
+        int notModified = 0;
+        for (Download download : downloads) {
+            totalBytes += download.size;
+            notModified += download.notModified ? 1 : 0;
+        }
+        logger.info("Downloaded {} files ({} bytes, {} not modified) in {} ms with up to {} parallel downloads",
+                downloads.size() - notModified, totalBytes, notModified, System.currentTimeMillis() - startTime,
+                Math.min(concurrency, downloads.size()));
+    }
+
+    // Downloads one file to its target, unless the server answers a conditional request with 304 Not Modified
+    void download(Download download) throws IOException {
+        logger.info("Downloading: " + download.fileName + "...");
+        long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        ArtifactDownloadEvent event = new ArtifactDownloadEvent();
+        event.begin();
+        Path part = download.target.resolveSibling(download.target.getFileName() + PART_SUFFIX);
+        HttpRequest.Builder request = request(download.url);
+        if (download.ifNoneMatch != null) {
+            request.header("If-None-Match", download.ifNoneMatch);
+        }
+        if (download.ifModifiedSince != null) {
+            request.header("If-Modified-Since", download.ifModifiedSince);
+        }
+        try {
+            HttpResponse<InputStream> response = send(request, download.fileName);
+            event.status = response.statusCode();
+            // Only a successful body is written to disk; error pages are discarded
+            try (InputStream body = response.body()) {
+                if (response.statusCode() == 304 && (download.ifNoneMatch != null || download.ifModifiedSince != null)) {
+                    download.notModified = true;
+                    JenkinsMetrics.notModified();
+                    commit(event, download, 0);
+                    logger.info("Not modified: {}, using the cached copy", download.fileName);
+                    return;
+                }
+                if (response.statusCode() != 200) {
+                    JenkinsMetrics.downloadFailed();
+                    commit(event, download, 0);
+                    logger.error("Failed to download " + download.fileName + " (HTTP " + response.statusCode() + ")");
+                    throw new IOException("Failed to download " + download.fileName + " (HTTP " + response.statusCode() + ")");
+                }
+                try (InputStream in = new StallGuard(body, timeout, download.fileName)) {
+                    Files.copy(in, part, StandardCopyOption.REPLACE_EXISTING);
+                } catch (HttpTimeoutException e) {
+                    JenkinsMetrics.downloadFailed();
+                    throw e;
+                }
+            }
+            Files.move(part, download.target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            download.etag = response.headers().firstValue("ETag").orElse(null);
+            download.lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while downloading " + download.fileName, e);
+        } finally {
+            Files.deleteIfExists(part);
+        }
+        download.size = Files.size(download.target);
+        JenkinsMetrics.downloaded(download.size, startNanos);
+        commit(event, download, download.size);
+        logger.info("Saved: {} ({} bytes in {} ms)", download.fileName, download.size, System.currentTimeMillis() - startTime);
+    }
+
+    // Opens the body of a file as it arrives, so it can be parsed without writing it to disk
+    public InputStream open(String fileUrl, String fileName) throws IOException {
+        logger.info("Streaming: " + fileName + "...");
+        long startNanos = System.nanoTime();
+        ArtifactDownloadEvent event = new ArtifactDownloadEvent();
+        event.begin();
+        event.file = fileName;
+        event.url = fileUrl;
+        event.mode = "stream";
+        try {
+            HttpResponse<InputStream> response = send(request(fileUrl), fileName);
+            event.status = response.statusCode();
+            if (response.statusCode() != 200) {
+                JenkinsMetrics.downloadFailed();
+                event.commit();
+                response.body().close();
+                logger.error("Failed to download " + fileName + " (HTTP " + response.statusCode() + ")");
+                throw new IOException("Failed to download " + fileName + " (HTTP " + response.statusCode() + ")");
+            }
+            return JenkinsMetrics.countStream(new StallGuard(response.body(), timeout, fileName), startNanos, event);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while downloading " + fileName, e);
+        }
+    }
+
+    // Records a download to disk in the flight recording, if one is running
+    private static void commit(ArtifactDownloadEvent event, Download download, long bytes) {
+        if (event.shouldCommit()) {
+            event.file = download.fileName;
+            event.url = download.url;
+            event.mode = "file";
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    // Sends a request and returns once its response headers are in, or fails after the timeout
+    private HttpResponse<InputStream> send(HttpRequest.Builder request, String fileName) throws IOException, InterruptedException {
+        try {
+            return client.send(request.timeout(timeout).build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (HttpTimeoutException e) {
+            JenkinsMetrics.downloadFailed();
+            logger.error("No response for " + fileName + " within " + timeout.toSeconds() + " s");
+            throw new HttpTimeoutException("No response for " + fileName + " within " + timeout.toSeconds() + " s");
+        }
+    }
+
+    static HttpClient sharedClient() {
+        return SharedClient.INSTANCE;
+    }
+
+    private HttpRequest.Builder request(String url) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .header("Authorization", authorization)
+                .GET();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    // Fails a read of a response body that waits longer than the timeout for data. HttpRequest.timeout() only covers
+    // the response headers, so a body that stalls after them would block its reader forever; the watchdog closes the
+    // body, which wakes up the blocked read
+    static class StallGuard extends FilterInputStream {
+
+        private final String fileName;
+        private final Duration timeout;
+        private final ScheduledFuture<?> check;
+        // When the read in progress started, or 0 between reads
+        private volatile long readStart = 0;
+        private volatile boolean stalled = false;
+
+        StallGuard(InputStream body, Duration timeout, String fileName) {
+            super(body);
+            this.fileName = fileName;
+            this.timeout = timeout;
+            long period = Math.max(1, timeout.toMillis() / 4);
+            this.check = Watchdog.INSTANCE.scheduleWithFixedDelay(this::checkProgress, period, period, TimeUnit.MILLISECONDS);
+        }
+
+        private void checkProgress() {
+            long start = readStart;
+            if (!stalled && start != 0 && System.nanoTime() - start > timeout.toNanos()) {
+                stalled = true;
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    logger.debug("Error closing stalled response body of " + fileName + ": " + e.getMessage());
+                }
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b;
+            readStart = System.nanoTime();
+            try {
+                b = super.read();
+            } catch (IOException e) {
+                checkStalled(e);
+                throw e;
+            } finally {
+                readStart = 0;
+            }
+            checkStalled(null);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n;
+            readStart = System.nanoTime();
+            try {
+                n = super.read(b, off, len);
+            } catch (IOException e) {
+                checkStalled(e);
+                throw e;
+            } finally {
+                readStart = 0;
+            }
+            checkStalled(null);
+            return n;
+        }
+
+        private void checkStalled(IOException cause) throws HttpTimeoutException {
+            if (stalled) {
+                HttpTimeoutException e = new HttpTimeoutException("No data received for " + fileName + " within "
+                        + timeout.toSeconds() + " s");
+                if (cause != null) {
+                    e.initCause(cause);
+                }
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            check.cancel(false);
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.sap.fpa61.jenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+// A Jenkins build (the latest successful build as configured in config.properties, or a past build of the job
+// for backfills): its API metadata, the credentials and where its required result workbooks are. The workbooks
+// are downloaded into the save directory, or opened as streams and parsed straight from the HTTP response
+// (DOWNLOAD_MODE=stream)
+public class JenkinsBuild implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(JenkinsBuild.class);
+
+    static final String[] REQUIRED_FILES = {
+        "regression_dolphin.xlsx",
+        "regression_dolphin_burn_in.xlsx",
+        "burn_in_analysis.xlsx"
+    };
+
+    private final Properties properties;
+    private final String username;
+    private final String apiToken;
+    private final String downloadBaseUrl;
+    private final String saveDir;
+    private final JSONObject json;
+    // Required file name -> artifact relativePath, for the files the build has
+    private final Map<String, String> relativePaths;
+    private final boolean allFilesFound;
+
+    // Client for streamed files, created on first use
+    private ArtifactDownloadEngine engine;
+
+    private JenkinsBuild(Properties properties, String username, String apiToken, String downloadBaseUrl, String saveDir,
+            JSONObject json, Map<String, String> relativePaths, boolean allFilesFound) {
+        this.properties = properties;
+        this.username = username;
+        this.apiToken = apiToken;
+        this.downloadBaseUrl = downloadBaseUrl;
+        this.saveDir = saveDir;
+        this.json = json;
+        this.relativePaths = relativePaths;
+        this.allFilesFound = allFilesFound;
+    }
+
+    // Loads the configuration, fetches the build metadata from the Jenkins API and locates the required files
+    static JenkinsBuild locate() throws IOException, JSONException {
+        // Load credentials from properties file
+        Properties properties = new Properties();
+        try (InputStream input = JenkinsArtifactDownloader.getConfigInputStream()) {
+            if (input == null) {
+                logger.error("Unable to find config.properties");
+                throw new IOException("Config file not found");
+            }
+            properties.load(input);
+        }
+
+        String jenkinsUrl = properties.getProperty("JENKINS_URL");
+        String downloadBaseUrl = properties.getProperty("DOWNLOAD_BASE_URL");
+        String saveDir = JenkinsArtifactDownloader.getSaveDirectory(properties);
+
+        checkApiToken(properties);
+
+        if (jenkinsUrl == null) {
+            logger.error("Missing JENKINS_URL in config.properties.");
+            throw new IOException("Jenkins URL not found in configuration");
+        }
+
+        if (downloadBaseUrl == null) {
+            logger.error("Missing DOWNLOAD_BASE_URL in config.properties.");
+            throw new IOException("Download base URL not found in configuration");
+        }
+
+        return locate(properties, jenkinsUrl, downloadBaseUrl, saveDir);
+    }
+
+    // Fetches the metadata of the build behind an api/json URL and locates its required files under
+    // downloadBaseUrl; disk mode downloads them into saveDir
+    static JenkinsBuild locate(Properties properties, String apiUrl, String downloadBaseUrl, String saveDir)
+            throws IOException, JSONException {
+        // Get properties with default values if not found
+        String jenkinsUsername = properties.getProperty("JENKINS_USERNAME", JenkinsArtifactDownloader.DEFAULT_USERNAME);
+        String jenkinsApiToken = properties.getProperty("JENKINS_API_TOKEN");
+
+        // Fetch JSON from Jenkins API
+        JSONObject jsonResponse = JenkinsArtifactDownloader.fetchJenkinsJson(apiUrl, jenkinsUsername, jenkinsApiToken);
+        if (jsonResponse == null) {
+            throw new IOException("Failed to retrieve data from Jenkins API");
+        }
+
+        // Get the artifacts array
+        JSONArray artifacts = jsonResponse.getJSONArray("artifacts");
+        if (artifacts.length() == 0) {
+            throw new IOException("No artifacts found in Jenkins response");
+        }
+        logger.info("Successfully retrieved data from Jenkins API");
+
+        // Index the artifacts by file name (the first one of a name wins), then look up the required files
+        Map<String, String> artifactPaths = new HashMap<>();
+        for (int i = 0; i < artifacts.length(); i++) {
+            JSONObject artifact = artifacts.getJSONObject(i);
+            artifactPaths.putIfAbsent(artifact.getString("fileName"), artifact.getString("relativePath"));
+        }
+        Map<String, String> relativePaths = new LinkedHashMap<>();
+        boolean allFilesFound = true;
+        for (String requiredFile : REQUIRED_FILES) {
+            String relativePath = artifactPaths.get(requiredFile);
+            if (relativePath != null) {
+                relativePaths.put(requiredFile, relativePath);
+            } else {
+                logger.error("Required file not found in artifacts: " + requiredFile);
+                allFilesFound = false;
+            }
+        }
+
+        return new JenkinsBuild(properties, jenkinsUsername, jenkinsApiToken, downloadBaseUrl, saveDir, jsonResponse,
+                relativePaths, allFilesFound);
+    }
+
+    static void checkApiToken(Properties properties) throws IOException {
+        if (properties.getProperty("JENKINS_API_TOKEN") == null) {
+            logger.error("Missing JENKINS_API_TOKEN in config.properties.");
+            throw new IOException("Jenkins API token not found in configuration");
+        }
+    }
+
+    // Build metadata returned by the Jenkins API
+    public JSONObject getJson() {
+        return json;
+    }
+
+    // Directory the required files are downloaded into
+    public String getSaveDir() {
+        return saveDir;
+    }
+
+    // Downloads the required files into the save directory (in parallel, unless cached); throws afterwards if any
+    // is missing
+    public void download() throws IOException {
+        // Create download directory if it doesn't exist
+        File dir = new File(saveDir);
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Failed to create download directory: " + saveDir);
+        }
+        logger.info("Directory created at: " + saveDir);
+
+        JenkinsArtifactDownloader.downloadFiles(saveDir, downloadBaseUrl, relativePaths, json, username, apiToken, properties);
+        checkAllFilesFound();
+    }
+
+    public void checkAllFilesFound() throws IOException {
+        if (!allFilesFound) {
+            throw new IOException("Not all required files were found in artifacts");
+        }
+    }
+
+    // Opens the HTTP response body of a required file; the caller reads it as it arrives and closes it
+    public InputStream open(String fileName) throws IOException {
+        String relativePath = relativePaths.get(fileName);
+        if (relativePath == null) {
+            throw new IOException("Required file not found in artifacts: " + fileName);
+        }
+        ArtifactDownloadEngine client;
+        synchronized (this) {
+            if (engine == null) {
+                engine = new ArtifactDownloadEngine(username, apiToken, JenkinsArtifactDownloader.getDownloadConcurrency(properties),
+                        JenkinsArtifactDownloader.getDownloadTimeout(properties));
+            }
+            client = engine;
+        }
+        return client.open(downloadBaseUrl + relativePath, fileName);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (engine != null) {
+            engine.close();
+        }
+    }
+}
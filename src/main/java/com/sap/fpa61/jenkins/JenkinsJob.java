@@ -0,0 +1,112 @@
+package com.sap.fpa61.jenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+// A Jenkins job (the configured one, or one of JOBS), with its latest successful build and its past builds
+// (backfill). The job URL is JENKINS_JOB_URL, or JENKINS_URL without its build segment (".../job/pnr/lastSuccessfulBuild/api/json"
+// -> ".../job/pnr/"). A build's metadata is read from <job>/<number>/api/json and its artifacts from
+// <job>/<number>/artifact/; disk mode downloads them into SAVE_DIR/builds/<number>/
+public class JenkinsJob {
+
+    private static final Logger logger = LogManager.getLogger(JenkinsJob.class);
+
+    static final String BUILDS_DIR = "builds";
+
+    // Results of the builds lastSuccessfulBuild would pick: successful, or successful with test failures
+    private static final Set<String> SUCCESSFUL_RESULTS = Set.of("SUCCESS", "UNSTABLE");
+    private static final Pattern BUILD_API_SUFFIX = Pattern.compile("[^/]+/api/json/?(\\?.*)?$");
+
+    private final Properties properties;
+    private final String url;
+
+    public JenkinsJob(Properties properties) throws IOException {
+        JenkinsBuild.checkApiToken(properties);
+        this.properties = properties;
+        this.url = jobUrl(properties);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    // Job URL with a trailing slash, from JENKINS_JOB_URL or derived from JENKINS_URL
+    static String jobUrl(Properties properties) throws IOException {
+        String jobUrl = properties.getProperty("JENKINS_JOB_URL");
+        if (jobUrl == null || jobUrl.isBlank()) {
+            String jenkinsUrl = properties.getProperty("JENKINS_URL");
+            if (jenkinsUrl == null || !BUILD_API_SUFFIX.matcher(jenkinsUrl).find()) {
+                logger.error("Missing JENKINS_JOB_URL in config.properties, and no job URL can be derived from JENKINS_URL.");
+                throw new IOException("Jenkins job URL not found in configuration");
+            }
+            jobUrl = BUILD_API_SUFFIX.matcher(jenkinsUrl).replaceFirst("");
+        }
+        jobUrl = jobUrl.trim();
+        return jobUrl.endsWith("/") ? jobUrl : jobUrl + "/";
+    }
+
+    // Numbers of the job's successful builds from first to last (both inclusive), oldest first
+    public List<Integer> listSuccessfulBuilds(int first, int last) throws IOException {
+        String username = properties.getProperty("JENKINS_USERNAME", JenkinsArtifactDownloader.DEFAULT_USERNAME);
+        JSONArray builds = new JenkinsMetadataClient(username, properties.getProperty("JENKINS_API_TOKEN")).fetchBuilds(url);
+        List<Integer> numbers = new ArrayList<>();
+        int skipped = 0;
+        for (int i = 0; i < builds.length(); i++) {
+            JSONObject build = builds.getJSONObject(i);
+            int number = build.getInt("number");
+            if (number < first || number > last) {
+                continue;
+            }
+            // Builds still running have no result yet
+            if (SUCCESSFUL_RESULTS.contains(build.optString("result", ""))) {
+                numbers.add(number);
+            } else {
+                skipped++;
+            }
+        }
+        Collections.sort(numbers);
+        logger.info("Found {} successful builds of {} in range {}-{} ({} others skipped)", numbers.size(), url, first,
+                last == Integer.MAX_VALUE ? "" : last, skipped);
+        return numbers;
+    }
+
+    // Id of the latest successful build, fetched without its artifacts (daemon polling); null if there is none
+    public String lastSuccessfulBuildId() throws IOException {
+        String username = properties.getProperty("JENKINS_USERNAME", JenkinsArtifactDownloader.DEFAULT_USERNAME);
+        return new JenkinsMetadataClient(username, properties.getProperty("JENKINS_API_TOKEN"))
+                .fetchBuildId(lastSuccessfulBuildApiUrl());
+    }
+
+    // Locates the latest successful build (JENKINS_URL and DOWNLOAD_BASE_URL, or the job's lastSuccessfulBuild);
+    // disk mode downloads it into SAVE_DIR
+    public JenkinsBuild locateLastSuccessfulBuild() throws IOException, JSONException {
+        String apiUrl = lastSuccessfulBuildApiUrl();
+        String downloadBaseUrl = properties.getProperty("DOWNLOAD_BASE_URL", url + "lastSuccessfulBuild/artifact/");
+        return JenkinsBuild.locate(properties, apiUrl, downloadBaseUrl, JenkinsArtifactDownloader.getSaveDirectory(properties));
+    }
+
+    private String lastSuccessfulBuildApiUrl() {
+        return properties.getProperty("JENKINS_URL", url + "lastSuccessfulBuild/api/json");
+    }
+
+    // Fetches the metadata of one build of the job and locates its required files
+    public JenkinsBuild locateBuild(int number) throws IOException, JSONException {
+        String buildUrl = url + number + "/";
+        String saveDir = Path.of(JenkinsArtifactDownloader.getSaveDirectory(properties), BUILDS_DIR, String.valueOf(number))
+                + File.separator;
+        return JenkinsBuild.locate(properties, buildUrl + "api/json", buildUrl + "artifact/", saveDir);
+    }
+}
@@ -0,0 +1,202 @@
+package com.sap.fpa61.jenkins;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import com.sap.fpa61.jfr.JenkinsFetchEvent;
+
+// Fetches build metadata from the Jenkins JSON API. Only the fields the upload uses are requested (tree filter),
+// the response is gzip-compressed when the server supports it, and it is parsed from the stream as it arrives.
+// Fields other than these are skipped while parsing, so the result stays small even when the server ignores the
+// filter. The build list of a job (for backfills) is fetched with the same client
+class JenkinsMetadataClient {
+
+    private static final Logger logger = LogManager.getLogger(JenkinsMetadataClient.class);
+
+    static final String TREE = "id,fullDisplayName,artifacts[fileName,relativePath]";
+    static final String BUILDS_TREE = "allBuilds[number,result]";
+    // Longest wait for an API response, so that a hanging server cannot stall a poll or run forever
+    static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(1);
+
+    // Fields kept from the build and from each artifact
+    private static final Set<String> BUILD_FIELDS = Set.of("id", "fullDisplayName");
+    private static final Set<String> ARTIFACT_FIELDS = Set.of("fileName", "relativePath");
+
+    private final HttpClient client;
+    private final String authorization;
+
+    JenkinsMetadataClient(String username, String apiToken) {
+        this.client = ArtifactDownloadEngine.sharedClient();
+        String auth = username + ":" + apiToken;
+        this.authorization = "Basic " + Base64.getEncoder().encodeToString(auth.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Fetches the id, display name and artifacts of the build behind an api/json URL
+    JSONObject fetch(String apiUrl) throws IOException {
+        long startTime = System.currentTimeMillis();
+        JSONObject build = fetchJson(withTree(apiUrl), JenkinsMetadataClient::parse);
+        logger.debug("Fetched build metadata ({} artifacts) in {} ms", build.optJSONArray("artifacts") == null ? 0
+                : build.getJSONArray("artifacts").length(), System.currentTimeMillis() - startTime);
+        return build;
+    }
+
+    // Fetches only the id of the build behind an api/json URL, to poll for new builds; null if it has none
+    String fetchBuildId(String apiUrl) throws IOException {
+        String url = apiUrl + (apiUrl.contains("?") ? "&" : "?") + "tree=id";
+        return fetchJson(url, reader -> {
+            JSONObject build = new JSONObject(new JSONTokener(reader));
+            return build.has("id") && !build.isNull("id") ? build.get("id").toString() : null;
+        });
+    }
+
+    // Fetches the number and result of every build of a job (allBuilds, not only the 100 most recent builds)
+    JSONArray fetchBuilds(String jobUrl) throws IOException {
+        String url = jobUrl + "api/json?tree=" + URLEncoder.encode(BUILDS_TREE, StandardCharsets.UTF_8);
+        return fetchJson(url, reader -> {
+            JSONArray builds = new JSONObject(new JSONTokener(reader)).optJSONArray("allBuilds");
+            return builds != null ? builds : new JSONArray();
+        });
+    }
+
+    // Reads a response body into the value the caller needs
+    @FunctionalInterface
+    private interface ResponseParser<T> {
+
+        T parse(Reader reader) throws JSONException;
+    }
+
+    // Requests and parses a JSON document; the request and the parse are recorded as one JenkinsFetch event
+    private <T> T fetchJson(String url, ResponseParser<T> parser) throws IOException {
+        JenkinsFetchEvent event = new JenkinsFetchEvent();
+        event.begin();
+        event.url = url;
+        try (Reader reader = get(url, event)) {
+            return parser.parse(reader);
+        } catch (JSONException e) {
+            logger.error("Failed to parse Jenkins API response as JSON", e);
+            throw new IOException("Invalid JSON response from Jenkins API", e);
+        } finally {
+            event.commit();
+        }
+    }
+
+    // Requests a JSON document and opens its body, decompressed when the server sent it gzip-encoded
+    private Reader get(String url, JenkinsFetchEvent event) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .header("Authorization", authorization)
+                .header("Accept-Encoding", "gzip")
+                .timeout(REQUEST_TIMEOUT)
+                .GET()
+                .build();
+        HttpResponse<InputStream> response;
+        long startNanos = System.nanoTime();
+        try {
+            response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            JenkinsMetrics.apiRequest(response.statusCode(), startNanos);
+            event.status = response.statusCode();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while fetching Jenkins API response", e);
+        }
+
+        InputStream body = response.body();
+        if (response.statusCode() != 200) {
+            body.close();
+            logger.error("Jenkins API request failed with response code " + response.statusCode());
+            throw new IOException("Jenkins API request failed with HTTP response code: " + response.statusCode());
+        }
+        boolean gzip = response.headers().firstValue("Content-Encoding").map("gzip"::equalsIgnoreCase).orElse(false);
+        return new InputStreamReader(gzip ? new GZIPInputStream(body) : body, StandardCharsets.UTF_8);
+    }
+
+    // Adds the tree filter to an API URL, unless it already has one
+    static String withTree(String apiUrl) {
+        if (apiUrl.contains("tree=")) {
+            return apiUrl;
+        }
+        return apiUrl + (apiUrl.contains("?") ? "&" : "?") + "tree=" + URLEncoder.encode(TREE, StandardCharsets.UTF_8);
+    }
+
+    // Walks the build object as it is read, keeping the build fields and the file name and path of every artifact
+    static JSONObject parse(Reader reader) throws JSONException {
+        JSONTokener tokener = new JSONTokener(reader);
+        JSONObject build = new JSONObject();
+        expect(tokener, '{');
+        if (tokener.nextClean() == '}') {
+            return build;
+        }
+        tokener.back();
+        while (true) {
+            String key = tokener.nextValue().toString();
+            expect(tokener, ':');
+            if ("artifacts".equals(key)) {
+                build.put(key, parseArtifacts(tokener));
+            } else {
+                // Other values are parsed to skip them, but not kept
+                Object value = tokener.nextValue();
+                if (BUILD_FIELDS.contains(key)) {
+                    build.put(key, value);
+                }
+            }
+            char next = tokener.nextClean();
+            if (next == '}') {
+                return build;
+            }
+            if (next != ',') {
+                throw tokener.syntaxError("Expected ',' or '}'");
+            }
+        }
+    }
+
+    // Reads the artifacts one at a time, keeping their file name and path
+    private static JSONArray parseArtifacts(JSONTokener tokener) throws JSONException {
+        JSONArray artifacts = new JSONArray();
+        expect(tokener, '[');
+        if (tokener.nextClean() == ']') {
+            return artifacts;
+        }
+        tokener.back();
+        while (true) {
+            Object item = tokener.nextValue();
+            if (item instanceof JSONObject) {
+                JSONObject artifact = new JSONObject();
+                for (String field : ARTIFACT_FIELDS) {
+                    artifact.putOpt(field, ((JSONObject) item).opt(field));
+                }
+                artifacts.put(artifact);
+            }
+            char next = tokener.nextClean();
+            if (next == ']') {
+                return artifacts;
+            }
+            if (next != ',') {
+                throw tokener.syntaxError("Expected ',' or ']'");
+            }
+        }
+    }
+
+    private static void expect(JSONTokener tokener, char expected) throws JSONException {
+        if (tokener.nextClean() != expected) {
+            throw tokener.syntaxError("Expected '" + expected + "'");
+        }
+    }
+}
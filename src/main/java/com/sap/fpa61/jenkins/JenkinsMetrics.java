@@ -0,0 +1,99 @@
+package com.sap.fpa61.jenkins;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.sap.fpa61.jfr.ArtifactDownloadEvent;
+import com.sap.fpa61.metrics.Counter;
+import com.sap.fpa61.metrics.Histogram;
+import com.sap.fpa61.metrics.MetricsRegistry;
+
+// Metrics of the Jenkins side: bytes and time per artifact download (mode "file" to disk, "stream" parsed from
+// the response) and the latency of the JSON API requests by HTTP status
+final class JenkinsMetrics {
+
+    private static final MetricsRegistry REGISTRY = MetricsRegistry.global();
+
+    private static final Counter FILE_BYTES = downloadBytes("file");
+    private static final Counter STREAM_BYTES = downloadBytes("stream");
+    private static final Histogram FILE_SECONDS = downloadSeconds("file");
+    private static final Histogram STREAM_SECONDS = downloadSeconds("stream");
+    private static final Counter NOT_MODIFIED = REGISTRY.counter("pnr_artifact_not_modified_total",
+            "Cached artifacts revalidated with 304 Not Modified instead of downloaded");
+    private static final Counter FAILED = REGISTRY.counter("pnr_artifact_download_failures_total",
+            "Artifact downloads that failed");
+
+    private JenkinsMetrics() {
+    }
+
+    private static Counter downloadBytes(String mode) {
+        return REGISTRY.counter("pnr_artifact_download_bytes_total", "Bytes of build artifacts downloaded", "mode", mode);
+    }
+
+    private static Histogram downloadSeconds(String mode) {
+        return REGISTRY.histogram("pnr_artifact_download_seconds", "Time to download one build artifact",
+                Histogram.LATENCY_BUCKETS, "mode", mode);
+    }
+
+    // One artifact saved to disk, started at the given System.nanoTime()
+    static void downloaded(long bytes, long startNanos) {
+        FILE_BYTES.add(bytes);
+        FILE_SECONDS.observeSince(startNanos);
+    }
+
+    static void notModified() {
+        NOT_MODIFIED.inc();
+    }
+
+    static void downloadFailed() {
+        FAILED.inc();
+    }
+
+    // One Jenkins API request, until its response headers arrived
+    static void apiRequest(int status, long startNanos) {
+        REGISTRY.histogram("pnr_jenkins_api_seconds", "Latency of Jenkins JSON API requests",
+                Histogram.LATENCY_BUCKETS, "code", Integer.toString(status)).observeSince(startNanos);
+    }
+
+    // Counts the bytes of a streamed artifact as they are read; the download time and its event end when the
+    // stream is closed
+    static InputStream countStream(InputStream body, long startNanos, ArtifactDownloadEvent event) {
+        return new FilterInputStream(body) {
+
+            private boolean closed = false;
+            private long bytes = 0;
+
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    STREAM_BYTES.inc();
+                    bytes++;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int read = super.read(buffer, offset, length);
+                if (read > 0) {
+                    STREAM_BYTES.add(read);
+                    bytes += read;
+                }
+                return read;
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (!closed) {
+                    closed = true;
+                    STREAM_SECONDS.observeSince(startNanos);
+                    event.bytes = bytes;
+                    event.commit();
+                }
+                super.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,32 @@
+package com.sap.fpa61.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// One build artifact downloaded to disk, or streamed into the parser (until its stream is closed)
+@Name("com.sap.fpa61.ArtifactDownload")
+@Label("Artifact Download")
+@Category({"PnR Upload", "Jenkins"})
+@Description("Download of one build artifact")
+public final class ArtifactDownloadEvent extends jdk.jfr.Event {
+
+    @Label("File")
+    public String file;
+
+    @Label("URL")
+    public String url;
+
+    @Label("Mode")
+    @Description("file (saved to disk) or stream (parsed from the response)")
+    public String mode;
+
+    @Label("HTTP Status")
+    public int status;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,24 @@
+package com.sap.fpa61.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// One executeBatch of result rows, or one bulk load of the staged rows
+@Name("com.sap.fpa61.BatchFlush")
+@Label("Batch Flush")
+@Category({"PnR Upload", "Database"})
+@Description("JDBC batch or bulk load of TEST_RESULT rows")
+public final class BatchFlushEvent extends jdk.jfr.Event {
+
+    @Label("Table")
+    public String table;
+
+    @Label("Mode")
+    @Description("batch (executeBatch) or bulk (CSV import)")
+    public String mode;
+
+    @Label("Rows")
+    public int rows;
+}
@@ -0,0 +1,28 @@
+package com.sap.fpa61.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// One dated column of a sheet turned into its test run: date parsing, scenario lookup, the natural key check and the
+// RUN_ID assignment
+@Name("com.sap.fpa61.ColumnDecode")
+@Label("Column Decode")
+@Category({"PnR Upload", "Workbook"})
+@Description("Decoding of one sheet column into a test run")
+public final class ColumnDecodeEvent extends jdk.jfr.Event {
+
+    @Label("Sheet")
+    public String sheet;
+
+    @Label("Column")
+    public int column;
+
+    @Label("Job Date")
+    public String jobDate;
+
+    @Label("Already Loaded")
+    @Description("The run was loaded before, so its column is skipped")
+    public boolean alreadyLoaded;
+}
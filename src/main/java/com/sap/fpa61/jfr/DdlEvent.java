@@ -0,0 +1,20 @@
+package com.sap.fpa61.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// One DDL statement of a schema migration
+@Name("com.sap.fpa61.Ddl")
+@Label("DDL Execution")
+@Category({"PnR Upload", "Database"})
+@Description("Execution of one schema migration statement")
+public final class DdlEvent extends jdk.jfr.Event {
+
+    @Label("Migration")
+    public String migration;
+
+    @Label("Statement")
+    public String statement;
+}
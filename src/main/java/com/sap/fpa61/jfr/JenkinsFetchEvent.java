@@ -0,0 +1,20 @@
+package com.sap.fpa61.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// One Jenkins JSON API request, from sending it until its response is parsed
+@Name("com.sap.fpa61.JenkinsFetch")
+@Label("Jenkins JSON Fetch")
+@Category({"PnR Upload", "Jenkins"})
+@Description("Request to the Jenkins JSON API, including parsing the response")
+public final class JenkinsFetchEvent extends jdk.jfr.Event {
+
+    @Label("URL")
+    public String url;
+
+    @Label("HTTP Status")
+    public int status;
+}
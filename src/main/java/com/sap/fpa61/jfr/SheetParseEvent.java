@@ -0,0 +1,26 @@
+package com.sap.fpa61.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// One result sheet read and written, from its first row until its last results are handed to the DB
+@Name("com.sap.fpa61.SheetParse")
+@Label("Sheet Parse")
+@Category({"PnR Upload", "Workbook"})
+@Description("Parsing of one result sheet, including the writes it triggers")
+public final class SheetParseEvent extends jdk.jfr.Event {
+
+    @Label("File")
+    public String file;
+
+    @Label("Sheet")
+    public String sheet;
+
+    @Label("Rows")
+    public int rows;
+
+    @Label("Cells")
+    public long cells;
+}
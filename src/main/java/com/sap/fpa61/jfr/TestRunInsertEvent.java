@@ -0,0 +1,17 @@
+package com.sap.fpa61.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// One JDBC batch of TEST_RUN rows
+@Name("com.sap.fpa61.TestRunInsert")
+@Label("TEST_RUN Insert")
+@Category({"PnR Upload", "Database"})
+@Description("Batch insert of TEST_RUN rows")
+public final class TestRunInsertEvent extends jdk.jfr.Event {
+
+    @Label("Rows")
+    public int rows;
+}
@@ -0,0 +1,27 @@
+package com.sap.fpa61.metrics;
+
+import java.util.concurrent.atomic.DoubleAdder;
+
+// A value that only goes up (bytes, rows, requests), added to from many threads without locking
+public final class Counter {
+
+    private final DoubleAdder value = new DoubleAdder();
+
+    Counter() {
+    }
+
+    public void inc() {
+        value.add(1);
+    }
+
+    public void add(double amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("Counters cannot decrease: " + amount);
+        }
+        value.add(amount);
+    }
+
+    public double get() {
+        return value.sum();
+    }
+}
@@ -0,0 +1,27 @@
+package com.sap.fpa61.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// A value that is set to its current reading (last upload duration), or moved up and down (queue depth)
+public final class Gauge {
+
+    private final AtomicLong bits = new AtomicLong(Double.doubleToLongBits(0));
+
+    Gauge() {
+    }
+
+    public void set(double value) {
+        bits.set(Double.doubleToLongBits(value));
+    }
+
+    public void add(double delta) {
+        long current;
+        do {
+            current = bits.get();
+        } while (!bits.compareAndSet(current, Double.doubleToLongBits(Double.longBitsToDouble(current) + delta)));
+    }
+
+    public double get() {
+        return Double.longBitsToDouble(bits.get());
+    }
+}
@@ -0,0 +1,76 @@
+package com.sap.fpa61.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+// Distribution of observed values (latencies, sizes) over fixed bucket upper bounds, exposed with cumulative
+// counts like a Prometheus histogram. Observing only increments adders, so it is cheap on hot paths
+public final class Histogram {
+
+    // Seconds, from a fast JDBC batch or API call to a large download
+    public static final double[] LATENCY_BUCKETS = {
+        0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 120, 300
+    };
+    // Counts and rates spanning several orders of magnitude (cells per sheet, rows per second)
+    public static final double[] SIZE_BUCKETS = {
+        1, 10, 100, 1_000, 10_000, 100_000, 1_000_000, 10_000_000
+    };
+    // Small counts (round trips per test run)
+    public static final double[] COUNT_BUCKETS = {
+        0.5, 1, 1.5, 2, 3, 5, 10, 25, 100
+    };
+
+    private final double[] bounds;
+    private final LongAdder[] counts;
+    private final DoubleAdder sum = new DoubleAdder();
+    private final LongAdder count = new LongAdder();
+
+    Histogram(double[] bounds) {
+        this.bounds = bounds.clone();
+        Arrays.sort(this.bounds);
+        // One more for the values above the last bound (+Inf)
+        this.counts = new LongAdder[this.bounds.length + 1];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    public void observe(double value) {
+        int bucket = 0;
+        while (bucket < bounds.length && value > bounds[bucket]) {
+            bucket++;
+        }
+        counts[bucket].increment();
+        sum.add(value);
+        count.increment();
+    }
+
+    // Observes the seconds since a System.nanoTime() start
+    public void observeSince(long startNanos) {
+        observe((System.nanoTime() - startNanos) / 1e9);
+    }
+
+    double[] bounds() {
+        return bounds.clone();
+    }
+
+    // Observations up to each bound, the last one counting all of them (+Inf)
+    long[] cumulativeCounts() {
+        long[] cumulative = new long[counts.length];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            total += counts[i].sum();
+            cumulative[i] = total;
+        }
+        return cumulative;
+    }
+
+    public double sum() {
+        return sum.sum();
+    }
+
+    public long count() {
+        return count.sum();
+    }
+}
@@ -0,0 +1,139 @@
+package com.sap.fpa61.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+// Counters, gauges and histograms of the upload phases, exposed in the Prometheus text format (version 0.0.4):
+// served as /metrics by the daemon, or written to METRICS_FILE for the node_exporter textfile collector. Metrics
+// are looked up once (by name and label pairs, e.g. "file", "burn_in_analysis.xlsx") and kept in a static field,
+// so recording a value costs one adder increment. global() is the registry of the whole JVM
+public final class MetricsRegistry {
+
+    private static final MetricsRegistry GLOBAL = new MetricsRegistry();
+
+    // One metric name: its type, help text and a child per set of label values
+    private static final class Family {
+
+        final String type;
+        final String help;
+        final Map<String, Object> children = new ConcurrentSkipListMap<>();
+
+        Family(String type, String help) {
+            this.type = type;
+            this.help = help;
+        }
+    }
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    public static MetricsRegistry global() {
+        return GLOBAL;
+    }
+
+    public Counter counter(String name, String help, String... labels) {
+        return (Counter) child("counter", name, help, labels, Counter::new);
+    }
+
+    public Gauge gauge(String name, String help, String... labels) {
+        return (Gauge) child("gauge", name, help, labels, Gauge::new);
+    }
+
+    public Histogram histogram(String name, String help, double[] bounds, String... labels) {
+        return (Histogram) child("histogram", name, help, labels, () -> new Histogram(bounds));
+    }
+
+    private Object child(String type, String name, String help, String[] labels, Supplier<Object> factory) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels of " + name + " must be name/value pairs");
+        }
+        Family family = families.computeIfAbsent(name, n -> new Family(type, help));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " is a " + family.type + ", not a " + type);
+        }
+        String labelSet = labelSet(labels);
+        return family.children.computeIfAbsent(labelSet, l -> factory.get());
+    }
+
+    // {a="1",b="2"}, or "" without labels
+    private static String labelSet(String[] labels) {
+        if (labels.length == 0) {
+            return "";
+        }
+        StringBuilder set = new StringBuilder("{");
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                set.append(',');
+            }
+            set.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+        }
+        return set.append('}').toString();
+    }
+
+    private static String escape(String value) {
+        return String.valueOf(value).replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    // The current values of all metrics in the Prometheus text format
+    public String scrape() {
+        StringBuilder out = new StringBuilder();
+        families.forEach((name, family) -> {
+            out.append("# HELP ").append(name).append(' ').append(family.help.replace("\n", " ")).append('\n');
+            out.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+            family.children.forEach((labelSet, metric) -> {
+                if (metric instanceof Counter counter) {
+                    sample(out, name, labelSet, counter.get());
+                } else if (metric instanceof Gauge gauge) {
+                    sample(out, name, labelSet, gauge.get());
+                } else {
+                    histogram(out, name, labelSet, (Histogram) metric);
+                }
+            });
+        });
+        return out.toString();
+    }
+
+    private static void histogram(StringBuilder out, String name, String labelSet, Histogram histogram) {
+        double[] bounds = histogram.bounds();
+        long[] counts = histogram.cumulativeCounts();
+        for (int i = 0; i < counts.length; i++) {
+            String le = i < bounds.length ? format(bounds[i]) : "+Inf";
+            sample(out, name + "_bucket", withLabel(labelSet, "le", le), counts[i]);
+        }
+        sample(out, name + "_sum", labelSet, histogram.sum());
+        sample(out, name + "_count", labelSet, histogram.count());
+    }
+
+    private static String withLabel(String labelSet, String label, String value) {
+        String pair = label + "=\"" + value + "\"";
+        return labelSet.isEmpty() ? "{" + pair + "}" : labelSet.substring(0, labelSet.length() - 1) + "," + pair + "}";
+    }
+
+    private static void sample(StringBuilder out, String name, String labelSet, double value) {
+        out.append(name).append(labelSet).append(' ').append(format(value)).append('\n');
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    // Writes the metrics to a file for the node_exporter textfile collector; the file is replaced atomically so
+    // the collector never reads a partial one
+    public void writeTextfile(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(temp, scrape(), StandardCharsets.UTF_8);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,239 @@
+package com.sap.fpa61.tools;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+// Writes synthetic burn_in_analysis.xlsx, regression_dolphin.xlsx and regression_dolphin_burn_in.xlsx workbooks in
+// the layout the uploader reads, at any size: job dates in row 0, "Deployment:" and "Image:" rows, "Inst:" and
+// column labels in rows 3 and 4, and one entity (metric or endpoint) per row with one value per build from row 5 on.
+// The workbooks are streamed through SXSSF, so 10k rows x 1000 builds need no more memory than 10 x 10. The same
+// arguments and seed always give the same workbooks
+public final class WorkbookGenerator {
+
+    private static final Logger logger = LogManager.getLogger(WorkbookGenerator.class);
+
+    public static final String COMMAND = "generate";
+
+    public static final String BURN_IN_FILE = "burn_in_analysis.xlsx";
+    public static final String REGRESSION_FILE = "regression_dolphin.xlsx";
+    public static final String REGRESSION_BURN_IN_FILE = "regression_dolphin_burn_in.xlsx";
+
+    static final int HEADER_ROW = 0;
+    static final int FIRST_DATA_ROW = 5;
+
+    // Sheets of the real regression workbooks; further sheets are numbered
+    static final String[] REGRESSION_SHEETS = {
+        "results_median", "results_90th", "results_error", "results_90th_to_median", "last_6_waves_median"
+    };
+
+    // Rows SXSSF keeps in memory before flushing them to its temp file
+    private static final int WINDOW_ROWS = 100;
+    private static final LocalDate FIRST_BUILD_DATE = LocalDate.of(2023, 1, 2);
+
+    // Kinds of data cell: a number, a number stored as text, a formula with its cached number, or an empty cell
+    public enum CellKind {
+        NUMERIC,
+        STRING,
+        FORMULA,
+        BLANK
+    }
+
+    private final Path outputDir;
+    private final int sheets;
+    private final int builds;
+    private final int rows;
+    // The kinds of data cell of the mix with their cumulative weights, for picking one by a random number
+    private final CellKind[] kinds;
+    private final int[] cumulativeWeights;
+    private final long seed;
+
+    public WorkbookGenerator(Path outputDir, int sheets, int builds, int rows, Map<CellKind, Integer> mix, long seed) {
+        if (sheets < 1 || builds < 1 || rows < 1) {
+            throw new IllegalArgumentException("sheets, builds and rows must be at least 1");
+        }
+        if (mix.values().stream().anyMatch(weight -> weight < 0) || mix.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("Cell mix needs non-negative weights and at least one positive weight: " + mix);
+        }
+        this.outputDir = outputDir;
+        this.sheets = sheets;
+        this.builds = builds;
+        this.rows = rows;
+        Map<CellKind, Integer> weights = new EnumMap<>(mix);
+        this.kinds = weights.keySet().toArray(CellKind[]::new);
+        this.cumulativeWeights = new int[kinds.length];
+        int total = 0;
+        for (int i = 0; i < kinds.length; i++) {
+            total += weights.get(kinds[i]);
+            cumulativeWeights[i] = total;
+        }
+        this.seed = seed;
+    }
+
+    // Parses "<dir> [--sheets=5] [--builds=10] [--rows=100] [--mix=numeric:70,string:10,formula:10,blank:10]
+    // [--seed=1]"; --sheets is the number of sheets of the regression workbooks (burn-in has its one results sheet)
+    public static WorkbookGenerator fromArgs(String[] args) {
+        Path outputDir = null;
+        int sheets = REGRESSION_SHEETS.length;
+        int builds = 10;
+        int rows = 100;
+        Map<CellKind, Integer> mix = Map.of(CellKind.NUMERIC, 1);
+        long seed = 1;
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                if (outputDir != null) {
+                    throw new IllegalArgumentException("More than one output directory: " + arg);
+                }
+                outputDir = Paths.get(arg);
+                continue;
+            }
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Option without value: " + arg);
+            }
+            String value = arg.substring(separator + 1);
+            try {
+                switch (arg.substring(2, separator)) {
+                    case "sheets" -> sheets = Integer.parseInt(value);
+                    case "builds" -> builds = Integer.parseInt(value);
+                    case "rows" -> rows = Integer.parseInt(value);
+                    case "mix" -> mix = parseMix(value);
+                    case "seed" -> seed = Long.parseLong(value);
+                    default -> throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number: " + arg);
+            }
+        }
+        if (outputDir == null) {
+            throw new IllegalArgumentException("No output directory");
+        }
+        return new WorkbookGenerator(outputDir, sheets, builds, rows, mix, seed);
+    }
+
+    // Parses "numeric:70,string:10,formula:10,blank:10"; kinds left out get weight 0
+    static Map<CellKind, Integer> parseMix(String spec) {
+        Map<CellKind, Integer> mix = new EnumMap<>(CellKind.class);
+        for (String part : spec.split(",")) {
+            String[] kindAndWeight = part.trim().split(":");
+            if (kindAndWeight.length != 2) {
+                throw new IllegalArgumentException("Cell mix entry is not <kind>:<weight>: " + part);
+            }
+            try {
+                mix.put(CellKind.valueOf(kindAndWeight[0].trim().toUpperCase(Locale.ROOT)),
+                        Integer.parseInt(kindAndWeight[1].trim()));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown cell kind or weight in " + part
+                        + " (kinds: numeric, string, formula, blank)");
+            }
+        }
+        return mix;
+    }
+
+    // Writes the three workbooks into the output directory and returns their paths
+    public List<Path> writeAll() throws IOException {
+        Files.createDirectories(outputDir);
+        List<String> regressionSheets = regressionSheetNames();
+        List<Path> files = new ArrayList<>();
+        files.add(write(BURN_IN_FILE, List.of("results"), "Metric", "metric-", ""));
+        files.add(write(REGRESSION_FILE, regressionSheets, "URI", "/endpoint-", ""));
+        // Burn-in regression builds run a second image next to the product, as in the real workbooks
+        files.add(write(REGRESSION_BURN_IN_FILE, regressionSheets, "URI", "/endpoint-", " alpine:3.8"));
+        return files;
+    }
+
+    List<String> regressionSheetNames() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < sheets; i++) {
+            names.add(i < REGRESSION_SHEETS.length ? REGRESSION_SHEETS[i] : "results_" + (i + 1));
+        }
+        return names;
+    }
+
+    private Path write(String fileName, List<String> sheetNames, String entityLabel, String entityPrefix,
+            String imageSuffix) throws IOException {
+        Path file = outputDir.resolve(fileName);
+        long started = System.nanoTime();
+        // One stream of values per workbook, so a workbook does not change when another one gets more sheets
+        SplittableRandom random = new SplittableRandom(seed ^ fileName.hashCode());
+        // close() also deletes the temp files of the flushed rows
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(WINDOW_ROWS)) {
+            workbook.setCompressTempFiles(true);
+            for (String sheetName : sheetNames) {
+                writeSheet(workbook.createSheet(sheetName), sheetName, entityLabel, entityPrefix, imageSuffix, random);
+            }
+            try (OutputStream out = Files.newOutputStream(file)) {
+                workbook.write(out);
+            }
+        }
+        logger.info("Generated {} ({} sheets, {} builds x {} rows) in {} ms", file, sheetNames.size(), builds, rows,
+                (System.nanoTime() - started) / 1_000_000);
+        return file;
+    }
+
+    private void writeSheet(Sheet sheet, String sheetName, String entityLabel, String entityPrefix, String imageSuffix,
+            SplittableRandom random) {
+        Row header = sheet.createRow(HEADER_ROW);
+        Row deployment = sheet.createRow(HEADER_ROW + 1);
+        Row image = sheet.createRow(HEADER_ROW + 2);
+        Row instances = sheet.createRow(HEADER_ROW + 3);
+        Row labels = sheet.createRow(HEADER_ROW + 4);
+        labels.createCell(0).setCellValue(entityLabel);
+        for (int build = 1; build <= builds; build++) {
+            String version = "1." + build + ".0";
+            header.createCell(build).setCellValue(FIRST_BUILD_DATE.plusDays(build - 1).toString());
+            deployment.createCell(build).setCellValue("Deployment: orca-fpa-core-" + version);
+            image.createCell(build).setCellValue("Image: registry.example.com/dmi-orca-xsn:" + version + imageSuffix);
+            instances.createCell(build).setCellValue("Inst: 1");
+            labels.createCell(build).setCellValue(sheetName);
+        }
+
+        for (int i = 0; i < rows; i++) {
+            Row row = sheet.createRow(FIRST_DATA_ROW + i);
+            row.createCell(0).setCellValue(entityPrefix + i);
+            for (int build = 1; build <= builds; build++) {
+                writeValue(row.createCell(build), random);
+            }
+        }
+    }
+
+    // A duration in ms with up to three decimals, stored as the next kind of the mix
+    private void writeValue(Cell cell, SplittableRandom random) {
+        double value = Math.round((20 + random.nextDouble() * 980) * 1000) / 1000.0;
+        switch (nextKind(random)) {
+            case NUMERIC -> cell.setCellValue(value);
+            case STRING -> cell.setCellValue(Double.toString(value));
+            case FORMULA -> {
+                cell.setCellFormula("ROUND(" + value + ",3)");
+                // The cached result, which is what the uploader reads
+                cell.setCellValue(value);
+            }
+            case BLANK -> cell.setBlank();
+        }
+    }
+
+    private CellKind nextKind(SplittableRandom random) {
+        int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        int i = 0;
+        while (pick >= cumulativeWeights[i]) {
+            i++;
+        }
+        return kinds[i];
+    }
+}
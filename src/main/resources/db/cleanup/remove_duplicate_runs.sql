@@ -0,0 +1,25 @@
+-- Opt-in cleanup of the copies left by uploads before incremental ingestion (schema version 4), which inserted
+-- every workbook column again on every run. Their runs have no SOURCE_FILE. A column loaded by several uploads has
+-- copies with the same scenario, JOB_DATE, DEPLOYMENT_NAME and IMAGE_NAME from different builds. The runs of the
+-- first upload (lowest BUILD_NUMBER) are kept, including the columns both regression workbooks share and columns a
+-- sheet repeats, and the copies of later uploads are deleted with their results. The uploader never runs it: run it
+-- against REGRESSION_UPLOAD any time after the migration to version 4
+DELETE FROM TEST_RESULT WHERE RUN_ID IN (
+    SELECT r.RUN_ID FROM TEST_RUN r
+    WHERE r.SOURCE_FILE IS NULL AND EXISTS (
+        SELECT 1 FROM TEST_RUN f
+        WHERE f.SOURCE_FILE IS NULL AND f.JENKINS_JOB_NAME = r.JENKINS_JOB_NAME AND f.SCENARIO_ID = r.SCENARIO_ID
+            AND f.JOB_DATE = r.JOB_DATE AND f.DEPLOYMENT_NAME = r.DEPLOYMENT_NAME AND f.IMAGE_NAME = r.IMAGE_NAME
+            AND f.BUILD_NUMBER < r.BUILD_NUMBER
+    )
+);
+
+DELETE FROM TEST_RUN WHERE RUN_ID IN (
+    SELECT r.RUN_ID FROM TEST_RUN r
+    WHERE r.SOURCE_FILE IS NULL AND EXISTS (
+        SELECT 1 FROM TEST_RUN f
+        WHERE f.SOURCE_FILE IS NULL AND f.JENKINS_JOB_NAME = r.JENKINS_JOB_NAME AND f.SCENARIO_ID = r.SCENARIO_ID
+            AND f.JOB_DATE = r.JOB_DATE AND f.DEPLOYMENT_NAME = r.DEPLOYMENT_NAME AND f.IMAGE_NAME = r.IMAGE_NAME
+            AND f.BUILD_NUMBER < r.BUILD_NUMBER
+    )
+);
@@ -1,6 +1,3 @@
-CREATE SCHEMA REGRESSION_UPLOAD;
-SET SCHEMA REGRESSION_UPLOAD;
-
 -- Create dimension table for test scenarios
 CREATE COLUMN TABLE TEST_SCENARIO (
     SCENARIO_ID BIGINT NOT NULL GENERATED BY DEFAULT AS IDENTITY (START WITH 1000 INCREMENT BY 1 NO MAXVALUE) PRIMARY KEY,
@@ -0,0 +1,14 @@
+-- RUN_ID and SCENARIO_ID are assigned by the uploader in blocks drawn from these sequences: each NEXTVAL
+-- reserves INCREMENT BY consecutive IDs (must match RUN_ID_BLOCK_SIZE / SCENARIO_ID_BLOCK_SIZE in HanaDataUploader).
+-- The sequences start after the IDs already generated by the identity columns
+DO BEGIN
+    DECLARE start_id BIGINT;
+    SELECT IFNULL(MAX(SCENARIO_ID) + 1, 1000) INTO start_id FROM TEST_SCENARIO;
+    EXEC 'CREATE SEQUENCE TEST_SCENARIO_ID_SEQ START WITH ' || :start_id || ' INCREMENT BY 10 NO MAXVALUE';
+END;
+
+DO BEGIN
+    DECLARE start_id BIGINT;
+    SELECT IFNULL(MAX(RUN_ID) + 1, 1000) INTO start_id FROM TEST_RUN;
+    EXEC 'CREATE SEQUENCE TEST_RUN_ID_SEQ START WITH ' || :start_id || ' INCREMENT BY 100 NO MAXVALUE';
+END;
@@ -0,0 +1,7 @@
+-- Create staging table for bulk loads (IMPORT FROM CSV FILE), rows are moved into TEST_RESULT per LOAD_ID
+CREATE COLUMN TABLE TEST_RESULT_STAGING (
+    LOAD_ID NVARCHAR(64) NOT NULL,          -- one id per imported CSV file
+    RUN_ID BIGINT NOT NULL,
+    ENTITY_NAME NVARCHAR(1024) NOT NULL,
+    DURATION_MS DOUBLE NOT NULL
+);
@@ -0,0 +1,13 @@
+-- Natural key of a test run: the KEY_SEQ-th column with this JOB_DATE, DEPLOYMENT_NAME and IMAGE_NAME in the sheet
+-- (scenario) of one workbook (SOURCE_FILE) of a Jenkins job. Both regression workbooks have the same sheets and a
+-- sheet can repeat a column, so neither part can be left out. Every column is loaded once (incremental ingestion).
+-- LOADED is set once all results of the run are written, so a run cut short by a failed upload is loaded again.
+-- Runs loaded before this version keep SOURCE_FILE and KEY_SEQ empty and never conflict with the index
+ALTER TABLE TEST_RUN ADD (
+    SOURCE_FILE NVARCHAR(255),              -- workbook file name, e.g. "regression_dolphin.xlsx"
+    KEY_SEQ INT,                            -- 1 for the first column with this key in the sheet, 2 for the next one
+    LOADED BOOLEAN DEFAULT TRUE NOT NULL    -- false until every result of the run is written
+);
+
+CREATE UNIQUE INDEX TEST_RUN_NATURAL_KEY ON TEST_RUN (JENKINS_JOB_NAME, SCENARIO_ID, SOURCE_FILE, JOB_DATE, DEPLOYMENT_NAME,
+    IMAGE_NAME, KEY_SEQ);
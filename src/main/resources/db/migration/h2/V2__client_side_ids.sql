@@ -0,0 +1,5 @@
+-- H2 variant of V2__client_side_ids.sql. An embedded database is created by this version of the uploader,
+-- so the identity columns never generated IDs and the sequences start where the identity columns would have
+CREATE SEQUENCE TEST_SCENARIO_ID_SEQ START WITH 1000 INCREMENT BY 10 NO MAXVALUE;
+
+CREATE SEQUENCE TEST_RUN_ID_SEQ START WITH 1000 INCREMENT BY 100 NO MAXVALUE;
@@ -0,0 +1,204 @@
+package com.sap.fpa61;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sap.fpa61.jenkins.JenkinsJob;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// Backfills builds from a local HTTP server standing in for Jenkins into an embedded H2 database
+class BackfillTest {
+
+    private static final String URL = "jdbc:h2:mem:backfill;DB_CLOSE_DELAY=-1";
+    private static final String[] FILES = {
+        "burn_in_analysis.xlsx", "regression_dolphin.xlsx", "regression_dolphin_burn_in.xlsx"
+    };
+    private static final Pattern BUILD_PATH = Pattern.compile("/job/pnr/(\\d+)/(api/json|artifact/out/(.+))");
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private Connection connection;
+    private Properties properties;
+
+    // Builds whose artifacts the server fails to serve, and the artifacts it served
+    private final Set<Integer> failing = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger artifactRequests = new AtomicInteger();
+
+    @TempDir
+    Path saveDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        connection = DriverManager.getConnection(URL);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.createContext("/", this::serve);
+        server.start();
+
+        properties = new Properties();
+        properties.setProperty("DB_URL", URL);
+        properties.setProperty("JENKINS_API_TOKEN", "token");
+        properties.setProperty("JENKINS_URL",
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/job/pnr/lastSuccessfulBuild/api/json");
+        properties.setProperty("SAVE_DIR", saveDir + "/");
+        properties.setProperty("BACKFILL_THREADS", "2");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.stop(0);
+        serverThreads.shutdownNow();
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    // Job with builds 1 (success), 2 (unstable), 3 (failed), 4 (success) and 5 (running)
+    private void serve(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        byte[] body;
+        if (path.equals("/job/pnr/api/json")) {
+            JSONArray builds = new JSONArray()
+                    .put(new JSONObject().put("number", 5).put("result", JSONObject.NULL))
+                    .put(new JSONObject().put("number", 4).put("result", "SUCCESS"))
+                    .put(new JSONObject().put("number", 3).put("result", "FAILURE"))
+                    .put(new JSONObject().put("number", 2).put("result", "UNSTABLE"))
+                    .put(new JSONObject().put("number", 1).put("result", "SUCCESS"));
+            body = new JSONObject().put("allBuilds", builds).toString().getBytes(StandardCharsets.UTF_8);
+        } else {
+            Matcher matcher = BUILD_PATH.matcher(path);
+            if (!matcher.matches()) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+            int number = Integer.parseInt(matcher.group(1));
+            if (matcher.group(3) == null) {
+                JSONArray artifacts = new JSONArray();
+                for (String file : FILES) {
+                    artifacts.put(new JSONObject().put("fileName", file).put("relativePath", "out/" + file));
+                }
+                body = new JSONObject().put("id", String.valueOf(number)).put("fullDisplayName", "pnr #" + number)
+                        .put("artifacts", artifacts).toString().getBytes(StandardCharsets.UTF_8);
+            } else {
+                artifactRequests.incrementAndGet();
+                if (failing.contains(number)) {
+                    exchange.sendResponseHeaders(500, -1);
+                    exchange.close();
+                    return;
+                }
+                body = Files.readAllBytes(Paths.get("src/test/resources/test-data", matcher.group(3)));
+            }
+        }
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private List<Integer> backfill(int first, int last) throws Exception {
+        try (Backfill backfill = Backfill.fromConfig(properties)) {
+            return backfill.run(first, last);
+        }
+    }
+
+    private int count(String sql) throws SQLException {
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private List<String> checkpointLines() throws IOException {
+        return Files.readAllLines(saveDir.resolve(BackfillCheckpoint.DEFAULT_FILE));
+    }
+
+    @Test
+    void testUploadsSuccessfulBuildsOfRangeAndResumes() throws Exception {
+        List<Integer> failed = backfill(2, Integer.MAX_VALUE);
+
+        assertTrue(failed.isEmpty());
+        String job = new JenkinsJob(properties).getUrl();
+        assertEquals(List.of(job + " 2", job + " 4"), checkpointLines());
+        assertEquals(6, artifactRequests.get());
+        // The builds are uploaded in order, so the runs both builds contain belong to the first one
+        assertTrue(count("SELECT COUNT(*) FROM REGRESSION_UPLOAD.TEST_RUN WHERE BUILD_NUMBER = 2") > 0);
+        assertEquals(0, count("SELECT COUNT(*) FROM REGRESSION_UPLOAD.TEST_RUN WHERE BUILD_NUMBER = 4"));
+        // The working copies are gone, the cache keeps the files
+        assertFalse(Files.exists(saveDir.resolve("builds").resolve("2")));
+
+        // Nothing left to do for the same range
+        assertTrue(backfill(2, 4).isEmpty());
+        assertEquals(6, artifactRequests.get());
+    }
+
+    @Test
+    void testFailedBuildIsNotCheckpointedAndRetried() throws Exception {
+        failing.add(2);
+        properties.setProperty("ARTIFACT_CACHE_MAX_MB", "0");
+
+        assertEquals(List.of(2), backfill(1, 4));
+        String job = new JenkinsJob(properties).getUrl();
+        assertEquals(List.of(job + " 1", job + " 4"), checkpointLines());
+
+        failing.clear();
+        int before = artifactRequests.get();
+        assertTrue(backfill(1, 4).isEmpty());
+        // Only the failed build was fetched again
+        assertEquals(before + FILES.length, artifactRequests.get());
+        assertEquals(3, checkpointLines().size());
+    }
+
+    @Test
+    void testStreamingModeUploadsWithoutSaving() throws Exception {
+        properties.setProperty("DOWNLOAD_MODE", "stream");
+
+        assertTrue(backfill(4, 4).isEmpty());
+
+        assertTrue(count("SELECT COUNT(*) FROM REGRESSION_UPLOAD.TEST_RUN WHERE BUILD_NUMBER = 4") > 0);
+        assertFalse(Files.exists(saveDir.resolve("builds")));
+    }
+
+    @Test
+    void testParseRange() {
+        assertArrayEquals(new int[] {120, 150}, Backfill.parseRange(new String[] {"backfill", "120", "150"}));
+        assertArrayEquals(new int[] {120, Integer.MAX_VALUE}, Backfill.parseRange(new String[] {"backfill", "120"}));
+        assertThrows(IllegalArgumentException.class, () -> Backfill.parseRange(new String[] {"backfill"}));
+        assertThrows(IllegalArgumentException.class, () -> Backfill.parseRange(new String[] {"backfill", "150", "120"}));
+        assertThrows(IllegalArgumentException.class, () -> Backfill.parseRange(new String[] {"backfill", "x"}));
+    }
+}
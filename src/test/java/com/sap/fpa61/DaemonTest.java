@@ -0,0 +1,241 @@
+package com.sap.fpa61;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sap.fpa61.db.UploadDatabase;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// Runs the daemon against a local HTTP server standing in for Jenkins and an embedded H2 database
+class DaemonTest {
+
+    private static final String URL = "jdbc:h2:mem:daemon;DB_CLOSE_DELAY=-1";
+    private static final String[] FILES = {
+        "burn_in_analysis.xlsx", "regression_dolphin.xlsx", "regression_dolphin_burn_in.xlsx"
+    };
+    private static final String BUILD_PATH = "/job/pnr/lastSuccessfulBuild/";
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private Connection connection;
+    private String jenkins;
+    private volatile String latestBuild = "7";
+    private volatile boolean jenkinsDown = false;
+    private final AtomicInteger polls = new AtomicInteger();
+    private final AtomicInteger downloads = new AtomicInteger();
+
+    @TempDir
+    Path saveDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        connection = DriverManager.getConnection(URL);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.createContext("/", this::serve);
+        server.start();
+        jenkins = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.stop(0);
+        serverThreads.shutdownNow();
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    // The job's latest successful build is latestBuild, with the test workbooks
+    private void serve(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        byte[] body;
+        if (jenkinsDown || !path.startsWith(BUILD_PATH)) {
+            exchange.sendResponseHeaders(jenkinsDown ? 503 : 404, -1);
+            exchange.close();
+            return;
+        }
+        String build = latestBuild;
+        if (path.equals(BUILD_PATH + "api/json")) {
+            JSONObject json = new JSONObject().put("id", build);
+            if ("tree=id".equals(exchange.getRequestURI().getQuery())) {
+                polls.incrementAndGet();
+            } else {
+                JSONArray artifacts = new JSONArray();
+                for (String file : FILES) {
+                    artifacts.put(new JSONObject().put("fileName", file).put("relativePath", file));
+                }
+                json.put("fullDisplayName", "pnr #" + build).put("artifacts", artifacts);
+            }
+            body = json.toString().getBytes(StandardCharsets.UTF_8);
+        } else {
+            downloads.incrementAndGet();
+            body = Files.readAllBytes(Paths.get("src/test/resources/test-data",
+                    path.substring((BUILD_PATH + "artifact/").length())));
+        }
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private Properties config() {
+        Properties properties = new Properties();
+        properties.setProperty("DB_URL", URL);
+        properties.setProperty("JENKINS_API_TOKEN", "token");
+        properties.setProperty("SAVE_DIR", saveDir + "/");
+        properties.setProperty("JENKINS_URL", jenkins + BUILD_PATH + "api/json");
+        properties.setProperty("DOWNLOAD_BASE_URL", jenkins + BUILD_PATH + "artifact/");
+        properties.setProperty("DAEMON_POLL_SECONDS", "0.05");
+        properties.setProperty("DAEMON_MAX_BACKOFF_SECONDS", "0.2");
+        properties.setProperty("DAEMON_STATUS_PORT", "0");
+        return properties;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 20_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Condition not reached in time");
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    private static HttpResponse<String> get(Daemon daemon, String path) throws Exception {
+        return HttpClient.newHttpClient().send(HttpRequest.newBuilder(
+                URI.create("http://127.0.0.1:" + daemon.getStatusPort() + path)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static String uploadedBuild(Daemon daemon) {
+        return daemon.status().getJSONObject("jobs").getJSONObject(JobConfig.SINGLE_JOB).optString("uploadedBuild", null);
+    }
+
+    private List<Integer> uploadedBuildNumbers() throws Exception {
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(
+                "SELECT DISTINCT BUILD_NUMBER FROM REGRESSION_UPLOAD.TEST_RUN ORDER BY BUILD_NUMBER")) {
+            List<Integer> builds = new ArrayList<>();
+            while (rs.next()) {
+                builds.add(rs.getInt(1));
+            }
+            return builds;
+        }
+    }
+
+    @Test
+    void testUploadsOnlyWhenTheBuildChanges() throws Exception {
+        try (Daemon daemon = Daemon.fromConfig(config())) {
+            daemon.start();
+            await(() -> "7".equals(uploadedBuild(daemon)));
+            int downloaded = downloads.get();
+            int pollsAfterUpload = polls.get();
+            await(() -> polls.get() >= pollsAfterUpload + 3);
+            // Polling an unchanged build downloads nothing
+            assertEquals(downloaded, downloads.get());
+
+            HttpResponse<String> status = get(daemon, "/status");
+            assertEquals(200, status.statusCode());
+            JSONObject job = new JSONObject(status.body()).getJSONObject("jobs").getJSONObject(JobConfig.SINGLE_JOB);
+            assertEquals("7", job.getString("latestBuild"));
+            assertEquals(0, job.getInt("failures"));
+            assertEquals(200, get(daemon, "/health").statusCode());
+
+            String metrics = get(daemon, "/metrics").body();
+            assertTrue(metrics.contains("# TYPE pnr_artifact_download_bytes_total counter"));
+            assertTrue(metrics.contains("pnr_jenkins_api_seconds_count{code=\"200\"}"));
+            assertTrue(metrics.contains("pnr_db_batch_seconds_bucket{table=\"TEST_RESULT\",le=\"+Inf\"}"));
+            assertTrue(metrics.contains("pnr_db_round_trips_per_test_run_count"));
+
+            latestBuild = "8";
+            await(() -> "8".equals(uploadedBuild(daemon)));
+            assertTrue(downloads.get() > downloaded);
+        }
+        // Build 8 has the same runs as build 7, which are loaded already
+        assertEquals(List.of(7), uploadedBuildNumbers());
+        Properties state = new Properties();
+        try (var input = Files.newInputStream(saveDir.resolve(Daemon.DEFAULT_STATE_FILE))) {
+            state.load(input);
+        }
+        assertEquals("8", state.getProperty(JobConfig.SINGLE_JOB));
+    }
+
+    @Test
+    void testRestartSkipsTheUploadedBuild() throws Exception {
+        Files.writeString(saveDir.resolve(Daemon.DEFAULT_STATE_FILE), JobConfig.SINGLE_JOB + "=7\n");
+        try (Daemon daemon = Daemon.fromConfig(config())) {
+            daemon.start();
+            await(() -> polls.get() >= 3);
+            assertEquals("7", uploadedBuild(daemon));
+        }
+        assertEquals(0, downloads.get());
+        assertTrue(uploadedBuildNumbers().isEmpty());
+    }
+
+    @Test
+    void testFailingJenkinsBacksOffAndTurnsUnhealthy() throws Exception {
+        jenkinsDown = true;
+        try (Daemon daemon = Daemon.fromConfig(config())) {
+            daemon.start();
+            await(() -> daemon.status().getJSONObject("jobs").getJSONObject(JobConfig.SINGLE_JOB)
+                    .getInt("failures") >= Daemon.UNHEALTHY_FAILURES);
+            HttpResponse<String> health = get(daemon, "/health");
+            assertEquals(503, health.statusCode());
+            assertEquals("DOWN", health.body());
+
+            jenkinsDown = false;
+            await(() -> "7".equals(uploadedBuild(daemon)));
+            assertEquals(200, get(daemon, "/health").statusCode());
+        }
+    }
+
+    @Test
+    void testBackoffDoublesUpToTheMaximum() throws Exception {
+        Properties properties = config();
+        properties.setProperty("DAEMON_POLL_SECONDS", "10");
+        properties.setProperty("DAEMON_MAX_BACKOFF_SECONDS", "60");
+        properties.setProperty("DAEMON_JITTER", "0");
+        properties.setProperty("DAEMON_STATUS_PORT", "-1");
+        try (Daemon daemon = new Daemon(JobConfig.jobsOf(properties), properties, UploadDatabase.open(properties, 1), 1)) {
+            assertEquals(10_000, daemon.nextDelay(0));
+            assertEquals(20_000, daemon.nextDelay(1));
+            assertEquals(40_000, daemon.nextDelay(2));
+            assertEquals(60_000, daemon.nextDelay(3));
+            assertEquals(60_000, daemon.nextDelay(50));
+            assertEquals(-1, daemon.getStatusPort());
+        }
+    }
+}
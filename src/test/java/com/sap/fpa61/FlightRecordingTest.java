@@ -0,0 +1,133 @@
+package com.sap.fpa61;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sap.fpa61.db.UploadDatabase;
+import com.sap.fpa61.jenkins.JenkinsBuild;
+import com.sap.fpa61.jenkins.JenkinsJob;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+// Records a download and upload from a local HTTP server into an embedded H2 database and reads the events back
+class FlightRecordingTest {
+
+    private static final String URL = "jdbc:h2:mem:jfr;DB_CLOSE_DELAY=-1";
+    private static final String[] FILES = {
+        "burn_in_analysis.xlsx", "regression_dolphin.xlsx", "regression_dolphin_burn_in.xlsx"
+    };
+    private static final String BUILD_PATH = "/job/pnr/lastSuccessfulBuild/";
+
+    @TempDir
+    Path dir;
+
+    private void serve(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        byte[] body;
+        if (path.equals(BUILD_PATH + "api/json")) {
+            JSONArray artifacts = new JSONArray();
+            for (String file : FILES) {
+                artifacts.put(new JSONObject().put("fileName", file).put("relativePath", file));
+            }
+            body = new JSONObject().put("id", "3").put("fullDisplayName", "pnr #3").put("artifacts", artifacts)
+                    .toString().getBytes(StandardCharsets.UTF_8);
+        } else {
+            body = Files.readAllBytes(Paths.get("src/test/resources/test-data",
+                    path.substring((BUILD_PATH + "artifact/").length())));
+        }
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Test
+    void testFlagIsTakenOutOfTheArguments() {
+        String[] args = {"backfill", "--jfr=/tmp/run.jfr", "10"};
+
+        assertEquals(Paths.get("/tmp/run.jfr"), FlightRecording.requestedFile(args));
+        assertArrayEquals(new String[] {"backfill", "10"}, FlightRecording.withoutFlag(args));
+        assertTrue(FlightRecording.requestedFile(new String[] {"--jfr"}).toString().endsWith(".jfr"));
+        assertNull(FlightRecording.requestedFile(new String[] {"daemon"}));
+    }
+
+    @Test
+    void testRecordsThePhasesOfAnUpload() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::serve);
+        server.start();
+        Connection connection = DriverManager.getConnection(URL);
+        Path file = dir.resolve("run.jfr");
+        try {
+            Properties properties = new Properties();
+            properties.setProperty("DB_URL", URL);
+            properties.setProperty("JENKINS_API_TOKEN", "token");
+            properties.setProperty("SAVE_DIR", dir.resolve("save") + "/");
+            properties.setProperty("JENKINS_JOB_URL", "http://127.0.0.1:" + server.getAddress().getPort() + "/job/pnr/");
+
+            try (Recording recording = FlightRecording.start(file)) {
+                JobConfig job = new JobConfig(JobConfig.SINGLE_JOB, properties, 1);
+                try (UploadDatabase database = UploadDatabase.open(properties, 1);
+                     JenkinsBuild build = new JenkinsJob(properties).locateLastSuccessfulBuild()) {
+                    assertTrue(MultiJobRunner.upload(job, build, database));
+                }
+                recording.stop();
+            }
+        } finally {
+            server.stop(0);
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("DROP ALL OBJECTS");
+            }
+            connection.close();
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().startsWith("com.sap.fpa61."))
+                .toList();
+        Set<String> types = events.stream().map(event -> event.getEventType().getName()).collect(Collectors.toSet());
+        assertEquals(Set.of("com.sap.fpa61.ArtifactDownload", "com.sap.fpa61.JenkinsFetch", "com.sap.fpa61.SheetParse",
+                "com.sap.fpa61.ColumnDecode", "com.sap.fpa61.TestRunInsert", "com.sap.fpa61.BatchFlush",
+                "com.sap.fpa61.Ddl"), types);
+        for (RecordedEvent event : events) {
+            switch (event.getEventType().getName()) {
+                case "com.sap.fpa61.ArtifactDownload" -> {
+                    assertTrue(event.getLong("bytes") > 0);
+                    assertEquals(200, event.getInt("status"));
+                }
+                case "com.sap.fpa61.SheetParse" -> {
+                    assertTrue(List.of(FILES).contains(event.getString("file")));
+                    assertTrue(event.getInt("rows") > 0);
+                    assertTrue(event.getLong("cells") > 0);
+                }
+                case "com.sap.fpa61.BatchFlush" -> assertEquals("TEST_RESULT", event.getString("table"));
+                default -> {
+                }
+            }
+        }
+    }
+}
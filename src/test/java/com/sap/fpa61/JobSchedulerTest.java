@@ -0,0 +1,121 @@
+package com.sap.fpa61;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class JobSchedulerTest {
+
+    private JobScheduler scheduler;
+
+    @AfterEach
+    void tearDown() {
+        if (scheduler != null) {
+            scheduler.close();
+        }
+    }
+
+    @Test
+    void testJobsAreServedInTurn() throws Exception {
+        scheduler = new JobScheduler(1);
+        scheduler.addJob("a", 1);
+        scheduler.addJob("b", 1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        // Hold the only worker until everything is queued
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> first = scheduler.submit("a", () -> release.await(5, TimeUnit.SECONDS));
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            String name = "a" + i;
+            results.add(scheduler.submit("a", () -> {
+                order.add(name);
+                return name;
+            }));
+        }
+        results.add(scheduler.submit("b", () -> {
+            order.add("b1");
+            return "b1";
+        }));
+        assertEquals(4, scheduler.queued());
+
+        release.countDown();
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        for (CompletableFuture<String> result : results) {
+            result.get(5, TimeUnit.SECONDS);
+        }
+        // b does not wait for a's backlog
+        assertEquals(List.of("b1", "a1", "a2", "a3"), order);
+    }
+
+    @Test
+    void testJobLimitCapsItsConcurrentBuilds() throws Exception {
+        scheduler = new JobScheduler(4);
+        scheduler.addJob("a", 2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<CompletableFuture<Void>> results = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            results.add(scheduler.submit("a", () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(20);
+                running.decrementAndGet();
+                return null;
+            }));
+        }
+        for (CompletableFuture<Void> result : results) {
+            result.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(2, maxRunning.get());
+        // a future completes just before its worker is handed back
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (scheduler.running() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(0, scheduler.running());
+    }
+
+    @Test
+    void testFailureCompletesItsFutureOnly() throws Exception {
+        scheduler = new JobScheduler(2);
+        scheduler.addJob("a", 1);
+        CompletableFuture<String> failing = scheduler.submit("a", () -> {
+            throw new IllegalStateException("broken build");
+        });
+        CompletableFuture<String> next = scheduler.submit("a", () -> "ok");
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> failing.get(5, TimeUnit.SECONDS));
+        assertEquals("broken build", e.getCause().getMessage());
+        assertEquals("ok", next.get(5, TimeUnit.SECONDS));
+        assertThrows(IllegalArgumentException.class, () -> scheduler.submit("unknown", () -> "x"));
+    }
+
+    @Test
+    void testCloseCancelsWaitingBuilds() throws Exception {
+        scheduler = new JobScheduler(1);
+        scheduler.addJob("a", 1);
+        CountDownLatch started = new CountDownLatch(1);
+        scheduler.submit("a", () -> {
+            started.countDown();
+            Thread.sleep(10_000);
+            return null;
+        });
+        CompletableFuture<String> waiting = scheduler.submit("a", () -> "never");
+        started.await(5, TimeUnit.SECONDS);
+
+        scheduler.close();
+
+        assertTrue(waiting.isCancelled());
+        assertTrue(scheduler.submit("a", () -> "late").isCancelled());
+    }
+}
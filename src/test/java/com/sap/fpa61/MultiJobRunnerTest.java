@@ -0,0 +1,160 @@
+package com.sap.fpa61;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// Uploads the latest builds of two jobs served by a local HTTP server into an embedded H2 database
+class MultiJobRunnerTest {
+
+    private static final String URL = "jdbc:h2:mem:multijob;DB_CLOSE_DELAY=-1";
+    private static final String[] FILES = {
+        "burn_in_analysis.xlsx", "regression_dolphin.xlsx", "regression_dolphin_burn_in.xlsx"
+    };
+    private static final Pattern BUILD_PATH = Pattern.compile("/job/(\\w+)/lastSuccessfulBuild/(api/json|artifact/(.+))");
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private Connection connection;
+    private String jenkins;
+
+    @TempDir
+    Path saveDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        connection = DriverManager.getConnection(URL);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.createContext("/", this::serve);
+        server.start();
+        jenkins = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.stop(0);
+        serverThreads.shutdownNow();
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    // Jobs "x" (build 7) and "y" (build 9), both with the test workbooks
+    private void serve(HttpExchange exchange) throws IOException {
+        Matcher matcher = BUILD_PATH.matcher(exchange.getRequestURI().getPath());
+        if (!matcher.matches()) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        byte[] body;
+        if (matcher.group(3) == null) {
+            String job = matcher.group(1);
+            String number = job.equals("x") ? "7" : "9";
+            JSONArray artifacts = new JSONArray();
+            for (String file : FILES) {
+                artifacts.put(new JSONObject().put("fileName", file).put("relativePath", file));
+            }
+            body = new JSONObject().put("id", number).put("fullDisplayName", job + " #" + number)
+                    .put("artifacts", artifacts).toString().getBytes(StandardCharsets.UTF_8);
+        } else {
+            body = Files.readAllBytes(Paths.get("src/test/resources/test-data", matcher.group(3)));
+        }
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private Properties config() {
+        Properties properties = new Properties();
+        properties.setProperty("DB_URL", URL);
+        properties.setProperty("JENKINS_API_TOKEN", "token");
+        properties.setProperty("SAVE_DIR", saveDir + "/");
+        properties.setProperty("JOBS", "x, y");
+        properties.setProperty("JOBS_THREADS", "2");
+        properties.setProperty("JOB.x.JENKINS_URL", jenkins + "/job/x/lastSuccessfulBuild/api/json");
+        properties.setProperty("JOB.x.DOWNLOAD_BASE_URL", jenkins + "/job/x/lastSuccessfulBuild/artifact/");
+        properties.setProperty("JOB.y.JENKINS_JOB_URL", jenkins + "/job/y");
+        properties.setProperty("JOB.y.JENKINS_JOB_NAME", "landscape-y");
+        return properties;
+    }
+
+    @Test
+    void testJobConfigLaysJobKeysOverTopLevel() {
+        Properties properties = config();
+        properties.setProperty("JENKINS_URL", "https://jenkins/job/single/lastSuccessfulBuild/api/json");
+        properties.setProperty("UPLOAD_FILE_THREADS", "2");
+        properties.setProperty("JOB.y.UPLOAD_FILE_THREADS", "1");
+        properties.setProperty("JOB.y.MAX_BUILDS", "3");
+
+        List<JobConfig> jobs = JobConfig.fromProperties(properties);
+
+        assertEquals(2, jobs.size());
+        JobConfig x = jobs.get(0);
+        JobConfig y = jobs.get(1);
+        assertEquals("x", x.name);
+        assertEquals("2", x.properties.getProperty("UPLOAD_FILE_THREADS"));
+        assertEquals("1", y.properties.getProperty("UPLOAD_FILE_THREADS"));
+        assertEquals("token", y.properties.getProperty("JENKINS_API_TOKEN"));
+        // The single-job URL is not inherited
+        assertNull(y.properties.getProperty("JENKINS_URL"));
+        assertEquals(Paths.get(saveDir.toString(), "jobs", "y") + "/", y.properties.getProperty("SAVE_DIR"));
+        assertEquals(JobConfig.DEFAULT_MAX_BUILDS, x.maxBuilds);
+        assertEquals(3, y.maxBuilds);
+        assertFalse(JobConfig.isMultiJob(new Properties()));
+    }
+
+    @Test
+    void testUploadsLatestBuildOfEveryJobOverSharedPool() throws Exception {
+        List<String> failed;
+        try (MultiJobRunner runner = MultiJobRunner.fromConfig(config())) {
+            failed = runner.runLatestBuilds();
+        }
+
+        assertTrue(failed.isEmpty());
+        List<String> jobs = new ArrayList<>();
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(
+                "SELECT JENKINS_JOB_NAME, MIN(BUILD_NUMBER), MAX(BUILD_NUMBER) FROM REGRESSION_UPLOAD.TEST_RUN "
+                        + "GROUP BY JENKINS_JOB_NAME ORDER BY JENKINS_JOB_NAME")) {
+            while (rs.next()) {
+                jobs.add(rs.getString(1) + " #" + rs.getInt(2) + "-" + rs.getInt(3));
+            }
+        }
+        assertEquals(List.of("landscape-y #9-9", "x #7-7"), jobs);
+        assertTrue(Files.exists(saveDir.resolve("jobs").resolve("x").resolve(FILES[0])));
+        assertTrue(Files.exists(saveDir.resolve("jobs").resolve("y").resolve(FILES[0])));
+    }
+}
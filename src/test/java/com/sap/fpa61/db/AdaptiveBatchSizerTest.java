@@ -0,0 +1,76 @@
+package com.sap.fpa61.db;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class AdaptiveBatchSizerTest {
+
+    // Feeds one measurement window at the current size, taking the given time per row
+    private void recordWindow(AdaptiveBatchSizer sizer, long nanosPerRow) {
+        for (int i = 0; i < AdaptiveBatchSizer.WINDOW; i++) {
+            int rows = sizer.batchSize();
+            sizer.record(rows, rows * nanosPerRow);
+        }
+    }
+
+    // Models a fixed round-trip cost per batch plus a cost per row
+    private long nanosPerRow(int batchSize, long roundTripNanos, long rowNanos) {
+        return roundTripNanos / batchSize + rowNanos;
+    }
+
+    @Test
+    void testGrowsWhileThroughputImprovesAndSettles() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(100, 10000);
+        // 40 ms per round trip and 0.2 ms per row: doubling beyond 3200 rows gains less than 5%
+        for (int i = 0; i < 10; i++) {
+            recordWindow(sizer, nanosPerRow(sizer.batchSize(), 40_000_000L, 200_000L));
+        }
+        assertEquals(3200, sizer.batchSize());
+        assertTrue(sizer.summary().contains("settled at " + sizer.batchSize()));
+    }
+
+    @Test
+    void testFallsBackWhenBiggerBatchIsSlower() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(100, 10000);
+        recordWindow(sizer, 1000);
+        assertEquals(200, sizer.batchSize());
+        recordWindow(sizer, 2000);
+        assertEquals(100, sizer.batchSize());
+        // Settled: further windows at the same rate keep the size
+        recordWindow(sizer, 1000);
+        assertEquals(100, sizer.batchSize());
+    }
+
+    @Test
+    void testStaysWithinLimits() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(100, 300);
+        for (int i = 0; i < 5; i++) {
+            // Every bigger batch is much faster per row
+            recordWindow(sizer, 1_000_000L / sizer.batchSize());
+        }
+        assertEquals(300, sizer.batchSize());
+    }
+
+    @Test
+    void testIgnoresPartialBatches() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(100, 1000);
+        for (int i = 0; i < 10; i++) {
+            sizer.record(7, 1_000_000L);
+        }
+        assertEquals(100, sizer.batchSize());
+        assertTrue(sizer.summary().contains("still tuning at 100"));
+    }
+
+    @Test
+    void testRetunesAfterLargeThroughputDrop() {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(100, 10000);
+        recordWindow(sizer, 1000);
+        recordWindow(sizer, 2000);
+        assertEquals(100, sizer.batchSize());
+
+        recordWindow(sizer, 10000);
+        recordWindow(sizer, 1000);
+        assertEquals(200, sizer.batchSize());
+    }
+}
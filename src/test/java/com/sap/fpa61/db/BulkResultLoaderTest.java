@@ -0,0 +1,133 @@
+package com.sap.fpa61.db;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.json.JSONObject;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Runs the bulk load path against an embedded H2 database, which reads the staged CSV with CSVREAD
+class BulkResultLoaderTest {
+
+    private Connection connection;
+
+    @TempDir
+    Path stagingDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        connection = DriverManager.getConnection("jdbc:h2:mem:bulk;DB_CLOSE_DELAY=-1");
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE TEST_RUN (RUN_ID BIGINT NOT NULL PRIMARY KEY)");
+            stmt.execute("CREATE TABLE TEST_RESULT (RESULT_ID BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                    + "RUN_ID BIGINT NOT NULL REFERENCES TEST_RUN(RUN_ID), ENTITY_NAME VARCHAR(1024) NOT NULL, DURATION_MS DOUBLE NOT NULL)");
+            stmt.execute("CREATE TABLE TEST_RESULT_STAGING (LOAD_ID VARCHAR(64) NOT NULL, RUN_ID BIGINT NOT NULL, "
+                    + "ENTITY_NAME VARCHAR(1024) NOT NULL, DURATION_MS DOUBLE NOT NULL)");
+            stmt.execute("INSERT INTO TEST_RUN VALUES (1000), (1001)");
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    private List<String> selectResults() throws SQLException {
+        List<String> rows = new ArrayList<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT RUN_ID, ENTITY_NAME, DURATION_MS FROM TEST_RESULT ORDER BY RESULT_ID")) {
+            while (rs.next()) {
+                rows.add(rs.getLong(1) + " " + rs.getString(2) + " " + rs.getDouble(3));
+            }
+        }
+        return rows;
+    }
+
+    private int countRows(String table) throws SQLException {
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    @Test
+    void testLoad_importsStagedRowsIntoTestResult() throws Exception {
+        BulkResultLoader loader = new BulkResultLoader(SqlDialect.H2, stagingDir, stagingDir.toString());
+        List<HanaDataUploader.TestResultBatch> batch = new ArrayList<>();
+        batch.add(new HanaDataUploader.TestResultBatch(1000, "GET /api/a,b", 1.5));
+        batch.add(new HanaDataUploader.TestResultBatch(1001, "say \"hi\"", 2.0E10));
+        batch.add(new HanaDataUploader.TestResultBatch(1001, "two\nlines,\r\n\"quoted\"", 0.5));
+        loader.add(batch);
+        loader.add(List.of(new HanaDataUploader.TestResultBatch(1001, "eC", 3.0)));
+
+        assertEquals(4, loader.load(connection, connection));
+
+        assertEquals(List.of("1000 GET /api/a,b 1.5", "1001 say \"hi\" 2.0E10", "1001 two\nlines,\r\n\"quoted\" 0.5",
+                "1001 eC 3.0"), selectResults());
+        assertEquals(0, countRows("TEST_RESULT_STAGING"));
+        try (var files = Files.list(stagingDir)) {
+            assertEquals(0, files.count());
+        }
+        // Nothing staged any more
+        assertEquals(0, loader.load(connection, connection));
+    }
+
+    @Test
+    void testLoad_failsForResultsWithoutRun() throws Exception {
+        BulkResultLoader loader = new BulkResultLoader(SqlDialect.H2, stagingDir, stagingDir.toString());
+        loader.add(List.of(new HanaDataUploader.TestResultBatch(1000, "eA", 1.0),
+                new HanaDataUploader.TestResultBatch(4242, "eB", 1.0)));
+
+        SQLException e = assertThrows(SQLException.class, () -> loader.load(connection, connection));
+        assertTrue(e.getMessage().contains("1 of 2"));
+        assertEquals(0, countRows("TEST_RESULT_STAGING"));
+    }
+
+    @Test
+    void testBulkMode_needsNonAtomicCommitMode() {
+        Properties props = new Properties();
+        props.setProperty("UPLOAD_LOAD_MODE", "bulk");
+        assertEquals(UploadOptions.LoadMode.BATCH, UploadOptions.fromProperties(props).loadMode);
+
+        props.setProperty("UPLOAD_COMMIT", "sheet");
+        assertEquals(UploadOptions.LoadMode.BATCH, UploadOptions.fromProperties(props).loadMode);
+
+        props.setProperty("UPLOAD_COMMIT", "rows");
+        assertEquals(UploadOptions.LoadMode.BULK, UploadOptions.fromProperties(props).loadMode);
+    }
+
+    @Test
+    void testUploaderBulkMode_loadsResultsAtSheetEnd() throws Exception {
+        JSONObject json = new JSONObject();
+        json.put("fullDisplayName", "TestJob #42");
+        json.put("id", "42");
+        HanaDataUploader uploader = new HanaDataUploader(json);
+        uploader.connection = connection;
+        uploader.dialect = SqlDialect.H2;
+        uploader.options.loadMode = UploadOptions.LoadMode.BULK;
+        uploader.options.bulkStagingDir = stagingDir.toString();
+
+        uploader.insertTestResultsBatch(List.of(new HanaDataUploader.TestResultBatch(1000, "eA", 4.0)));
+        assertEquals(0, countRows("TEST_RESULT"));
+
+        uploader.sheetFinished();
+        assertEquals(List.of("1000 eA 4.0"), selectResults());
+    }
+}
@@ -0,0 +1,135 @@
+package com.sap.fpa61.db;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+// Exercises the pool against an embedded H2 database
+class ConnectionPoolTest {
+
+    private static final String URL = "jdbc:h2:mem:pool;DB_CLOSE_DELAY=-1";
+
+    private Connection admin;
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        admin = DriverManager.getConnection(URL);
+        try (Statement stmt = admin.createStatement()) {
+            stmt.execute("CREATE SCHEMA POOLED");
+            stmt.execute("CREATE TABLE POOLED.T (ID INT)");
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (pool != null) {
+            pool.close();
+        }
+        try (Statement stmt = admin.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        admin.close();
+    }
+
+    private ConnectionPool pool(int minSize, int maxSize, long timeoutMillis, long leakMillis) {
+        pool = new ConnectionPool(URL, new Properties(), "SET SCHEMA POOLED", minSize, maxSize, timeoutMillis, leakMillis);
+        return pool;
+    }
+
+    private static Connection physical(Connection pooled) throws SQLException {
+        return pooled.unwrap(Connection.class);
+    }
+
+    @Test
+    void testWarmUpOpensMinimumOnSchema() throws Exception {
+        pool(2, 4, 1000, 60_000).warmUp();
+        assertEquals(2, pool.idleCount());
+
+        try (Connection connection = pool.borrow(); Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT CURRENT_SCHEMA")) {
+            rs.next();
+            assertEquals("POOLED", rs.getString(1));
+            assertEquals(1, pool.inUse());
+        }
+        assertEquals(0, pool.inUse());
+        assertEquals(2, pool.idleCount());
+    }
+
+    @Test
+    void testReturnedConnectionIsReusedAndReset() throws Exception {
+        pool(0, 2, 1000, 60_000);
+        Connection first = pool.borrow();
+        Connection physical = physical(first);
+        first.setAutoCommit(false);
+        try (Statement stmt = first.createStatement()) {
+            stmt.execute("INSERT INTO T VALUES (1)");
+        }
+        first.close();
+        assertTrue(first.isClosed());
+        assertThrows(SQLException.class, first::createStatement);
+
+        try (Connection second = pool.borrow()) {
+            assertSame(physical, physical(second));
+            // The uncommitted insert was rolled back and auto-commit restored
+            assertTrue(second.getAutoCommit());
+            try (Statement stmt = second.createStatement(); ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM T")) {
+                rs.next();
+                assertEquals(0, rs.getInt(1));
+            }
+        }
+    }
+
+    @Test
+    void testBrokenConnectionIsReplacedOnBorrow() throws Exception {
+        pool(1, 1, 1000, 60_000).warmUp();
+        Connection physical;
+        try (Connection connection = pool.borrow()) {
+            physical = physical(connection);
+        }
+        physical.close();
+
+        try (Connection connection = pool.borrow()) {
+            assertNotSame(physical, physical(connection));
+            assertFalse(connection.isClosed());
+        }
+        assertTrue(pool.summary().contains("1 replaced"));
+    }
+
+    @Test
+    void testBorrowWaitsForMaxSizeAndTimesOut() throws Exception {
+        pool(0, 1, 200, 60_000);
+        try (Connection held = pool.borrow()) {
+            SQLException e = assertThrows(SQLException.class, pool::borrow);
+            assertTrue(e.getMessage().startsWith("Timed out"));
+        }
+        // Available again once returned
+        pool.borrow().close();
+    }
+
+    @Test
+    void testHeldConnectionsAreReportedAsLeaks() throws Exception {
+        pool(0, 2, 1000, 1);
+        Connection leaked = pool.borrow();
+        Thread.sleep(5);
+
+        assertEquals(1, pool.reportLeaks());
+        pool.close();
+        assertTrue(pool.summary().endsWith("1 possible leaks"));
+        // Closing the pool closes connections that were never returned
+        assertTrue(leaked.isClosed());
+    }
+}
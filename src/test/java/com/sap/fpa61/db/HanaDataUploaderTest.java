@@ -10,7 +10,13 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellType;
@@ -20,13 +26,16 @@ import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.json.JSONObject;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.endsWith;
@@ -36,7 +45,11 @@ import org.mockito.Mock;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -76,7 +89,16 @@ class HanaDataUploaderTest {
     @Test
     void testSplitSqlStatements() {
         String script = "CREATE TABLE X; INSERT INTO X VALUES ('a;b'); COMMIT;";
-        assertEquals(3, uploader.splitSqlStatements(script).size());
+        assertEquals(3, HanaDataUploader.splitSqlStatements(script).size());
+    }
+
+    @Test
+    void testSplitSqlStatements_keepsDoBlockTogether() {
+        String script = "-- comment\nDO BEGIN\n  DECLARE x INT;\n  SELECT 1 INTO x FROM DUMMY;\nEND;\n\nCREATE TABLE Y (A INT);";
+        List<String> statements = HanaDataUploader.splitSqlStatements(script);
+        assertEquals(2, statements.size());
+        assertTrue(statements.get(0).trim().endsWith("END;"));
+        assertEquals("CREATE TABLE Y (A INT);", statements.get(1).trim());
     }
 
     @Test
@@ -135,17 +157,78 @@ class HanaDataUploaderTest {
         when(selectResultSet.next()).thenReturn(false);
 
         PreparedStatement insertStmt = mock(PreparedStatement.class);
-        when(mockConnection.prepareStatement("INSERT INTO TEST_SCENARIO (NAME, ENTITY_TYPE) VALUES (?, ?)"))
+        when(mockConnection.prepareStatement("INSERT INTO TEST_SCENARIO (SCENARIO_ID, NAME, ENTITY_TYPE) VALUES (?, ?, ?)"))
                 .thenReturn(insertStmt);
 
         Statement idStmt = mock(Statement.class);
-        ResultSet identityResultSet = mock(ResultSet.class);
+        ResultSet sequenceResultSet = mock(ResultSet.class);
         when(mockConnection.createStatement()).thenReturn(idStmt);
-        when(idStmt.executeQuery("SELECT CURRENT_IDENTITY_VALUE() FROM DUMMY")).thenReturn(identityResultSet);
-        when(identityResultSet.next()).thenReturn(true);
-        when(identityResultSet.getInt(1)).thenReturn(9);
+        when(idStmt.executeQuery("SELECT TEST_SCENARIO_ID_SEQ.NEXTVAL FROM DUMMY")).thenReturn(sequenceResultSet);
+        when(sequenceResultSet.next()).thenReturn(true);
+        when(sequenceResultSet.getLong(1)).thenReturn(9L);
 
         assertEquals(9, uploader.getOrCreateScenario("s2", "endpoint"));
+        verify(insertStmt).setInt(1, 9);
+        verify(insertStmt).setString(2, "s2");
+    }
+
+    @Test
+    void testGetOrCreateScenario_preloadedCacheSkipsQueries() throws SQLException {
+        when(mockConnection.createStatement()).thenReturn(mockStatement);
+        when(mockStatement.executeQuery("SELECT SCENARIO_ID, NAME FROM TEST_SCENARIO")).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true, true, false);
+        when(mockResultSet.getInt(1)).thenReturn(1, 2);
+        when(mockResultSet.getString(2)).thenReturn("burn_in", "results_median");
+
+        uploader.scenarioCache.load(mockConnection);
+
+        assertEquals(1, uploader.getOrCreateScenario("burn_in", "metric"));
+        assertEquals(2, uploader.getOrCreateScenario("results_median", "metric"));
+        verify(mockConnection, never()).prepareStatement(anyString());
+    }
+
+    @Test
+    void testGetOrCreateScenario_concurrentMissesInsertOnce() throws Exception {
+        doReturn(7).when(uploader).lookupOrInsertScenario("s3", "metric");
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> ids = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                ids.add(executor.submit(() -> uploader.getOrCreateScenario("s3", "metric")));
+            }
+            for (Future<Integer> id : ids) {
+                assertEquals(7, id.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        verify(uploader, times(1)).lookupOrInsertScenario("s3", "metric");
+    }
+
+    @Test
+    void testGetOrCreateScenario_insertRaceRereadsExistingId() throws SQLException {
+        PreparedStatement checkStmt = mock(PreparedStatement.class);
+        ResultSet selectResultSet = mock(ResultSet.class);
+        when(mockConnection.prepareStatement("SELECT SCENARIO_ID FROM TEST_SCENARIO WHERE NAME = ?"))
+                .thenReturn(checkStmt);
+        when(checkStmt.executeQuery()).thenReturn(selectResultSet);
+        when(selectResultSet.next()).thenReturn(false, true);
+        when(selectResultSet.getInt(1)).thenReturn(11);
+
+        Statement idStmt = mock(Statement.class);
+        ResultSet sequenceResultSet = mock(ResultSet.class);
+        when(mockConnection.createStatement()).thenReturn(idStmt);
+        when(idStmt.executeQuery("SELECT TEST_SCENARIO_ID_SEQ.NEXTVAL FROM DUMMY")).thenReturn(sequenceResultSet);
+        when(sequenceResultSet.next()).thenReturn(true);
+        when(sequenceResultSet.getLong(1)).thenReturn(20L);
+
+        PreparedStatement insertStmt = mock(PreparedStatement.class);
+        when(mockConnection.prepareStatement("INSERT INTO TEST_SCENARIO (SCENARIO_ID, NAME, ENTITY_TYPE) VALUES (?, ?, ?)"))
+                .thenReturn(insertStmt);
+        when(insertStmt.executeUpdate()).thenThrow(new SQLException("unique constraint violated", "23000", 301));
+
+        assertEquals(11, uploader.getOrCreateScenario("s4", "metric"));
     }
 
     @Test
@@ -155,14 +238,242 @@ class HanaDataUploaderTest {
 
         Statement idStmt = mock(Statement.class);
         when(mockConnection.createStatement()).thenReturn(idStmt);
-        when(idStmt.executeQuery("SELECT CURRENT_IDENTITY_VALUE() FROM DUMMY")).thenReturn(mockResultSet);
+        when(idStmt.executeQuery("SELECT TEST_RUN_ID_SEQ.NEXTVAL FROM DUMMY")).thenReturn(mockResultSet);
         when(mockResultSet.next()).thenReturn(true);
-        when(mockResultSet.getInt(1)).thenReturn(15);
+        when(mockResultSet.getLong(1)).thenReturn(15L);
 
         doReturn(3).when(uploader).getOrCreateScenario(anyString(), anyString());
 
         assertEquals(15, uploader.insertTestRun("burn_in", "2025-04-24", "d", "i"));
-        verify(pstm).setString(6, "TestJob");
+        uploader.flushTestRuns();
+        verify(pstm).setInt(1, 15);
+        verify(pstm).setString(7, "TestJob");
+        verify(pstm).executeBatch();
+    }
+
+    @Test
+    void testInsertTestRun_idsComeFromOneBlockAndRunsPrecedeResults() throws Exception {
+        Statement idStmt = mock(Statement.class);
+        when(mockConnection.createStatement()).thenReturn(idStmt);
+        when(idStmt.executeQuery("SELECT TEST_RUN_ID_SEQ.NEXTVAL FROM DUMMY")).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true);
+        when(mockResultSet.getLong(1)).thenReturn(2000L);
+        doReturn(3).when(uploader).getOrCreateScenario(anyString(), anyString());
+
+        PreparedStatement runStmt = mock(PreparedStatement.class);
+        PreparedStatement resultStmt = mock(PreparedStatement.class);
+        when(mockConnection.prepareStatement(startsWith("INSERT INTO TEST_RUN"))).thenReturn(runStmt);
+        when(mockConnection.prepareStatement(startsWith("INSERT INTO TEST_RESULT"))).thenReturn(resultStmt);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(2000 + i, uploader.insertTestRun("burn_in", "2025-04-2" + i, "d", "i"));
+        }
+        // Nothing is written until results referencing the runs arrive
+        verify(runStmt, never()).executeBatch();
+
+        List<HanaDataUploader.TestResultBatch> batch = new ArrayList<>();
+        batch.add(new HanaDataUploader.TestResultBatch(2000, "e1", 1.0));
+        uploader.insertTestResultsBatch(batch);
+
+        InOrder order = inOrder(runStmt, resultStmt);
+        order.verify(runStmt).executeBatch();
+        order.verify(resultStmt).executeBatch();
+        verify(runStmt, times(3)).addBatch();
+        // One sequence call reserved the whole block
+        verify(idStmt, times(1)).executeQuery(anyString());
+    }
+
+    @Test
+    void testInsertTestRun_skipsRunsAlreadyLoaded() throws Exception {
+        PreparedStatement indexStmt = mock(PreparedStatement.class);
+        when(mockConnection.prepareStatement(startsWith("SELECT SCENARIO_ID, JOB_DATE"))).thenReturn(indexStmt);
+        when(indexStmt.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true, false);
+        when(mockResultSet.getInt(1)).thenReturn(3);
+        when(mockResultSet.getDate(2)).thenReturn(Date.valueOf("2025-04-24"));
+        when(mockResultSet.getString(3)).thenReturn("d");
+        when(mockResultSet.getString(4)).thenReturn("i");
+        when(mockResultSet.getString(6)).thenReturn("burn_in_analysis.xlsx");
+        when(mockResultSet.getInt(7)).thenReturn(1);
+        when(mockResultSet.getBoolean(8)).thenReturn(true);
+        uploader.loadedRuns.load(mockConnection, uploader.jobName());
+        verify(indexStmt).setString(1, "TestJob");
+        uploader.currentFile = "burn_in_analysis.xlsx";
+
+        doReturn(3).when(uploader).getOrCreateScenario(anyString(), anyString());
+        Statement idStmt = mock(Statement.class);
+        ResultSet sequenceResultSet = mock(ResultSet.class);
+        when(mockConnection.createStatement()).thenReturn(idStmt);
+        when(idStmt.executeQuery("SELECT TEST_RUN_ID_SEQ.NEXTVAL FROM DUMMY")).thenReturn(sequenceResultSet);
+        when(sequenceResultSet.next()).thenReturn(true);
+        when(sequenceResultSet.getLong(1)).thenReturn(3000L);
+
+        // Same natural key as the loaded run (the date format and padding do not matter)
+        assertEquals(HanaDataUploader.RUN_ALREADY_LOADED, uploader.insertTestRun("burn_in", "Apr 24 2025", " d ", "i"));
+        // A new date column is ingested, and so is a second occurrence of a column in the same sheet
+        assertEquals(3000, uploader.insertTestRun("burn_in", "2025-04-25", "d", "i"));
+        assertEquals(3001, uploader.insertTestRun("burn_in", "2025-04-24", "d", "i"));
+        // The same column of another workbook is not the loaded run
+        uploader.currentFile = "regression_dolphin.xlsx";
+        assertEquals(3002, uploader.insertTestRun("burn_in", "2025-04-24", "d", "i"));
+    }
+
+    @Test
+    void testInsertTestRun_skipsRunsLoadedBeforeSourceFileUnlessReloading() throws Exception {
+        PreparedStatement indexStmt = mock(PreparedStatement.class);
+        when(mockConnection.prepareStatement(startsWith("SELECT SCENARIO_ID, JOB_DATE"))).thenReturn(indexStmt);
+        when(indexStmt.executeQuery()).thenReturn(mockResultSet);
+        // Two runs of the column without SOURCE_FILE, as loaded before schema version 4
+        when(mockResultSet.next()).thenReturn(true, true, false);
+        when(mockResultSet.getInt(1)).thenReturn(3);
+        when(mockResultSet.getDate(2)).thenReturn(Date.valueOf("2025-04-24"));
+        when(mockResultSet.getString(3)).thenReturn("d");
+        when(mockResultSet.getString(4)).thenReturn("i");
+        when(mockResultSet.getInt(5)).thenReturn(17, 18);
+        uploader.loadedRuns.load(mockConnection, uploader.jobName());
+
+        doReturn(3).when(uploader).getOrCreateScenario(anyString(), anyString());
+        Statement idStmt = mock(Statement.class);
+        ResultSet sequenceResultSet = mock(ResultSet.class);
+        when(mockConnection.createStatement()).thenReturn(idStmt);
+        when(idStmt.executeQuery("SELECT TEST_RUN_ID_SEQ.NEXTVAL FROM DUMMY")).thenReturn(sequenceResultSet);
+        when(sequenceResultSet.next()).thenReturn(true);
+        when(sequenceResultSet.getLong(1)).thenReturn(3000L);
+        PreparedStatement deleteRun = mock(PreparedStatement.class);
+        when(mockConnection.prepareStatement("DELETE FROM TEST_RESULT WHERE RUN_ID = ?")).thenReturn(mock(PreparedStatement.class));
+        when(mockConnection.prepareStatement("DELETE FROM TEST_RUN WHERE RUN_ID = ?")).thenReturn(deleteRun);
+        when(mockConnection.prepareStatement(startsWith("INSERT INTO TEST_RUN"))).thenReturn(mock(PreparedStatement.class));
+        uploader.currentFile = "regression_dolphin.xlsx";
+
+        assertEquals(HanaDataUploader.RUN_ALREADY_LOADED, uploader.insertTestRun("burn_in", "2025-04-24", "d", "i"));
+
+        // A forced reload replaces both of them with the first column, the second column only adds its run
+        uploader.options.skipLoadedRuns = false;
+        assertEquals(3000, uploader.insertTestRun("burn_in", "2025-04-24", "d", "i"));
+        assertEquals(3001, uploader.insertTestRun("burn_in", "2025-04-24", "d", "i"));
+        uploader.flushTestRuns();
+        verify(deleteRun).setInt(1, 17);
+        verify(deleteRun).setInt(1, 18);
+        verify(deleteRun, times(2)).addBatch();
+    }
+
+    @Test
+    void testInsertTestRun_replacesIncompleteRuns() throws Exception {
+        PreparedStatement indexStmt = mock(PreparedStatement.class);
+        when(mockConnection.prepareStatement(startsWith("SELECT SCENARIO_ID, JOB_DATE"))).thenReturn(indexStmt);
+        when(indexStmt.executeQuery()).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true, false);
+        when(mockResultSet.getInt(1)).thenReturn(3);
+        when(mockResultSet.getDate(2)).thenReturn(Date.valueOf("2025-04-24"));
+        when(mockResultSet.getString(3)).thenReturn("d");
+        when(mockResultSet.getString(4)).thenReturn("i");
+        when(mockResultSet.getInt(5)).thenReturn(17);
+        // Left with LOADED = FALSE by an upload that failed before the end of the sheet
+        when(mockResultSet.getString(6)).thenReturn("burn_in_analysis.xlsx");
+        when(mockResultSet.getInt(7)).thenReturn(1);
+        when(mockResultSet.getBoolean(8)).thenReturn(false);
+        uploader.loadedRuns.load(mockConnection, uploader.jobName());
+        uploader.currentFile = "burn_in_analysis.xlsx";
+
+        doReturn(3).when(uploader).getOrCreateScenario(anyString(), anyString());
+        Statement idStmt = mock(Statement.class);
+        ResultSet sequenceResultSet = mock(ResultSet.class);
+        when(mockConnection.createStatement()).thenReturn(idStmt);
+        when(idStmt.executeQuery("SELECT TEST_RUN_ID_SEQ.NEXTVAL FROM DUMMY")).thenReturn(sequenceResultSet);
+        when(sequenceResultSet.next()).thenReturn(true);
+        when(sequenceResultSet.getLong(1)).thenReturn(3000L);
+        PreparedStatement deleteResults = mock(PreparedStatement.class);
+        PreparedStatement deleteRun = mock(PreparedStatement.class);
+        when(mockConnection.prepareStatement("DELETE FROM TEST_RESULT WHERE RUN_ID = ?")).thenReturn(deleteResults);
+        when(mockConnection.prepareStatement("DELETE FROM TEST_RUN WHERE RUN_ID = ?")).thenReturn(deleteRun);
+        when(mockConnection.prepareStatement(startsWith("INSERT INTO TEST_RUN"))).thenReturn(mock(PreparedStatement.class));
+
+        assertEquals(3000, uploader.insertTestRun("burn_in", "2025-04-24", "d", "i"));
+        uploader.flushTestRuns();
+
+        InOrder order = inOrder(deleteResults, deleteRun);
+        order.verify(deleteResults).setInt(1, 17);
+        order.verify(deleteResults).executeBatch();
+        order.verify(deleteRun).setInt(1, 17);
+        order.verify(deleteRun).executeBatch();
+    }
+
+    @Test
+    void testRollbackTransaction_keepsRunsCommittedByAnotherWriter() throws Exception {
+        doReturn(3).when(uploader).getOrCreateScenario(anyString(), anyString());
+        Statement idStmt = mock(Statement.class);
+        when(mockConnection.createStatement()).thenReturn(idStmt);
+        when(idStmt.executeQuery("SELECT TEST_RUN_ID_SEQ.NEXTVAL FROM DUMMY")).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true);
+        when(mockResultSet.getLong(1)).thenReturn(3000L);
+
+        uploader.beginTransaction();
+        assertEquals(3000, uploader.insertTestRun("burn_in", "2025-04-25", "d", "i"));
+        // A pipeline writer writes and commits the run before the file fails
+        HanaDataUploader writer = new HanaDataUploader(uploader, mock(Connection.class));
+        writer.beginTransaction();
+        writer.queueTestRuns(List.of(new HanaDataUploader.TestRunBatch(3000, 3, Date.valueOf("2025-04-25"), "d", "i",
+                "42", uploader.jobName(), null, 1)));
+        writer.commitTransaction();
+        uploader.rollbackTransaction();
+
+        // The committed run keeps its KEY_SEQ, so the column does not collide with it
+        assertEquals(3001, uploader.insertTestRun("burn_in", "2025-04-25", "d", "i"));
+    }
+
+    @Test
+    void testRollbackTransaction_releasesClaimedRuns() throws Exception {
+        doReturn(3).when(uploader).getOrCreateScenario(anyString(), anyString());
+        Statement idStmt = mock(Statement.class);
+        when(mockConnection.createStatement()).thenReturn(idStmt);
+        when(idStmt.executeQuery("SELECT TEST_RUN_ID_SEQ.NEXTVAL FROM DUMMY")).thenReturn(mockResultSet);
+        when(mockResultSet.next()).thenReturn(true);
+        when(mockResultSet.getLong(1)).thenReturn(3000L);
+
+        uploader.beginTransaction();
+        assertEquals(3000, uploader.insertTestRun("burn_in", "2025-04-25", "d", "i"));
+        uploader.rollbackTransaction();
+
+        // The rolled back column is ingested again by the next attempt
+        assertEquals(3001, uploader.insertTestRun("burn_in", "2025-04-25", "d", "i"));
+    }
+
+    @Test
+    void testProcessBurnInAnalysis_skipsLoadedColumns() throws Exception {
+        Path file = tempDir.resolve("burn_in_analysis.xlsx");
+        try (Workbook wb = new XSSFWorkbook()) {
+            Sheet sheet = wb.createSheet("results");
+            Row h = sheet.createRow(0);
+            h.createCell(1).setCellValue("2025-04-24");
+            h.createCell(2).setCellValue("2025-04-25");
+            Row deployments = sheet.createRow(1);
+            deployments.createCell(1).setCellValue("Deployment: v1");
+            deployments.createCell(2).setCellValue("Deployment: v2");
+            Row images = sheet.createRow(2);
+            images.createCell(1).setCellValue("Image: img1");
+            images.createCell(2).setCellValue("Image: img2");
+            Row data = sheet.createRow(5);
+            data.createCell(0).setCellValue("mA");
+            data.createCell(1).setCellValue(11.0);
+            data.createCell(2).setCellValue(12.0);
+            try (OutputStream os = Files.newOutputStream(file)) {
+                wb.write(os);
+            }
+        }
+
+        doReturn(HanaDataUploader.RUN_ALREADY_LOADED).when(uploader).insertTestRun("burn_in", "2025-04-24", "v1", "img1");
+        doReturn(77).when(uploader).insertTestRun("burn_in", "2025-04-25", "v2", "img2");
+        doNothing().when(uploader).insertTestResultsBatch(any());
+
+        uploader.processBurnInAnalysis(file.toString());
+
+        ArgumentCaptor<List<HanaDataUploader.TestResultBatch>> batchCaptor
+                = ArgumentCaptor.forClass((Class) List.class);
+        verify(uploader).insertTestResultsBatch(batchCaptor.capture());
+        List<HanaDataUploader.TestResultBatch> batch = batchCaptor.getValue();
+        assertEquals(1, batch.size());
+        assertEquals(77, batch.get(0).runId);
+        assertEquals(12.0, batch.get(0).duration);
     }
 
     @Test
@@ -196,6 +507,109 @@ class HanaDataUploaderTest {
         verify(uploader, times(2)).processRegressionFile(endsWith(".xlsx"));
     }
 
+    @Test
+    void testUploadAllFiles_concurrentFilesUseOwnTransactions() throws Exception {
+        // Only the burn-in file exists (without a 'results' sheet, so nothing is written); the regression files are missing
+        try (Workbook wb = new XSSFWorkbook()) {
+            wb.createSheet("other");
+            try (OutputStream os = Files.newOutputStream(tempDir.resolve("burn_in_analysis.xlsx"))) {
+                wb.write(os);
+            }
+        }
+
+        doAnswer(invocation -> {
+            uploader.connection = mockConnection;
+            uploader.connectionUrl = "jdbc:sap://test:30041/";
+            return null;
+        }).when(uploader).connectToHana();
+        List<Connection> fileConnections = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            Connection fileConnection = mock(Connection.class);
+            fileConnections.add(fileConnection);
+            return fileConnection;
+        }).when(uploader).openConnection();
+
+        uploader.uploadAllFiles(tempDir.toString() + "/");
+
+        assertEquals(3, fileConnections.size());
+        int commits = 0;
+        int rollbacks = 0;
+        for (Connection fileConnection : fileConnections) {
+            verify(fileConnection).setAutoCommit(false);
+            verify(fileConnection).close();
+            commits += mockingDetails(fileConnection).getInvocations().stream()
+                    .filter(i -> i.getMethod().getName().equals("commit")).count();
+            rollbacks += mockingDetails(fileConnection).getInvocations().stream()
+                    .filter(i -> i.getMethod().getName().equals("rollback")).count();
+        }
+        assertEquals(1, commits);
+        assertEquals(2, rollbacks);
+        verify(mockConnection).close();
+    }
+
+    @Test
+    void testUploadFile_sheetCommitModeRollsBackFailedSheetOnly() throws Exception {
+        Path file = tempDir.resolve("regression.xlsx");
+        try (Workbook wb = new XSSFWorkbook()) {
+            for (String sheetName : new String[]{"median", "error"}) {
+                Sheet sheet = wb.createSheet(sheetName);
+                sheet.createRow(0).createCell(1).setCellValue("2025-04-24");
+                sheet.createRow(1).createCell(1).setCellValue("Deployment: v1");
+                sheet.createRow(2).createCell(1).setCellValue("Image: img1");
+                Row data = sheet.createRow(5);
+                data.createCell(0).setCellValue("eA");
+                data.createCell(1).setCellValue(22.0);
+            }
+            try (OutputStream os = Files.newOutputStream(file)) {
+                wb.write(os);
+            }
+        }
+
+        uploader.options.commitMode = UploadOptions.CommitMode.SHEET;
+        doReturn(66).when(uploader).insertTestRun(eq("median"), anyString(), anyString(), anyString());
+        doThrow(new SQLException("boom")).when(uploader).insertTestRun(eq("error"), anyString(), anyString(), anyString());
+        doNothing().when(uploader).insertTestResultsBatch(any());
+
+        assertFalse(uploader.uploadFile("Regression", file.toString(), HanaDataUploader::processRegressionFile, false));
+
+        // The first sheet is committed on its own, the partially written second sheet is rolled back
+        InOrder order = inOrder(mockConnection);
+        order.verify(mockConnection).setAutoCommit(false);
+        order.verify(mockConnection).commit();
+        order.verify(mockConnection).rollback();
+        verify(mockConnection, times(1)).commit();
+    }
+
+    @Test
+    void testRowsWritten_commitsEveryConfiguredRows() throws Exception {
+        uploader.options.commitMode = UploadOptions.CommitMode.ROWS;
+        uploader.options.commitRows = 250;
+        uploader.beginTransaction();
+
+        uploader.rowsWritten(100);
+        uploader.rowsWritten(100);
+        verify(mockConnection, never()).commit();
+
+        uploader.rowsWritten(100);
+        verify(mockConnection, times(1)).commit();
+
+        // The count restarts after a commit; the remainder is committed with the file
+        uploader.rowsWritten(100);
+        uploader.commitTransaction();
+        verify(mockConnection, times(2)).commit();
+    }
+
+    @Test
+    void testBeginTransaction_autoCommitModeKeepsAutoCommit() throws Exception {
+        uploader.options.commitMode = UploadOptions.CommitMode.AUTO;
+        uploader.beginTransaction();
+        uploader.rowsWritten(100);
+        uploader.sheetFinished();
+        uploader.commitTransaction();
+        verify(mockConnection, never()).setAutoCommit(false);
+        verify(mockConnection, never()).commit();
+    }
+
     @Test
     void testProcessBurnInAnalysis_parsesAndInserts() throws Exception {
         Path file = tempDir.resolve("burn_in_analysis.xlsx");
@@ -271,4 +685,125 @@ class HanaDataUploaderTest {
 
         verify(uploader).insertTestRun("median", "2025-04-24", "v1", "img1");
     }
+
+    @Test
+    void testTransposeSheet_buildsAllColumnRunsInOnePass() throws Exception {
+        Path file = tempDir.resolve("regression.xlsx");
+        try (Workbook wb = new XSSFWorkbook()) {
+            Sheet sheet = wb.createSheet("Median");
+            Row h = sheet.createRow(0);
+            h.createCell(1).setCellValue("2025-04-24");
+            h.createCell(2).setCellValue("2025-04-25");
+            h.createCell(3).setCellValue("2025-04-26");
+            Row deployments = sheet.createRow(1);
+            deployments.createCell(1).setCellValue("Deployment: v1");
+            deployments.createCell(3).setCellValue("Deployment: v3");
+            Row images = sheet.createRow(2);
+            images.createCell(1).setCellValue("Image: img1");
+            images.createCell(3).setCellValue("Image: img3");
+            Row first = sheet.createRow(5);
+            first.createCell(0).setCellValue("eA");
+            first.createCell(1).setCellValue(1.0);
+            first.createCell(2).setCellValue(2.0);
+            first.createCell(3).setCellValue("3.5");
+            Row second = sheet.createRow(6);
+            second.createCell(1).setCellValue(4.0);
+            Row third = sheet.createRow(7);
+            third.createCell(0).setCellValue("eB");
+            third.createCell(3).setCellValue(5.0);
+            try (OutputStream os = Files.newOutputStream(file)) {
+                wb.write(os);
+            }
+        }
+
+        for (UploadOptions.ReaderMode mode : UploadOptions.ReaderMode.values()) {
+            uploader.options.readerMode = mode;
+            List<String> rows = recordUpload(file.toString(), false);
+
+            // Column 2 has no deployment/image data and row 6 has no endpoint name, so both are skipped
+            assertEquals(List.of(
+                    "result 1000 eA 1.0",
+                    "result 1001 eA 3.5",
+                    "result 1001 eB 5.0",
+                    "run 1000 median 2025-04-24 v1 img1",
+                    "run 1001 median 2025-04-26 v3 img3"), rows, "Unexpected rows for reader " + mode);
+        }
+    }
+
+    @Test
+    void testIngestSheetsInParallel_isolatesFailedSheet() throws Exception {
+        List<Connection> workerConnections = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> {
+            Connection workerConnection = mock(Connection.class);
+            workerConnections.add(workerConnection);
+            return workerConnection;
+        }).when(uploader).openConnection();
+        uploader.options.sheetThreads = 3;
+
+        Map<String, Connection> usedConnections = new ConcurrentHashMap<>();
+        SQLException error = assertThrows(SQLException.class, () -> uploader.ingestSheetsInParallel(
+                List.of("Median", "Error", "90th"), (writer, sheetIndex, scenarioName) -> {
+                    usedConnections.put(scenarioName, writer.connection);
+                    if (scenarioName.equals("error")) {
+                        throw new SQLException("broken sheet");
+                    }
+                }));
+
+        assertTrue(error.getMessage().contains("[Error]"));
+        assertEquals(3, workerConnections.size());
+        verify(usedConnections.get("median")).commit();
+        verify(usedConnections.get("90th")).commit();
+        verify(usedConnections.get("error")).rollback();
+        verify(usedConnections.get("error"), never()).commit();
+        for (Connection workerConnection : workerConnections) {
+            verify(workerConnection).close();
+        }
+    }
+
+    @Test
+    void testStreamingReaderMatchesDomReader() throws Exception {
+        for (String fileName : new String[]{"burn_in_analysis.xlsx", "regression_dolphin.xlsx"}) {
+            // Work on a copy: the DOM reader opens the workbook read-write and may rewrite it on close
+            Path copy = tempDir.resolve(fileName);
+            Files.copy(Path.of("src/test/resources/test-data", fileName), copy);
+            String filePath = copy.toString();
+            boolean burnIn = fileName.startsWith("burn_in");
+
+            uploader.options.readerMode = UploadOptions.ReaderMode.DOM;
+            List<String> domRows = recordUpload(filePath, burnIn);
+
+            uploader.options.readerMode = UploadOptions.ReaderMode.STREAMING;
+            List<String> streamingRows = recordUpload(filePath, burnIn);
+
+            assertTrue(domRows.size() > 0, "Expected rows to be decoded from " + fileName);
+            assertEquals(domRows, streamingRows, "Streaming and DOM readers differ for " + fileName);
+        }
+    }
+
+    // Runs one file through the uploader and returns every TEST_RUN/TEST_RESULT row it tried to write, sorted
+    private List<String> recordUpload(String filePath, boolean burnIn) throws Exception {
+        List<String> rows = new ArrayList<>();
+        int[] nextRunId = {1000};
+        doAnswer(invocation -> {
+            int runId = nextRunId[0]++;
+            rows.add("run " + runId + " " + invocation.getArgument(0) + " " + invocation.getArgument(1)
+                    + " " + invocation.getArgument(2) + " " + invocation.getArgument(3));
+            return runId;
+        }).when(uploader).insertTestRun(anyString(), anyString(), anyString(), anyString());
+        doAnswer(invocation -> {
+            List<HanaDataUploader.TestResultBatch> results = invocation.getArgument(0);
+            for (HanaDataUploader.TestResultBatch result : results) {
+                rows.add("result " + result.runId + " " + result.entityName + " " + result.duration);
+            }
+            return null;
+        }).when(uploader).insertTestResultsBatch(any());
+
+        if (burnIn) {
+            uploader.processBurnInAnalysis(filePath);
+        } else {
+            uploader.processRegressionFile(filePath);
+        }
+        Collections.sort(rows);
+        return rows;
+    }
 }
@@ -0,0 +1,184 @@
+package com.sap.fpa61.db;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Properties;
+
+import org.json.JSONObject;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sap.fpa61.metrics.MetricsRegistry;
+
+// Runs uploads through the writer threads against embedded H2 databases
+class IngestPipelineTest {
+
+    private static final String PIPELINE_URL = "jdbc:h2:mem:pipeline;DB_CLOSE_DELAY=-1";
+    private static final String DIRECT_URL = "jdbc:h2:mem:direct;DB_CLOSE_DELAY=-1";
+
+    private Connection pipelineDb;
+    private Connection directDb;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        pipelineDb = DriverManager.getConnection(PIPELINE_URL);
+        directDb = DriverManager.getConnection(DIRECT_URL);
+        for (String file : List.of(HanaDataUploader.BURN_IN_FILE, HanaDataUploader.REGRESSION_FILE,
+                HanaDataUploader.REGRESSION_BURN_IN_FILE)) {
+            Files.copy(Paths.get("src/test/resources/test-data", file), tempDir.resolve(file));
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (Connection connection : List.of(pipelineDb, directDb)) {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("DROP ALL OBJECTS");
+            }
+            connection.close();
+        }
+    }
+
+    private static HanaDataUploader uploader(String url, int writerThreads) {
+        return uploader(url, writerThreads, new Properties());
+    }
+
+    private static HanaDataUploader uploader(String url, int writerThreads, Properties config) {
+        config.setProperty("DB_URL", url);
+        config.setProperty("UPLOAD_WRITER_THREADS", Integer.toString(writerThreads));
+        // A single slot per writer, so the decoder is throttled by the writers
+        config.setProperty("UPLOAD_QUEUE_CAPACITY", "1");
+        // The regression files share scenarios: uploaded one after the other, the same file loads each column
+        config.setProperty("UPLOAD_FILE_THREADS", "1");
+        JSONObject json = new JSONObject();
+        json.put("fullDisplayName", "TestJob #42");
+        json.put("id", "42");
+        return new HanaDataUploader(json, config);
+    }
+
+    static String snapshot(Connection connection) throws SQLException {
+        String sql = "SELECT s.NAME, r.JOB_DATE, r.DEPLOYMENT_NAME, COUNT(t.RESULT_ID), SUM(t.DURATION_MS) "
+                + "FROM REGRESSION_UPLOAD.TEST_RUN r JOIN REGRESSION_UPLOAD.TEST_SCENARIO s ON s.SCENARIO_ID = r.SCENARIO_ID "
+                + "LEFT JOIN REGRESSION_UPLOAD.TEST_RESULT t ON t.RUN_ID = r.RUN_ID "
+                + "GROUP BY s.NAME, r.JOB_DATE, r.DEPLOYMENT_NAME ORDER BY s.NAME, r.JOB_DATE, r.DEPLOYMENT_NAME";
+        StringBuilder rows = new StringBuilder();
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                rows.append(rs.getString(1)).append(' ').append(rs.getDate(2)).append(' ').append(rs.getString(3))
+                        .append(' ').append(rs.getLong(4)).append(' ').append(rs.getDouble(5)).append('\n');
+            }
+        }
+        return rows.toString();
+    }
+
+    private static int count(Connection connection, String table) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM REGRESSION_UPLOAD." + table)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    // Value of an unlabelled metric in the /metrics scrape
+    private static double metric(String name) {
+        for (String line : MetricsRegistry.global().scrape().split("\n")) {
+            if (line.startsWith(name + " ")) {
+                return Double.parseDouble(line.substring(name.length() + 1));
+            }
+        }
+        return 0;
+    }
+
+    @Test
+    void testPipelineWritesTheSameRowsAsDirectUpload() throws Exception {
+        uploader(PIPELINE_URL, 3).uploadAllFiles(tempDir + "/");
+        uploader(DIRECT_URL, 0).uploadAllFiles(tempDir + "/");
+
+        String expected = snapshot(directDb);
+        assertTrue(count(directDb, "TEST_RESULT") > 0);
+        assertEquals(expected, snapshot(pipelineDb));
+    }
+
+    @Test
+    void testBackpressureIsExported() throws Exception {
+        double blocked = metric("pnr_ingest_decoder_blocked_seconds_total");
+        uploader(PIPELINE_URL, 2).uploadAllFiles(tempDir + "/");
+
+        // Every hand-off was taken by a writer, and the decoder's waits for the single queue slots were counted
+        assertEquals(0, metric("pnr_ingest_queue_depth"));
+        assertTrue(metric("pnr_ingest_decoder_blocked_seconds_total") > blocked);
+    }
+
+    @Test
+    void testWriterFailureRollsBackTheFile() throws Exception {
+        new SchemaMigrator(SqlDialect.H2).migrate(pipelineDb);
+        try (Statement stmt = pipelineDb.createStatement()) {
+            stmt.execute("ALTER TABLE REGRESSION_UPLOAD.TEST_RESULT ADD CONSTRAINT NO_RESULTS CHECK (DURATION_MS < -1)");
+        }
+
+        Exception e = assertThrows(Exception.class, () -> uploader(PIPELINE_URL, 2).uploadAllFiles(tempDir + "/"));
+        assertEquals("All file uploads failed", e.getMessage());
+
+        // Every writer was rolled back, including the runs written before the failing results
+        assertEquals(0, count(pipelineDb, "TEST_RUN"));
+        assertEquals(0, count(pipelineDb, "TEST_RESULT"));
+        assertEquals(0, metric("pnr_ingest_queue_depth"));
+    }
+
+    @Test
+    void testIncompleteRunsAreReplaced() throws Exception {
+        uploader(DIRECT_URL, 0).uploadAllFiles(tempDir + "/");
+        uploader(PIPELINE_URL, 2).uploadAllFiles(tempDir + "/");
+        // Runs left with part of their results and not marked LOADED, as a failed upload with UPLOAD_COMMIT=rows
+        // leaves them
+        try (Statement stmt = pipelineDb.createStatement()) {
+            stmt.execute("UPDATE REGRESSION_UPLOAD.TEST_RUN SET LOADED = FALSE WHERE RUN_ID IN "
+                    + "(SELECT RUN_ID FROM REGRESSION_UPLOAD.TEST_RESULT WHERE MOD(RESULT_ID, 2) = 0)");
+            stmt.execute("DELETE FROM REGRESSION_UPLOAD.TEST_RESULT WHERE MOD(RESULT_ID, 2) = 0");
+        }
+        int lastRunId = maxRunId(pipelineDb);
+
+        // Incomplete runs are replaced in every commit mode, complete ones are skipped
+        Properties rows = new Properties();
+        rows.setProperty("UPLOAD_COMMIT", "rows");
+        uploader(PIPELINE_URL, 2, rows).uploadAllFiles(tempDir + "/");
+        assertEquals(snapshot(directDb), snapshot(pipelineDb));
+        int replacedRunId = maxRunId(pipelineDb);
+        assertTrue(replacedRunId > lastRunId);
+
+        // With UPLOAD_SKIP_LOADED=false every run is replaced
+        Properties reload = new Properties();
+        reload.setProperty("UPLOAD_SKIP_LOADED", "false");
+        uploader(PIPELINE_URL, 2, reload).uploadAllFiles(tempDir + "/");
+        assertEquals(snapshot(directDb), snapshot(pipelineDb));
+        assertEquals(count(directDb, "TEST_RUN"), count(pipelineDb, "TEST_RUN"));
+        try (Statement stmt = pipelineDb.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MIN(RUN_ID) FROM REGRESSION_UPLOAD.TEST_RUN")) {
+            rs.next();
+            assertTrue(rs.getInt(1) > replacedRunId);
+        }
+    }
+
+    private static int maxRunId(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(RUN_ID) FROM REGRESSION_UPLOAD.TEST_RUN")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.sap.fpa61.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class SchemaMigratorTest {
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private Statement statement;
+
+    @Mock
+    private ResultSet versionResult;
+
+    private final SchemaMigrator migrator = new SchemaMigrator(SqlDialect.HANA);
+
+    @Test
+    void testLoadMigrations_readsIndexInOrder() throws Exception {
+        List<SchemaMigrator.Migration> migrations = migrator.loadMigrations();
+        assertEquals(4, migrations.size());
+        for (int i = 0; i < migrations.size(); i++) {
+            assertEquals(i + 1, migrations.get(i).version);
+        }
+        assertEquals("baseline", migrations.get(0).description);
+        assertEquals("db/migration/V4__run_natural_key.sql", migrations.get(3).resource);
+    }
+
+    @Test
+    void testMigrate_upToDateSchemaNeedsOneQuery() throws Exception {
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery("SELECT MAX(VERSION) FROM REGRESSION_UPLOAD.SCHEMA_VERSION")).thenReturn(versionResult);
+        when(versionResult.next()).thenReturn(true);
+        when(versionResult.getInt(1)).thenReturn(4);
+
+        migrator.migrate(connection);
+
+        verify(statement, times(1)).executeQuery(anyString());
+        verify(statement).execute("SET SCHEMA REGRESSION_UPLOAD");
+        verify(statement, never()).execute(startsWith("LOCK"));
+        verify(connection, never()).prepareStatement(anyString());
+        verify(connection, never()).setAutoCommit(false);
+    }
+
+    @Test
+    void testMigrate_appliesPendingScriptsUnderLock() throws Exception {
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery("SELECT MAX(VERSION) FROM REGRESSION_UPLOAD.SCHEMA_VERSION")).thenReturn(versionResult);
+        when(versionResult.next()).thenReturn(true);
+        when(versionResult.getInt(1)).thenReturn(2);
+        when(connection.getAutoCommit()).thenReturn(true);
+
+        // Schema and version table exist
+        PreparedStatement existsStmt = mock(PreparedStatement.class);
+        ResultSet existsResult = mock(ResultSet.class);
+        when(connection.prepareStatement(startsWith("SELECT COUNT(*) FROM SYS."))).thenReturn(existsStmt);
+        when(existsStmt.executeQuery()).thenReturn(existsResult);
+        when(existsResult.next()).thenReturn(true);
+        when(existsResult.getInt(1)).thenReturn(1);
+
+        PreparedStatement recordStmt = mock(PreparedStatement.class);
+        when(connection.prepareStatement(startsWith("UPSERT REGRESSION_UPLOAD.SCHEMA_VERSION"))).thenReturn(recordStmt);
+
+        migrator.migrate(connection);
+
+        InOrder order = inOrder(statement, recordStmt, connection);
+        order.verify(connection).setAutoCommit(false);
+        order.verify(statement).execute("LOCK TABLE REGRESSION_UPLOAD.SCHEMA_VERSION IN EXCLUSIVE MODE");
+        order.verify(statement).execute(contains("CREATE COLUMN TABLE TEST_RESULT_STAGING"));
+        order.verify(recordStmt).setInt(1, 3);
+        order.verify(statement).execute(contains("ALTER TABLE TEST_RUN ADD"));
+        order.verify(statement).execute(contains("CREATE UNIQUE INDEX TEST_RUN_NATURAL_KEY"));
+        order.verify(recordStmt).setInt(1, 4);
+        order.verify(connection).commit();
+        order.verify(connection).setAutoCommit(true);
+        // Versions 1 and 2 are not applied again
+        verify(statement, never()).execute(contains("CREATE COLUMN TABLE TEST_SCENARIO"));
+        verify(statement, never()).execute(contains("TEST_RUN_ID_SEQ"));
+    }
+
+    @Test
+    void testCurrentVersion_missingVersionTable() throws Exception {
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenThrow(new SQLException("invalid table name"));
+        PreparedStatement existsStmt = mock(PreparedStatement.class);
+        ResultSet existsResult = mock(ResultSet.class);
+        when(connection.prepareStatement(startsWith("SELECT COUNT(*) FROM SYS.TABLES"))).thenReturn(existsStmt);
+        when(existsStmt.executeQuery()).thenReturn(existsResult);
+        when(existsResult.next()).thenReturn(true);
+        when(existsResult.getInt(1)).thenReturn(0);
+
+        assertNull(migrator.currentVersion(connection));
+    }
+}
@@ -0,0 +1,192 @@
+package com.sap.fpa61.db;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.json.JSONObject;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Runs the migrations and a complete upload against the embedded H2 dialect
+class SqlDialectTest {
+
+    private static final String URL = "jdbc:h2:mem:dialect;DB_CLOSE_DELAY=-1";
+
+    private Connection connection;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        connection = DriverManager.getConnection(URL);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    private int count(String sql) throws SQLException {
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    @Test
+    void testForUrl_picksDialectFromUrl() {
+        assertSame(SqlDialect.HANA, SqlDialect.forUrl("jdbc:sap://localhost:30041/"));
+        assertSame(SqlDialect.H2, SqlDialect.forUrl("jdbc:h2:./pnr-results"));
+        assertSame(SqlDialect.HANA, SqlDialect.forUrl(null));
+        assertEquals("jdbc:sap://localhost:30041/", SqlDialect.HANA.jdbcUrl("localhost", "30041"));
+    }
+
+    @Test
+    void testH2_migratesSchemaAndDrawsIdBlocks() throws Exception {
+        SchemaMigrator migrator = new SchemaMigrator(SqlDialect.H2);
+        migrator.migrate(connection);
+        // Up to date the second time
+        migrator.migrate(connection);
+
+        assertEquals(4, migrator.currentVersion(connection));
+        assertEquals(4, count("SELECT COUNT(*) FROM REGRESSION_UPLOAD.SCHEMA_VERSION"));
+
+        IdBlockAllocator runIds = new IdBlockAllocator(HanaDataUploader.SEQUENCE_RUN_ID, HanaDataUploader.RUN_ID_BLOCK_SIZE);
+        IdBlockAllocator other = new IdBlockAllocator(HanaDataUploader.SEQUENCE_RUN_ID, HanaDataUploader.RUN_ID_BLOCK_SIZE);
+        assertEquals(1000, runIds.nextId(connection, SqlDialect.H2));
+        assertEquals(1001, runIds.nextId(connection, SqlDialect.H2));
+        assertEquals(1100, other.nextId(connection, SqlDialect.H2));
+    }
+
+    @Test
+    void testH2_uploadsAllFilesWithoutHana() throws Exception {
+        for (String file : List.of(HanaDataUploader.BURN_IN_FILE, HanaDataUploader.REGRESSION_FILE,
+                HanaDataUploader.REGRESSION_BURN_IN_FILE)) {
+            Files.copy(Paths.get("src/test/resources/test-data", file), tempDir.resolve(file));
+        }
+        Properties config = new Properties();
+        config.setProperty("DB_URL", URL);
+        JSONObject json = new JSONObject();
+        json.put("fullDisplayName", "TestJob #42");
+        json.put("id", "42");
+
+        new HanaDataUploader(json, config).uploadAllFiles(tempDir + "/");
+
+        int runs = count("SELECT COUNT(*) FROM REGRESSION_UPLOAD.TEST_RUN");
+        assertTrue(runs > 0);
+        assertTrue(count("SELECT COUNT(*) FROM REGRESSION_UPLOAD.BURN_IN_RESULTS") > 0);
+        assertTrue(count("SELECT COUNT(*) FROM REGRESSION_UPLOAD.REGRESSION_RESULTS") > 0);
+
+        // A second upload of the same workbooks finds every column loaded already
+        int results = count("SELECT COUNT(*) FROM REGRESSION_UPLOAD.TEST_RESULT");
+        new HanaDataUploader(json, config).uploadAllFiles(tempDir + "/");
+        assertEquals(runs, count("SELECT COUNT(*) FROM REGRESSION_UPLOAD.TEST_RUN"));
+        assertEquals(results, count("SELECT COUNT(*) FROM REGRESSION_UPLOAD.TEST_RESULT"));
+    }
+
+    @Test
+    void testH2_uploadsEveryColumnOfBothRegressionWorkbooks() throws Exception {
+        for (String file : List.of(HanaDataUploader.BURN_IN_FILE, HanaDataUploader.REGRESSION_FILE,
+                HanaDataUploader.REGRESSION_BURN_IN_FILE)) {
+            Files.copy(Paths.get("src/test/resources/test-data", file), tempDir.resolve(file));
+        }
+        Properties config = new Properties();
+        config.setProperty("DB_URL", URL);
+        // Both regression workbooks at once: they share their sheet names, so the same scenarios
+        config.setProperty("UPLOAD_FILE_THREADS", "3");
+        JSONObject json = new JSONObject();
+        json.put("fullDisplayName", "TestJob #42");
+        json.put("id", "42");
+
+        new HanaDataUploader(json, config).uploadAllFiles(tempDir + "/");
+
+        // Every column of both workbooks (43 + 81 in results_median), including columns that repeat the JOB_DATE,
+        // deployment and image of another column of their sheet with other results, and all of them complete
+        Map<String, Integer> expected = Map.of("results_median", 124, "results_90th", 75, "results_error", 75,
+                "results_90th_to_median", 75, "last_6_waves_median", 12);
+        assertEquals(expected, regressionRunsPerScenario());
+        assertEquals(0, count("SELECT COUNT(*) FROM REGRESSION_UPLOAD.TEST_RUN WHERE NOT LOADED"));
+
+        // The next nightly upload of the same workbooks neither adds nor replaces anything, in any commit mode
+        int results = count("SELECT COUNT(*) FROM REGRESSION_UPLOAD.TEST_RESULT");
+        int lastRunId = count("SELECT MAX(RUN_ID) FROM REGRESSION_UPLOAD.TEST_RUN");
+        config.setProperty("UPLOAD_COMMIT", "rows");
+        new HanaDataUploader(json, config).uploadAllFiles(tempDir + "/");
+        assertEquals(expected, regressionRunsPerScenario());
+        assertEquals(results, count("SELECT COUNT(*) FROM REGRESSION_UPLOAD.TEST_RESULT"));
+        assertEquals(lastRunId, count("SELECT MAX(RUN_ID) FROM REGRESSION_UPLOAD.TEST_RUN"));
+    }
+
+    private Map<String, Integer> regressionRunsPerScenario() throws SQLException {
+        Map<String, Integer> runs = new TreeMap<>();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT s.NAME, COUNT(*) FROM REGRESSION_UPLOAD.TEST_RUN r "
+                     + "JOIN REGRESSION_UPLOAD.TEST_SCENARIO s ON s.SCENARIO_ID = r.SCENARIO_ID "
+                     + "WHERE r.SOURCE_FILE LIKE 'regression_dolphin%' GROUP BY s.NAME")) {
+            while (rs.next()) {
+                runs.put(rs.getString(1), rs.getInt(2));
+            }
+        }
+        return runs;
+    }
+
+    @Test
+    void testH2_naturalKeyMigrationKeepsRunsLoadedBefore() throws Exception {
+        SchemaMigrator migrator = new SchemaMigrator(SqlDialect.H2);
+        migrator.migrate(connection);
+        // Back to version 3, with runs as uploads before incremental ingestion left them: build 41 loaded a column
+        // both regression workbooks have (runs 10 and 11) and another one, build 42 loaded them again and a new one
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("DROP INDEX REGRESSION_UPLOAD.TEST_RUN_NATURAL_KEY");
+            stmt.execute("ALTER TABLE REGRESSION_UPLOAD.TEST_RUN DROP COLUMN (SOURCE_FILE, KEY_SEQ, LOADED)");
+            stmt.execute("DELETE FROM REGRESSION_UPLOAD.SCHEMA_VERSION WHERE VERSION = 4");
+            stmt.execute("INSERT INTO REGRESSION_UPLOAD.TEST_SCENARIO (SCENARIO_ID, NAME, ENTITY_TYPE) VALUES (7, 'median', 'endpoint')");
+            String[][] runs = {{"10", "41", "21"}, {"11", "41", "21"}, {"12", "41", "22"}, {"13", "42", "21"}, {"14", "42", "21"},
+                {"15", "42", "22"}, {"16", "42", "23"}};
+            for (String[] run : runs) {
+                stmt.execute("INSERT INTO REGRESSION_UPLOAD.TEST_RUN (RUN_ID, SCENARIO_ID, JOB_DATE, DEPLOYMENT_NAME, IMAGE_NAME, "
+                        + "BUILD_NUMBER, JENKINS_JOB_NAME) VALUES (" + run[0] + ", 7, DATE '2025-04-" + run[2] + "', 'd', 'i', "
+                        + run[1] + ", 'TestJob')");
+                stmt.execute("INSERT INTO REGRESSION_UPLOAD.TEST_RESULT (RUN_ID, ENTITY_NAME, DURATION_MS) VALUES (" + run[0] + ", 'eA', 1.0)");
+            }
+        }
+
+        // The earlier runs have no source workbook and do not conflict with the natural key: nothing is deleted
+        migrator.migrate(connection);
+        assertEquals(4, migrator.currentVersion(connection));
+        assertEquals(7, count("SELECT COUNT(*) FROM REGRESSION_UPLOAD.TEST_RUN WHERE SOURCE_FILE IS NULL AND LOADED"));
+
+        // The opt-in cleanup deletes the copies of build 42 and keeps both runs of the shared column
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("SET SCHEMA REGRESSION_UPLOAD");
+            for (String statement : HanaDataUploader.splitSqlStatements(new String(Files.readAllBytes(
+                    Paths.get("src/main/resources/db/cleanup/remove_duplicate_runs.sql"))))) {
+                if (!statement.trim().isEmpty() && !statement.trim().equals(";")) {
+                    stmt.execute(statement);
+                }
+            }
+        }
+        assertEquals(4, count("SELECT COUNT(*) FROM REGRESSION_UPLOAD.TEST_RUN WHERE RUN_ID IN (10, 11, 12, 16)"));
+        assertEquals(4, count("SELECT COUNT(*) FROM REGRESSION_UPLOAD.TEST_RUN"));
+        assertEquals(4, count("SELECT COUNT(*) FROM REGRESSION_UPLOAD.TEST_RESULT"));
+    }
+}
@@ -0,0 +1,112 @@
+package com.sap.fpa61.db;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import org.json.JSONObject;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+// Uploads the workbooks from streams instead of files, against embedded H2 databases
+class WorkbookSourceTest {
+
+    private static final String STREAM_URL = "jdbc:h2:mem:streamed;DB_CLOSE_DELAY=-1";
+    private static final String FILE_URL = "jdbc:h2:mem:files;DB_CLOSE_DELAY=-1";
+
+    private Connection streamDb;
+    private Connection fileDb;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        streamDb = DriverManager.getConnection(STREAM_URL);
+        fileDb = DriverManager.getConnection(FILE_URL);
+        for (String file : List.of(HanaDataUploader.BURN_IN_FILE, HanaDataUploader.REGRESSION_FILE,
+                HanaDataUploader.REGRESSION_BURN_IN_FILE)) {
+            Files.copy(Paths.get("src/test/resources/test-data", file), tempDir.resolve(file));
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (Connection connection : List.of(streamDb, fileDb)) {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("DROP ALL OBJECTS");
+            }
+            connection.close();
+        }
+    }
+
+    private HanaDataUploader uploader(String url, String reader) {
+        Properties config = new Properties();
+        config.setProperty("DB_URL", url);
+        config.setProperty("UPLOAD_READER", reader);
+        config.setProperty("UPLOAD_SPOOL_DIR", tempDir.resolve("spool").toString());
+        // Sheets are read concurrently, through private handles on the file or the spool file
+        config.setProperty("UPLOAD_SHEET_THREADS", "3");
+        config.setProperty("UPLOAD_FILE_THREADS", "1");
+        JSONObject json = new JSONObject();
+        json.put("fullDisplayName", "TestJob #42");
+        json.put("id", "42");
+        return new HanaDataUploader(json, config);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"streaming", "dom"})
+    void testStreamsUploadTheSameRowsAsFiles(String reader) throws Exception {
+        List<String> opened = new ArrayList<>();
+        uploader(STREAM_URL, reader).uploadAllStreams(fileName -> {
+            synchronized (opened) {
+                opened.add(fileName);
+            }
+            return Files.newInputStream(tempDir.resolve(fileName));
+        });
+        uploader(FILE_URL, reader).uploadAllFiles(tempDir + "/");
+
+        // Every workbook was read exactly once, and its spool file is gone
+        assertEquals(List.of(HanaDataUploader.BURN_IN_FILE, HanaDataUploader.REGRESSION_FILE,
+                HanaDataUploader.REGRESSION_BURN_IN_FILE), opened);
+        assertEquals(0, spoolFiles());
+        String expected = IngestPipelineTest.snapshot(fileDb);
+        assertTrue(expected.contains("burn_in "));
+        assertEquals(expected, IngestPipelineTest.snapshot(streamDb));
+    }
+
+    @Test
+    void testFailingStreamFailsOnlyItsFile() throws Exception {
+        uploader(STREAM_URL, "streaming").uploadAllStreams(fileName -> {
+            if (fileName.equals(HanaDataUploader.BURN_IN_FILE)) {
+                throw new IOException("Failed to download " + fileName + " (HTTP 404)");
+            }
+            return Files.newInputStream(tempDir.resolve(fileName));
+        });
+
+        assertTrue(IngestPipelineTest.snapshot(streamDb).contains("median"));
+        assertFalse(IngestPipelineTest.snapshot(streamDb).contains("burn_in "));
+        assertEquals(0, spoolFiles());
+    }
+
+    private long spoolFiles() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir.resolve("spool"))) {
+            return files.count();
+        }
+    }
+}
@@ -31,6 +31,8 @@ public class FullDownloadUploadIT {
     private static final String TEST_CONFIG_FILE = "test-config.properties";
     private static final String TEST_SAVE_DIR = "test-result-downloads/";
     private static final String PROJECT_DIR = "src/test/resources/test-data";
+    // Embedded database used unless -Dit.db.url points the test at a HANA server (e.g. jdbc:sap://localhost:30041/)
+    private static final String EMBEDDED_DB_URL = "jdbc:h2:mem:full-it;DB_CLOSE_DELAY=-1";
     private static Connection connection;
     private static final Properties testProps = new Properties();
     private static final String[] requiredFiles = {
@@ -42,6 +44,7 @@ public class FullDownloadUploadIT {
     @BeforeAll
     public static void setUp() throws Exception {
         // Create test properties file with test values
+        testProps.setProperty("DB_URL", System.getProperty("it.db.url", EMBEDDED_DB_URL));
         testProps.setProperty("DB_HOST", "localhost");
         testProps.setProperty("DB_PORT", "30041");
         testProps.setProperty("DB_USER", "SYSTEM");
@@ -129,7 +132,7 @@ public class FullDownloadUploadIT {
         verifyTestFiles();
 
         // Upload data to HANA
-        HanaDataUploader uploader = new HanaDataUploader(mockJenkinsResponse);
+        HanaDataUploader uploader = new HanaDataUploader(mockJenkinsResponse, testProps);
         uploader.uploadAllFiles(TEST_SAVE_DIR);
 
         // Connect to verify data
@@ -156,21 +159,17 @@ public class FullDownloadUploadIT {
     }
 
     private void connectToTestDatabase() throws SQLException {
-        String dbHost = testProps.getProperty("DB_HOST");
-        String dbPort = testProps.getProperty("DB_PORT");
-        String dbUser = testProps.getProperty("DB_USER");
-        String dbPassword = testProps.getProperty("DB_PASSWORD");
-        String dbEncrypt = testProps.getProperty("DB_ENCRYPT");
-        String dbValidateCert = testProps.getProperty("DB_VALIDATE_CERTIFICATE");
-
-        String url = "jdbc:sap://" + dbHost + ":" + dbPort + "/";
+        String url = testProps.getProperty("DB_URL");
         logger.info("Connecting to test database at " + url + " for verification");
 
+        // The embedded database takes the credentials only
         Properties connProps = new Properties();
-        connProps.setProperty("user", dbUser);
-        connProps.setProperty("password", dbPassword);
-        connProps.setProperty("encrypt", dbEncrypt);
-        connProps.setProperty("validateCertificate", dbValidateCert);
+        connProps.setProperty("user", testProps.getProperty("DB_USER"));
+        connProps.setProperty("password", testProps.getProperty("DB_PASSWORD"));
+        if (url.startsWith("jdbc:sap:")) {
+            connProps.setProperty("encrypt", testProps.getProperty("DB_ENCRYPT"));
+            connProps.setProperty("validateCertificate", testProps.getProperty("DB_VALIDATE_CERTIFICATE"));
+        }
 
         connection = DriverManager.getConnection(url, connProps);
     }
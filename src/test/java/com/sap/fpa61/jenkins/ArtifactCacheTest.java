@@ -0,0 +1,157 @@
+package com.sap.fpa61.jenkins;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpServer;
+
+// Fetches through the cache from a local HTTP server that supports ETag revalidation
+class ArtifactCacheTest {
+
+    private static final String JOB = "pnr-job";
+    private static final Map<String, String> FILES = Map.of("a.xlsx", "out/a.xlsx", "b.xlsx", "out/b.xlsx");
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private String baseUrl;
+    private ArtifactDownloadEngine engine;
+
+    // Content served per path, and what the server was asked for
+    private final Map<String, String> content = new ConcurrentHashMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+
+    @TempDir
+    Path saveDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        content.put("/out/a.xlsx", "first a");
+        content.put("/out/b.xlsx", "first b");
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            String body = content.get(exchange.getRequestURI().getPath());
+            String etag = "\"" + Integer.toHexString(body.hashCode()) + "\"";
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("ETag", etag);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+        engine = new ArtifactDownloadEngine("user", "token", 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.close();
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    private ArtifactCache cache(long maxBytes) throws IOException {
+        return new ArtifactCache(saveDir.resolve(ArtifactCache.DIRECTORY), maxBytes);
+    }
+
+    private String saved(String fileName) throws IOException {
+        return Files.readString(saveDir.resolve(fileName));
+    }
+
+    @Test
+    void testSameBuildIsServedFromCacheWithoutRequests() throws Exception {
+        cache(1 << 20).fetch(engine, saveDir, baseUrl, JOB, "41", FILES);
+        assertEquals(2, requests.get());
+
+        // A later run, with the working copies gone, for the same build
+        Files.delete(saveDir.resolve("a.xlsx"));
+        Files.delete(saveDir.resolve("b.xlsx"));
+        cache(1 << 20).fetch(engine, saveDir, baseUrl, JOB, "41", FILES);
+
+        assertEquals(2, requests.get());
+        assertEquals("first a", saved("a.xlsx"));
+        assertEquals("first b", saved("b.xlsx"));
+    }
+
+    @Test
+    void testNewBuildRevalidatesCachedCopies() throws Exception {
+        cache(1 << 20).fetch(engine, saveDir, baseUrl, JOB, "41", FILES);
+        content.put("/out/b.xlsx", "second b");
+
+        ArtifactCache cache = cache(1 << 20);
+        cache.fetch(engine, saveDir, baseUrl, JOB, "42", FILES);
+
+        // a is unchanged (304), b changed and was downloaded again
+        assertEquals(4, requests.get());
+        assertEquals(1, notModified.get());
+        assertEquals("first a", saved("a.xlsx"));
+        assertEquals("second b", saved("b.xlsx"));
+        assertNotNull(cache.lookup(JOB, "42", "out/a.xlsx"));
+        assertNull(cache.lookup(JOB, "41", "out/a.xlsx"));
+        assertNotNull(cache.lookup(JOB, "41", "out/b.xlsx"));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    void testLeastRecentlyUsedCopiesAreEvicted() throws Exception {
+        // Room for two 8-byte copies (one build)
+        cache(16).fetch(engine, saveDir, baseUrl, JOB, "41", FILES);
+        content.put("/out/a.xlsx", "second a");
+        content.put("/out/b.xlsx", "second b");
+
+        ArtifactCache cache = cache(16);
+        cache.fetch(engine, saveDir, baseUrl, JOB, "42", FILES);
+
+        assertEquals(2, cache.size());
+        assertEquals(16, cache.totalBytes());
+        assertNull(cache.lookup(JOB, "41", "out/a.xlsx"));
+        assertNotNull(cache.lookup(JOB, "42", "out/a.xlsx"));
+        // Only the files of the index are left in the cache directory
+        try (var files = Files.list(saveDir.resolve(ArtifactCache.DIRECTORY))) {
+            assertEquals(3, files.count());
+        }
+    }
+
+    @Test
+    void testDamagedCopyIsDownloadedAgain() throws Exception {
+        ArtifactCache cache = cache(1 << 20);
+        cache.fetch(engine, saveDir, baseUrl, JOB, "41", FILES);
+        try (var files = Files.list(saveDir.resolve(ArtifactCache.DIRECTORY))) {
+            Path blob = files.filter(file -> file.toString().endsWith("-a.xlsx")).findFirst().orElseThrow();
+            Files.writeString(blob, "truncated");
+        }
+
+        cache(1 << 20).fetch(engine, saveDir, baseUrl, JOB, "41", FILES);
+
+        assertEquals(3, requests.get());
+        assertEquals(0, notModified.get());
+        assertEquals("first a", saved("a.xlsx"));
+    }
+}
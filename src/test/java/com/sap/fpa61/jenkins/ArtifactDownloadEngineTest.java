@@ -0,0 +1,227 @@
+package com.sap.fpa61.jenkins;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// Downloads from a local HTTP server standing in for Jenkins
+class ArtifactDownloadEngineTest {
+
+    private static final String AUTHORIZATION = "Basic "
+            + Base64.getEncoder().encodeToString("user:token".getBytes(StandardCharsets.UTF_8));
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private String baseUrl;
+
+    // Requests being served right now, and the most at any time
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    // Serves "content of <path>" to authorized requests, after waiting on the given latch (if any)
+    private void serveFiles(CountDownLatch allArrived) {
+        server.createContext("/artifact/", exchange -> {
+            int status = 200;
+            String body = "content of " + exchange.getRequestURI().getPath();
+            int current = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(current, Math::max);
+            try {
+                if (!AUTHORIZATION.equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+                    status = 401;
+                    body = "unauthorized";
+                } else if (allArrived != null) {
+                    allArrived.countDown();
+                    if (!allArrived.await(5, TimeUnit.SECONDS)) {
+                        status = 500;
+                        body = "requests were not concurrent";
+                    }
+                } else {
+                    Thread.sleep(20);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                // Before the response is sent, so the client cannot start its next request while this one still counts
+                inFlight.decrementAndGet();
+            }
+            respond(exchange, status, body);
+        });
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private Map<String, String> files(String... names) {
+        Map<String, String> fileUrls = new LinkedHashMap<>();
+        for (String name : names) {
+            fileUrls.put(name, baseUrl + "/artifact/" + name);
+        }
+        return fileUrls;
+    }
+
+    @Test
+    void testDownloadsAllFilesConcurrently() throws Exception {
+        // Every request is held until all three have arrived, which only happens if they run in parallel
+        serveFiles(new CountDownLatch(3));
+
+        try (ArtifactDownloadEngine engine = new ArtifactDownloadEngine("user", "token", 3)) {
+            engine.downloadAll(tempDir + "/", files("a.xlsx", "b.xlsx", "c.xlsx"));
+        }
+
+        for (String name : new String[] {"a.xlsx", "b.xlsx", "c.xlsx"}) {
+            assertEquals("content of /artifact/" + name, Files.readString(tempDir.resolve(name)));
+            assertFalse(Files.exists(tempDir.resolve(name + ArtifactDownloadEngine.PART_SUFFIX)));
+        }
+        assertEquals(3, maxInFlight.get());
+    }
+
+    @Test
+    void testConcurrencyLimit() throws Exception {
+        serveFiles(null);
+
+        try (ArtifactDownloadEngine engine = new ArtifactDownloadEngine("user", "token", 1)) {
+            engine.downloadAll(tempDir.toString(), files("a.xlsx", "b.xlsx", "c.xlsx"));
+        }
+
+        assertEquals(1, maxInFlight.get());
+        assertEquals("content of /artifact/c.xlsx", Files.readString(tempDir.resolve("c.xlsx")));
+    }
+
+    @Test
+    void testFailedDownloadKeepsExistingFile() throws Exception {
+        serveFiles(null);
+        Files.writeString(tempDir.resolve("missing.xlsx"), "previous build");
+
+        IOException e;
+        try (ArtifactDownloadEngine engine = new ArtifactDownloadEngine("user", "token", 2)) {
+            Map<String, String> fileUrls = files("a.xlsx");
+            fileUrls.put("missing.xlsx", baseUrl + "/nothing-here/missing.xlsx");
+            e = assertThrows(IOException.class, () -> engine.downloadAll(tempDir.toString(), fileUrls));
+        }
+
+        assertEquals("Failed to download missing.xlsx (HTTP 404)", e.getMessage());
+        // The error page was not written over the previous file, and no partial file is left
+        assertEquals("previous build", Files.readString(tempDir.resolve("missing.xlsx")));
+        assertFalse(Files.exists(tempDir.resolve("missing.xlsx" + ArtifactDownloadEngine.PART_SUFFIX)));
+    }
+
+    @Test
+    void testWrongCredentialsAreRejected() throws Exception {
+        serveFiles(null);
+
+        try (ArtifactDownloadEngine engine = new ArtifactDownloadEngine("user", "wrong", 1)) {
+            IOException e = assertThrows(IOException.class, () -> engine.downloadAll(tempDir.toString(), files("a.xlsx")));
+            assertEquals("Failed to download a.xlsx (HTTP 401)", e.getMessage());
+        }
+        assertFalse(Files.exists(tempDir.resolve("a.xlsx")));
+    }
+
+    @Test
+    void testOpenStreamsTheResponseBody() throws Exception {
+        serveFiles(null);
+
+        try (ArtifactDownloadEngine engine = new ArtifactDownloadEngine("user", "token", 1)) {
+            try (InputStream in = engine.open(baseUrl + "/artifact/a.xlsx", "a.xlsx")) {
+                assertEquals("content of /artifact/a.xlsx", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+            IOException e = assertThrows(IOException.class, () -> engine.open(baseUrl + "/nothing-here/b.xlsx", "b.xlsx"));
+            assertEquals("Failed to download b.xlsx (HTTP 404)", e.getMessage());
+        }
+        // Nothing was written to disk
+        try (var files = Files.list(tempDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void testStalledResponsesTimeOut() throws Exception {
+        CountDownLatch released = new CountDownLatch(1);
+        server.createContext("/stalled-headers/", exchange -> {
+            await(released);
+            respond(exchange, 200, "too late");
+        });
+        // Headers and the first bytes of the body, then nothing
+        server.createContext("/stalled-body/", exchange -> {
+            exchange.sendResponseHeaders(200, 100);
+            OutputStream out = exchange.getResponseBody();
+            out.write(new byte[10]);
+            out.flush();
+            await(released);
+            out.close();
+        });
+
+        try (ArtifactDownloadEngine engine = new ArtifactDownloadEngine("user", "token", 2, Duration.ofMillis(300))) {
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                assertThrows(HttpTimeoutException.class, () -> engine.open(baseUrl + "/stalled-headers/a.xlsx", "a.xlsx"));
+                try (InputStream in = engine.open(baseUrl + "/stalled-body/b.xlsx", "b.xlsx")) {
+                    assertThrows(HttpTimeoutException.class, in::readAllBytes);
+                }
+                Map<String, String> fileUrls = new LinkedHashMap<>();
+                fileUrls.put("c.xlsx", baseUrl + "/stalled-body/c.xlsx");
+                assertThrows(HttpTimeoutException.class, () -> engine.downloadAll(tempDir.toString(), fileUrls));
+            });
+        } finally {
+            released.countDown();
+        }
+        assertFalse(Files.exists(tempDir.resolve("c.xlsx")));
+        assertFalse(Files.exists(tempDir.resolve("c.xlsx" + ArtifactDownloadEngine.PART_SUFFIX)));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -2,14 +2,17 @@ package com.sap.fpa61.jenkins;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.Permission;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Properties;
 
 import org.apache.logging.log4j.LogManager;
@@ -21,10 +24,8 @@ import org.apache.logging.log4j.core.layout.PatternLayout;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.jupiter.api.AfterEach;
-import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
-import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.BeforeEach;
@@ -33,15 +34,15 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.io.TempDir;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.ArgumentMatchers.contains;
 import static org.mockito.ArgumentMatchers.eq;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
-import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.when;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import com.sun.net.httpserver.HttpServer;
+
 @ExtendWith(MockitoExtension.class)
 public class JenkinsArtifactDownloaderTest {
 
@@ -60,7 +61,6 @@ public class JenkinsArtifactDownloaderTest {
     };
 
     private Properties mockProperties;
-    private HttpURLConnection mockConnection;
     private JSONObject mockJsonResponse;
 
     // Test appender to capture log messages
@@ -117,9 +117,6 @@ public class JenkinsArtifactDownloaderTest {
         mockProperties.setProperty("DOWNLOAD_BASE_URL", DOWNLOAD_BASE_URL);
         mockProperties.setProperty("SAVE_DIR", tempDir.toString() + "/");
 
-        // Mock HTTP connection
-        mockConnection = mock(HttpURLConnection.class);
-
         // Mock JSON response
         mockJsonResponse = createMockJenkinsJsonResponse();
 
@@ -161,150 +158,38 @@ public class JenkinsArtifactDownloaderTest {
 
     @Test
     public void testFetchJenkinsJson() throws Exception {
-        try (MockedStatic<JenkinsArtifactDownloader> mockedStatic = Mockito.mockStatic(JenkinsArtifactDownloader.class)) {
-            // Make the actual method available for the test
-            mockedStatic.when(() -> JenkinsArtifactDownloader.fetchJenkinsJson(
-                    anyString(), anyString(), anyString())).thenCallRealMethod();
-
-            // Mock the createAuthConnection method
-            mockedStatic.when(() -> JenkinsArtifactDownloader.createAuthConnection(
-                    eq(JENKINS_URL), eq(USERNAME), eq(API_TOKEN)))
-                    .thenReturn(mockConnection);
-
-            // Mock the connection response
-            when(mockConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
-
-            // Mock the readResponse method
-            String jsonResponse = "{\"artifacts\":[{\"fileName\":\"test.xlsx\",\"relativePath\":\"path/test.xlsx\"}]}";
-            InputStream mockInputStream = new ByteArrayInputStream(jsonResponse.getBytes(StandardCharsets.UTF_8));
-            when(mockConnection.getInputStream()).thenReturn(mockInputStream);
-
-            mockedStatic.when(() -> JenkinsArtifactDownloader.readResponse(any(InputStream.class)))
-                    .thenReturn(jsonResponse);
-
+        // Serve the response from a local Jenkins stand-in
+        String jsonResponse = "{\"id\":\"42\",\"fullDisplayName\":\"job #42\",\"changeSets\":[{\"items\":[]}],"
+                + "\"artifacts\":[{\"fileName\":\"test.xlsx\",\"relativePath\":\"path/test.xlsx\",\"displayPath\":\"test.xlsx\"}]}";
+        HttpServer server = startJenkins(HttpURLConnection.HTTP_OK, jsonResponse);
+        try {
             // Call the method under test
-            JSONObject result = JenkinsArtifactDownloader.fetchJenkinsJson(JENKINS_URL, USERNAME, API_TOKEN);
+            JSONObject result = JenkinsArtifactDownloader.fetchJenkinsJson(apiUrl(server), USERNAME, API_TOKEN);
 
             // Verify the result
             assertNotNull(result);
+            assertEquals("42", result.getString("id"));
             assertEquals("test.xlsx", result.getJSONArray("artifacts").getJSONObject(0).getString("fileName"));
+            assertEquals("path/test.xlsx", result.getJSONArray("artifacts").getJSONObject(0).getString("relativePath"));
+        } finally {
+            server.stop(0);
         }
     }
 
     @Test
     public void testFetchJenkinsJsonWithError() throws Exception {
-        try (MockedStatic<JenkinsArtifactDownloader> mockedStatic = Mockito.mockStatic(JenkinsArtifactDownloader.class)) {
-            // Make the actual method available for the test
-            mockedStatic.when(() -> JenkinsArtifactDownloader.fetchJenkinsJson(
-                    anyString(), anyString(), anyString())).thenCallRealMethod();
-
-            // Mock the createAuthConnection method
-            mockedStatic.when(() -> JenkinsArtifactDownloader.createAuthConnection(
-                    eq(JENKINS_URL), eq(USERNAME), eq(API_TOKEN)))
-                    .thenReturn(mockConnection);
-
-            // Mock the connection response with an error
-            when(mockConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_UNAUTHORIZED);
-
+        // Respond with an error
+        HttpServer server = startJenkins(HttpURLConnection.HTTP_UNAUTHORIZED, "unauthorized");
+        try {
             // Verify the method throws an exception
             assertThrows(IOException.class, () -> {
-                JenkinsArtifactDownloader.fetchJenkinsJson(JENKINS_URL, USERNAME, API_TOKEN);
+                JenkinsArtifactDownloader.fetchJenkinsJson(apiUrl(server), USERNAME, API_TOKEN);
             });
+        } finally {
+            server.stop(0);
         }
     }
 
-    @Test
-    public void testDownloadFile() throws Exception {
-        String saveDir = tempDir.toString() + "/";
-        String fileName = "test.xlsx";
-        String fileUrl = DOWNLOAD_BASE_URL + "path/" + fileName;
-
-        try (MockedStatic<JenkinsArtifactDownloader> mockedStatic = Mockito.mockStatic(JenkinsArtifactDownloader.class)) {
-            // Make the actual method available for the test
-            mockedStatic.when(() -> JenkinsArtifactDownloader.downloadFile(
-                    anyString(), anyString(), anyString(), anyString(), anyString())).thenCallRealMethod();
-
-            // Mock the createAuthConnection method
-            mockedStatic.when(() -> JenkinsArtifactDownloader.createAuthConnection(
-                    eq(fileUrl), eq(USERNAME), eq(API_TOKEN)))
-                    .thenReturn(mockConnection);
-
-            // Mock the connection response
-            when(mockConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
-
-            // Create test content for the file
-            byte[] fileContent = "Test file content".getBytes(StandardCharsets.UTF_8);
-            InputStream mockInputStream = new ByteArrayInputStream(fileContent);
-            when(mockConnection.getInputStream()).thenReturn(mockInputStream);
-
-            // Call the method under test
-            JenkinsArtifactDownloader.downloadFile(saveDir, fileUrl, fileName, USERNAME, API_TOKEN);
-
-            // Verify the file was created correctly
-            File downloadedFile = new File(saveDir + fileName);
-            assertTrue(downloadedFile.exists());
-
-            // Verify the file content
-            byte[] actualContent = Files.readAllBytes(downloadedFile.toPath());
-            assertArrayEquals(fileContent, actualContent);
-        }
-    }
-
-    @Test
-    public void testDownloadFileWithError() throws Exception {
-        String saveDir = tempDir.toString() + "/";
-        String fileName = "test.xlsx";
-        String fileUrl = DOWNLOAD_BASE_URL + "path/" + fileName;
-
-        try (MockedStatic<JenkinsArtifactDownloader> mockedStatic = Mockito.mockStatic(JenkinsArtifactDownloader.class)) {
-            // Make the actual method available for the test
-            mockedStatic.when(() -> JenkinsArtifactDownloader.downloadFile(
-                    anyString(), anyString(), anyString(), anyString(), anyString())).thenCallRealMethod();
-
-            // Mock the createAuthConnection method
-            mockedStatic.when(() -> JenkinsArtifactDownloader.createAuthConnection(
-                    eq(fileUrl), eq(USERNAME), eq(API_TOKEN)))
-                    .thenReturn(mockConnection);
-
-            // Mock the connection response with an error
-            when(mockConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_NOT_FOUND);
-
-            // Verify the method throws an exception
-            assertThrows(IOException.class, () -> {
-                JenkinsArtifactDownloader.downloadFile(saveDir, fileUrl, fileName, USERNAME, API_TOKEN);
-            });
-        }
-    }
-
-    @Test
-    public void testCreateAuthConnection() throws Exception {
-        try (MockedStatic<JenkinsArtifactDownloader> mockedStatic = Mockito.mockStatic(JenkinsArtifactDownloader.class)) {
-            // Make the actual method available for the test
-            mockedStatic.when(() -> JenkinsArtifactDownloader.createAuthConnection(
-                    anyString(), anyString(), anyString())).thenCallRealMethod();
-
-            // Mock URL and URLConnection creation
-            HttpURLConnection connection = mock(HttpURLConnection.class);
-            mockedStatic.when(() -> JenkinsArtifactDownloader.createAuthConnection(
-                    eq(JENKINS_URL), eq(USERNAME), eq(API_TOKEN))).thenReturn(connection);
-
-            // Call the method and verify
-            HttpURLConnection result = JenkinsArtifactDownloader.createAuthConnection(JENKINS_URL, USERNAME, API_TOKEN);
-            assertNotNull(result);
-            assertSame(connection, result);
-        }
-    }
-
-    @Test
-    public void testReadResponse() throws Exception {
-        String expectedResponse = "{\"test\":\"value\"}";
-        InputStream inputStream = new ByteArrayInputStream(expectedResponse.getBytes(StandardCharsets.UTF_8));
-
-        String result = JenkinsArtifactDownloader.readResponse(inputStream);
-
-        assertEquals(expectedResponse, result);
-    }
-
     @Test
     public void testDownloadArtifactsWithMissingConfigFile() throws Exception {
         // Clear any existing log messages
@@ -404,8 +289,8 @@ public class JenkinsArtifactDownloaderTest {
                     .thenReturn(mockJsonResponse);
 
             // Correctly mock static void method
-            mockedStatic.when(() -> JenkinsArtifactDownloader.downloadFile(
-                    anyString(), anyString(), anyString(), anyString(), anyString()))
+            mockedStatic.when(() -> JenkinsArtifactDownloader.downloadFiles(
+                    anyString(), anyString(), any(), any(), anyString(), anyString(), any()))
                     .thenAnswer(invocation -> null);
 
             // Call the method
@@ -415,15 +300,55 @@ public class JenkinsArtifactDownloaderTest {
             assertNotNull(result);
             assertEquals(mockJsonResponse, result);
 
-            // Verify each required file was downloaded
+            // Verify the required files, and only those, were downloaded in one parallel batch
+            Map<String, String> expectedPaths = new LinkedHashMap<>();
             for (String fileName : TEST_FILES) {
-                mockedStatic.verify(() -> JenkinsArtifactDownloader.downloadFile(
-                        anyString(), contains(fileName), eq(fileName), anyString(), anyString()), times(1));
+                expectedPaths.put(fileName, "path/" + fileName);
             }
+            mockedStatic.verify(() -> JenkinsArtifactDownloader.downloadFiles(
+                    anyString(), eq(DOWNLOAD_BASE_URL), eq(expectedPaths), eq(mockJsonResponse), anyString(), anyString(), any()),
+                    times(1));
         }
     }
 
+    @Test
+    public void testGetDownloadConcurrency() {
+        assertEquals(ArtifactDownloadEngine.DEFAULT_CONCURRENCY, JenkinsArtifactDownloader.getDownloadConcurrency(new Properties()));
+        Properties props = new Properties();
+        props.setProperty("DOWNLOAD_CONCURRENCY", "5");
+        assertEquals(5, JenkinsArtifactDownloader.getDownloadConcurrency(props));
+        props.setProperty("DOWNLOAD_CONCURRENCY", "many");
+        assertEquals(ArtifactDownloadEngine.DEFAULT_CONCURRENCY, JenkinsArtifactDownloader.getDownloadConcurrency(props));
+    }
+
+    @Test
+    public void testGetDownloadTimeout() {
+        assertEquals(ArtifactDownloadEngine.DEFAULT_TIMEOUT, JenkinsArtifactDownloader.getDownloadTimeout(new Properties()));
+        Properties props = new Properties();
+        props.setProperty("DOWNLOAD_TIMEOUT_SECONDS", "30");
+        assertEquals(Duration.ofSeconds(30), JenkinsArtifactDownloader.getDownloadTimeout(props));
+        props.setProperty("DOWNLOAD_TIMEOUT_SECONDS", "soon");
+        assertEquals(ArtifactDownloadEngine.DEFAULT_TIMEOUT, JenkinsArtifactDownloader.getDownloadTimeout(props));
+    }
+
     // Helper methods
+    private static HttpServer startJenkins(int status, String body) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private static String apiUrl(HttpServer server) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/job/pnr/lastSuccessfulBuild/api/json";
+    }
+
     private InputStream createMockPropertiesInputStream() throws IOException {
         ByteArrayOutputStream output = new ByteArrayOutputStream();
         mockProperties.store(output, null);
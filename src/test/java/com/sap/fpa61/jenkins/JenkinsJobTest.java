@@ -0,0 +1,45 @@
+package com.sap.fpa61.jenkins;
+
+import java.io.IOException;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+class JenkinsJobTest {
+
+    private static Properties config(String key, String value) {
+        Properties properties = new Properties();
+        properties.setProperty("JENKINS_API_TOKEN", "token");
+        properties.setProperty(key, value);
+        return properties;
+    }
+
+    @Test
+    void testJobUrlIsDerivedFromBuildApiUrl() throws Exception {
+        assertEquals("https://jenkins/job/pnr/", new JenkinsJob(
+                config("JENKINS_URL", "https://jenkins/job/pnr/lastSuccessfulBuild/api/json")).getUrl());
+        assertEquals("https://jenkins/job/pnr/", new JenkinsJob(
+                config("JENKINS_URL", "https://jenkins/job/pnr/lastSuccessfulBuild/api/json?depth=1")).getUrl());
+    }
+
+    @Test
+    void testConfiguredJobUrlWins() throws Exception {
+        Properties properties = config("JENKINS_JOB_URL", "https://jenkins/job/other");
+        properties.setProperty("JENKINS_URL", "https://jenkins/job/pnr/lastSuccessfulBuild/api/json");
+
+        assertEquals("https://jenkins/job/other/", new JenkinsJob(properties).getUrl());
+    }
+
+    @Test
+    void testMissingUrlOrTokenIsRejected() {
+        IOException e = assertThrows(IOException.class, () -> new JenkinsJob(config("SAVE_DIR", "x/")));
+        assertEquals("Jenkins job URL not found in configuration", e.getMessage());
+
+        Properties noToken = new Properties();
+        noToken.setProperty("JENKINS_JOB_URL", "https://jenkins/job/pnr/");
+        e = assertThrows(IOException.class, () -> new JenkinsJob(noToken));
+        assertEquals("Jenkins API token not found in configuration", e.getMessage());
+    }
+}
@@ -0,0 +1,91 @@
+package com.sap.fpa61.jenkins;
+
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+// Fetches and parses build metadata from a local HTTP server standing in for Jenkins
+class JenkinsMetadataClientTest {
+
+    private static final String BUILD_JSON = "{\"_class\":\"hudson.model.FreeStyleBuild\",\"actions\":[{\"causes\":[{}]}],"
+            + "\"artifacts\":[{\"displayPath\":\"a.xlsx\",\"fileName\":\"a.xlsx\",\"relativePath\":\"out/a.xlsx\"},"
+            + "{\"fileName\":\"b.xlsx\",\"relativePath\":\"out/b.xlsx\"}],\"building\":false,"
+            + "\"changeSets\":[{\"items\":[{\"msg\":\"a \\\"quoted\\\" } message\"}]}],"
+            + "\"fullDisplayName\":\"pnr #42\",\"id\":\"42\",\"number\":42}";
+
+    private HttpServer server;
+    private final AtomicReference<String> requestedQuery = new AtomicReference<>();
+    private final AtomicReference<String> acceptEncoding = new AtomicReference<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requestedQuery.set(exchange.getRequestURI().getRawQuery());
+            acceptEncoding.set(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = new GZIPOutputStream(exchange.getResponseBody())) {
+                out.write(BUILD_JSON.getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void testFetchRequestsTreeAndDecodesGzip() throws Exception {
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/job/pnr/lastSuccessfulBuild/api/json";
+
+        JSONObject build = new JenkinsMetadataClient("user", "token").fetch(url);
+
+        assertEquals("tree=" + JenkinsMetadataClient.TREE, URLDecoder.decode(requestedQuery.get(), StandardCharsets.UTF_8));
+        assertEquals("gzip", acceptEncoding.get());
+        assertEquals("42", build.getString("id"));
+        assertEquals("pnr #42", build.getString("fullDisplayName"));
+        assertEquals(2, build.getJSONArray("artifacts").length());
+    }
+
+    @Test
+    void testParseKeepsOnlyTheUsedFields() {
+        JSONObject build = JenkinsMetadataClient.parse(new StringReader(BUILD_JSON));
+
+        assertEquals(3, build.length());
+        JSONObject artifact = build.getJSONArray("artifacts").getJSONObject(0);
+        assertEquals(2, artifact.length());
+        assertEquals("out/a.xlsx", artifact.getString("relativePath"));
+        assertFalse(build.has("changeSets"));
+    }
+
+    @Test
+    void testParseRejectsTruncatedJson() {
+        assertThrows(JSONException.class, () -> JenkinsMetadataClient.parse(new StringReader(BUILD_JSON.substring(0, 120))));
+        assertEquals(0, JenkinsMetadataClient.parse(new StringReader(" { } ")).length());
+    }
+
+    @Test
+    void testWithTreeKeepsExistingQuery() {
+        assertEquals("http://j/api/json?depth=1&tree=id%2CfullDisplayName%2Cartifacts%5BfileName%2CrelativePath%5D",
+                JenkinsMetadataClient.withTree("http://j/api/json?depth=1"));
+        assertEquals("http://j/api/json?tree=id", JenkinsMetadataClient.withTree("http://j/api/json?tree=id"));
+    }
+}
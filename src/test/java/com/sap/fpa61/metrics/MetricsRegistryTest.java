@@ -0,0 +1,89 @@
+package com.sap.fpa61.metrics;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MetricsRegistryTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testScrapeUsesThePrometheusTextFormat() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("bytes_total", "Bytes read", "mode", "file").add(1024);
+        registry.counter("bytes_total", "Bytes read", "mode", "stream").inc();
+        registry.gauge("last_seconds", "Last duration").set(1.5);
+
+        assertEquals("""
+                # HELP bytes_total Bytes read
+                # TYPE bytes_total counter
+                bytes_total{mode="file"} 1024
+                bytes_total{mode="stream"} 1
+                # HELP last_seconds Last duration
+                # TYPE last_seconds gauge
+                last_seconds 1.5
+                """, registry.scrape());
+    }
+
+    @Test
+    void testGaugesMoveUpAndDown() {
+        MetricsRegistry registry = new MetricsRegistry();
+        Gauge depth = registry.gauge("queue_depth", "Queued");
+        depth.add(3);
+        depth.add(-1);
+
+        assertEquals(2, depth.get());
+        assertTrue(registry.scrape().contains("queue_depth 2\n"));
+    }
+
+    @Test
+    void testHistogramBucketsAreCumulative() {
+        MetricsRegistry registry = new MetricsRegistry();
+        Histogram histogram = registry.histogram("batch_seconds", "Batch latency", new double[] {0.125, 1}, "table", "T");
+        histogram.observe(0.0625);
+        histogram.observe(0.125);
+        histogram.observe(0.5);
+        histogram.observe(3);
+
+        String scrape = registry.scrape();
+        assertTrue(scrape.contains("batch_seconds_bucket{table=\"T\",le=\"0.125\"} 2\n"));
+        assertTrue(scrape.contains("batch_seconds_bucket{table=\"T\",le=\"1\"} 3\n"));
+        assertTrue(scrape.contains("batch_seconds_bucket{table=\"T\",le=\"+Inf\"} 4\n"));
+        assertTrue(scrape.contains("batch_seconds_sum{table=\"T\"} 3.6875\n"));
+        assertTrue(scrape.contains("batch_seconds_count{table=\"T\"} 4\n"));
+    }
+
+    @Test
+    void testMetricsAreRegisteredOnce() {
+        MetricsRegistry registry = new MetricsRegistry();
+        Counter counter = registry.counter("requests_total", "Requests", "path", "a\"b\\c");
+
+        assertSame(counter, registry.counter("requests_total", "Requests", "path", "a\"b\\c"));
+        assertTrue(registry.scrape().contains("requests_total{path=\"a\\\"b\\\\c\"} 0"));
+        assertThrows(IllegalArgumentException.class, () -> registry.gauge("requests_total", "Requests"));
+        assertThrows(IllegalArgumentException.class, () -> counter.add(-1));
+        assertThrows(IllegalArgumentException.class, () -> registry.counter("odd_total", "Odd", "label"));
+    }
+
+    @Test
+    void testTextfileIsReplacedAtomically() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("runs_total", "Runs").inc();
+        Path file = dir.resolve("textfile").resolve("pnr.prom");
+
+        registry.writeTextfile(file);
+        registry.counter("runs_total", "Runs").inc();
+        registry.writeTextfile(file);
+
+        assertTrue(Files.readString(file).contains("runs_total 2\n"));
+        assertEquals(1, Files.list(file.getParent()).count());
+    }
+}
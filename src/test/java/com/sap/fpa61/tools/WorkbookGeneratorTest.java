@@ -0,0 +1,121 @@
+package com.sap.fpa61.tools;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.json.JSONObject;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import com.sap.fpa61.db.HanaDataUploader;
+import com.sap.fpa61.tools.WorkbookGenerator.CellKind;
+
+class WorkbookGeneratorTest {
+
+    private static final String URL = "jdbc:h2:mem:generator;DB_CLOSE_DELAY=-1";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testWorkbooksHaveTheUploaderLayout() throws Exception {
+        List<Path> files = WorkbookGenerator.fromArgs(new String[] {dir.toString(), "--sheets=6", "--builds=4",
+            "--rows=50", "--mix=numeric:1,string:1,formula:1,blank:1"}).writeAll();
+
+        assertEquals(List.of(dir.resolve(WorkbookGenerator.BURN_IN_FILE), dir.resolve(WorkbookGenerator.REGRESSION_FILE),
+                dir.resolve(WorkbookGenerator.REGRESSION_BURN_IN_FILE)), files);
+        try (Workbook workbook = WorkbookFactory.create(files.get(0).toFile(), null, true)) {
+            assertEquals(1, workbook.getNumberOfSheets());
+            assertEquals("metric-0", workbook.getSheet("results").getRow(5).getCell(0).getStringCellValue());
+        }
+        try (Workbook workbook = WorkbookFactory.create(files.get(2).toFile(), null, true)) {
+            assertEquals(6, workbook.getNumberOfSheets());
+            assertEquals("results_median", workbook.getSheetAt(0).getSheetName());
+            assertEquals("results_6", workbook.getSheetAt(5).getSheetName());
+
+            Sheet sheet = workbook.getSheetAt(1);
+            assertEquals("2023-01-05", sheet.getRow(0).getCell(4).getStringCellValue());
+            assertEquals("Deployment: orca-fpa-core-1.4.0", sheet.getRow(1).getCell(4).getStringCellValue());
+            assertEquals("Image: registry.example.com/dmi-orca-xsn:1.4.0 alpine:3.8",
+                    sheet.getRow(2).getCell(4).getStringCellValue());
+            assertEquals(54, sheet.getLastRowNum());
+
+            Map<CellType, Integer> types = new EnumMap<>(CellType.class);
+            for (int rowNum = 5; rowNum <= sheet.getLastRowNum(); rowNum++) {
+                Row row = sheet.getRow(rowNum);
+                for (int col = 1; col <= 4; col++) {
+                    Cell cell = row.getCell(col);
+                    types.merge(cell.getCellType(), 1, Integer::sum);
+                    if (cell.getCellType() == CellType.FORMULA) {
+                        assertTrue(cell.getNumericCellValue() >= 20);
+                    } else if (cell.getCellType() == CellType.STRING) {
+                        assertTrue(Double.parseDouble(cell.getStringCellValue()) >= 20);
+                    }
+                }
+            }
+            assertEquals(List.of(CellType.NUMERIC, CellType.STRING, CellType.FORMULA, CellType.BLANK),
+                    List.copyOf(types.keySet()));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"streaming", "dom"})
+    void testUploaderReadsEveryValue(String reader) throws Exception {
+        new WorkbookGenerator(dir, 2, 3, 20, Map.of(CellKind.NUMERIC, 2, CellKind.STRING, 1, CellKind.FORMULA, 1), 7)
+                .writeAll();
+
+        Properties config = new Properties();
+        config.setProperty("DB_URL", URL);
+        config.setProperty("UPLOAD_READER", reader);
+        JSONObject json = new JSONObject().put("fullDisplayName", "Generated #1").put("id", "1");
+        try (Connection connection = DriverManager.getConnection(URL)) {
+            try {
+                assertTrue(new HanaDataUploader(json, config).uploadAllFiles(dir + "/"));
+
+                // 3 builds of the burn-in sheet and of the 2 sheets of both regression workbooks
+                assertEquals(15, count(connection, "TEST_RUN"));
+                assertEquals(15 * 20, count(connection, "TEST_RESULT"));
+            } finally {
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute("DROP ALL OBJECTS");
+                }
+            }
+        }
+    }
+
+    private static long count(Connection connection, String table) throws Exception {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM REGRESSION_UPLOAD." + table)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    @Test
+    void testBadArgumentsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> WorkbookGenerator.fromArgs(new String[] {"--rows=10"}));
+        assertThrows(IllegalArgumentException.class, () -> WorkbookGenerator.fromArgs(new String[] {"out", "--width=10"}));
+        assertThrows(IllegalArgumentException.class, () -> WorkbookGenerator.fromArgs(new String[] {"out", "--rows=0"}));
+        assertThrows(IllegalArgumentException.class, () -> WorkbookGenerator.fromArgs(new String[] {"out", "--mix=text:1"}));
+        assertThrows(IllegalArgumentException.class, () -> WorkbookGenerator.fromArgs(new String[] {"out", "--mix=blank:0"}));
+        assertEquals(Map.of(CellKind.NUMERIC, 70, CellKind.BLANK, 30), WorkbookGenerator.parseMix("numeric:70, blank:30"));
+    }
+}